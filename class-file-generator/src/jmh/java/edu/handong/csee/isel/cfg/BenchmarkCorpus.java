@@ -0,0 +1,172 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Corpora of json contents that the benchmarks generate class files from.
+ * <br></br>
+ * All corpora are based on the valid files of the test resources. The small 
+ * corpus is the valid files themselves, the huge corpus repeats the body of 
+ * <code>add.json</code> into a long straight-line method, and the jump-heavy 
+ * corpus places a conditional jump in every few instructions.
+ */
+final class BenchmarkCorpus {
+    static final String SMALL = "small";
+    static final String HUGE = "huge";
+    static final String JUMP_HEAVY = "jumpHeavy";
+
+    private static final Path VALID_FILES_DIR 
+            = Path.of("src/test/resources/valid-files");
+    private static final int HUGE_BLOCKS = 2000;
+    private static final int JUMP_BLOCKS = 500;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Loads the json contents of a corpus.
+     * 
+     * @param name name of the corpus
+     * @param copies number of copies of the corpus, whose classes are renamed 
+     *      to be unique
+     * @return the json contents
+     * @throws IOException if an I/O error occurs while reading the valid files
+     */
+    static List<String> load(String name, int copies) throws IOException {
+        List<ClassInfo> infos;
+        List<String> contents;
+
+        infos = new ArrayList<>();
+        contents = new ArrayList<>();
+
+        for (Path validFile : Files.list(VALID_FILES_DIR)
+                                   .sorted()
+                                   .collect(Collectors.toList())) {
+            try (InputStream in = Files.newInputStream(validFile)) {
+                infos.add(new JsonReader(in).readClassInfo());
+            }
+        }
+
+        switch (name) {
+            case SMALL:
+                break;
+            case HUGE:
+                infos = List.of(huge(infos.get(0)));
+                break;
+            case JUMP_HEAVY:
+                infos = List.of(jumpHeavy(infos.get(0)));
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown corpus " + name + ".");
+        }
+
+        for (int i = 0; i < copies; i++) {
+            for (ClassInfo info : infos) {
+                contents.add(toJson(info, info.getClassname() + i));
+            }
+        }
+
+        return contents;
+    }
+
+    /**
+     * Repeats the addition of <code>add</code> and stores each sum, then 
+     * returns the last one.
+     */
+    private static ClassInfo huge(ClassInfo add) {
+        int[] code;
+        int i;
+
+        code = new int[HUGE_BLOCKS * 7 + 3];
+        i = 0;
+
+        for (int block = 0; block < HUGE_BLOCKS; block++) {
+            code[i++] = Opcodes.ILOAD;
+            code[i++] = 1;
+            code[i++] = Opcodes.ILOAD;
+            code[i++] = 2;
+            code[i++] = Opcodes.IADD;
+            code[i++] = Opcodes.ISTORE;
+            code[i++] = 3;
+        }
+
+        code[i++] = Opcodes.ILOAD;
+        code[i++] = 3;
+        code[i++] = Opcodes.IRETURN;
+
+        return new ClassInfo(add.getVersion(), 
+                             add.getPackagename(), 
+                             "Huge", 
+                             add.getMethodname(), 
+                             add.getMethodDesc(), 
+                             code);
+    }
+
+    /**
+     * Skips each store of the second argument of <code>add</code> if the 
+     * first argument is zero, then returns the first argument.
+     */
+    private static ClassInfo jumpHeavy(ClassInfo add) {
+        int[] code;
+        int i;
+
+        code = new int[JUMP_BLOCKS * 9 + 3];
+        i = 0;
+
+        for (int block = 0; block < JUMP_BLOCKS; block++) {
+            int target;
+
+            target = i + 9;
+            code[i++] = Opcodes.ILOAD;
+            code[i++] = 1;
+            code[i++] = Opcodes.IFEQ;
+            code[i++] = target >> 8;
+            code[i++] = target & 0xFF;
+            code[i++] = Opcodes.ILOAD;
+            code[i++] = 2;
+            code[i++] = Opcodes.ISTORE;
+            code[i++] = 3;
+        }
+
+        code[i++] = Opcodes.ILOAD;
+        code[i++] = 1;
+        code[i++] = Opcodes.IRETURN;
+
+        return new ClassInfo(add.getVersion(), 
+                             add.getPackagename(), 
+                             "JumpHeavy", 
+                             add.getMethodname(), 
+                             add.getMethodDesc(), 
+                             code);
+    }
+
+    private static String toJson(ClassInfo info, String classname) {
+        StringBuilder json;
+        int[] code;
+
+        json = new StringBuilder();
+        code = info.getBytecode();
+
+        json.append("{\"version\": ").append(info.getVersion())
+            .append(", \"packagename\": \"").append(info.getPackagename())
+            .append("\", \"classname\": \"").append(classname)
+            .append("\", \"methodname\": \"").append(info.getMethodname())
+            .append("\", \"methodDesc\": \"").append(info.getMethodDesc())
+            .append("\", \"bytecode\": [");
+
+        for (int i = 0; i < code.length; i++) {
+            json.append(i == 0 ? "" : ", ").append(code[i]);
+        }
+
+        return json.append("]}").toString();
+    }
+}
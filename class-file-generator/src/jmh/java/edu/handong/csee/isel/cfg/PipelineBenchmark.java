@@ -0,0 +1,80 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmark of <code>GenerationPipeline</code>, whose score is the 
+ * number of json files generated into class files per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    private static final int FILES = 256;
+
+    @Param({ BenchmarkCorpus.SMALL, 
+             BenchmarkCorpus.HUGE, 
+             BenchmarkCorpus.JUMP_HEAVY })
+    public String corpus;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private Path dstDir;
+    private Path srcDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> contents;
+
+        Logger.getLogger("edu.handong.csee.isel.cfg").setLevel(Level.WARNING);
+
+        contents = BenchmarkCorpus.load(corpus, FILES);
+        srcDir = Files.createTempDirectory("cfg-benchmark-src");
+        dstDir = Files.createTempDirectory("cfg-benchmark-dst");
+
+        for (int i = 0; i < FILES; i++) {
+            Files.writeString(srcDir.resolve(i + ".json"), contents.get(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path dir : new Path[] { srcDir, dstDir }) {
+            Files.walk(dir)
+                 .sorted((a, b) -> b.compareTo(a))
+                 .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void generate() throws IOException {
+        try (ClassSink sink = new DirectoryClassSink(dstDir)) {
+            new GenerationPipeline(sink, threads).run(srcDir);
+        }
+    }
+}
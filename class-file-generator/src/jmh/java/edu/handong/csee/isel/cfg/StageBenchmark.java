@@ -0,0 +1,166 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks of each stage of generating class files from a corpus:
+ * parsing json contents or decoding a compact file of them, making
+ * <code>ClassWriter</code>s visit them with and without computing stack map
+ * frames, and writing class files.
+ * <br></br>
+ * Each invocation processes the whole corpus once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StageBenchmark {
+    @Param({ BenchmarkCorpus.SMALL, 
+             BenchmarkCorpus.HUGE, 
+             BenchmarkCorpus.JUMP_HEAVY })
+    public String corpus;
+
+    private GeneratedClass[] classes;
+    private Path compactFile;
+    private List<String> contents;
+    private Path dstDir;
+    private JsonReader[] readers;
+    private ClassSink sink;
+
+    @Setup
+    public void setUp() throws IOException, UnsupportedOpcodeException {
+        Logger.getLogger("edu.handong.csee.isel.cfg")
+              .setLevel(java.util.logging.Level.WARNING);
+
+        contents = BenchmarkCorpus.load(corpus, 1);
+        readers = new JsonReader[contents.size()];
+        classes = new GeneratedClass[contents.size()];
+        dstDir = Files.createTempDirectory("cfg-benchmark");
+        sink = new DirectoryClassSink(dstDir);
+        compactFile = dstDir.resolve("corpus" + CompactFile.EXTENSION);
+
+        for (int i = 0; i < readers.length; i++) {
+            ClassWriter writer;
+
+            writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+            readers[i] = new JsonReader(new StringReader(contents.get(i)));
+
+            readers[i].accept(writer);
+
+            classes[i] = new GeneratedClass(null, 
+                                            0, 
+                                            readers[i].readPackagename(), 
+                                            readers[i].readClassname(), 
+                                            writer.toByteArray());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(
+                             Files.newOutputStream(compactFile)))) {
+            CompactFile.writeHeader(out);
+
+            for (JsonReader reader : readers) {
+                CompactFile.write(out, reader.readClassInfo());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+        Files.walk(dstDir)
+             .sorted((a, b) -> b.compareTo(a))
+             .forEach(path -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String content : contents) {
+            blackhole.consume(new JsonReader(new StringReader(content)));
+        }
+    }
+
+    @Benchmark
+    public void parseCompact(Blackhole blackhole) throws IOException {
+        CompactFile in;
+
+        in = new CompactFile(compactFile);
+
+        while (in.hasNext()) {
+            blackhole.consume(new JsonReader(in.next()));
+        }
+    }
+
+    @Benchmark
+    public void accept(Blackhole blackhole) throws UnsupportedOpcodeException {
+        for (JsonReader reader : readers) {
+            ClassWriter writer;
+
+            writer = new ClassWriter(0);
+
+            reader.accept(writer);
+            blackhole.consume(writer.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public void acceptFromSkeleton(Blackhole blackhole) 
+            throws UnsupportedOpcodeException {
+        for (JsonReader reader : readers) {
+            ClassWriter writer;
+
+            writer = ClassSkeleton.newClassWriter(0);
+
+            reader.accept(writer);
+            blackhole.consume(writer.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public void acceptComputingFrames(Blackhole blackhole) 
+            throws UnsupportedOpcodeException {
+        for (JsonReader reader : readers) {
+            ClassWriter writer;
+
+            writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+            reader.accept(writer);
+            blackhole.consume(writer.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public void write(Blackhole blackhole) throws IOException {
+        for (GeneratedClass generatedClass : classes) {
+            blackhole.consume(sink.write(generatedClass.getPackagename(), 
+                                         generatedClass.getClassname(), 
+                                         generatedClass.getBytes()));
+        }
+    }
+}
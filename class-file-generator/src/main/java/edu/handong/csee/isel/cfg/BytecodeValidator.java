@@ -0,0 +1,264 @@
+package edu.handong.csee.isel.cfg;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Validator of <code>bytecode</code> json arrays, which rejects invalid
+ * bytecode before a <code>ClassWriter</code> visits it.
+ * <br></br>
+ * The bytecode is checked in a single linear pass. Every opcode has to be
+ * supported and followed by all of its operands, every operand has to fit in
+ * an unsigned byte, local variable indices have to be addressable without
+ * <code>wide</code>, the type of <code>newarray</code> has to be a primitive
+ * type, and every jump has to target the first element of an instruction.
+ * An instruction that uses a constant has to refer to a well formed constant
+ * of the kind that its opcode expects. The descriptor of the method has to
+ * follow the JVMS as well, since <code>ClassWriter</code> parses it without
+ * checking it.
+ */
+class BytecodeValidator {
+    private static final int MAX_OPERAND = 0xFF;
+
+    private BytecodeValidator() {
+    }
+
+    /**
+     * Validates <code>code</code> that does not use constants.
+     *
+     * @param code bytecode to be validated
+     * @throws UnsupportedOpcodeException if <code>code</code> is invalid,
+     *      with a message that tells the index of the invalid element
+     */
+    static void validate(int[] code) throws UnsupportedOpcodeException {
+        validate(code, ClassInfo.defaultConstants());
+    }
+
+    /**
+     * Validates the method descriptor <code>methodDesc</code> and
+     * <code>code</code> that refers to <code>constants</code>.
+     *
+     * @param methodDesc descriptor of the method of the bytecode
+     * @param code bytecode to be validated
+     * @param constants constants of the bytecode
+     * @throws UnsupportedOpcodeException if <code>methodDesc</code> is
+     *      malformed or <code>code</code> is invalid
+     */
+    static void validate(String methodDesc, int[] code, Symbol[] constants)
+            throws UnsupportedOpcodeException {
+        if (!Symbol.isMethodDescriptor(methodDesc)) {
+            throw new UnsupportedOpcodeException(
+                    "The method descriptor " + methodDesc + " is malformed.");
+        }
+
+        validate(code, constants);
+    }
+
+    /**
+     * Validates <code>code</code> that refers to <code>constants</code>.
+     *
+     * @param code bytecode to be validated
+     * @param constants constants of the bytecode
+     * @throws UnsupportedOpcodeException if <code>code</code> is invalid,
+     *      with a message that tells the index of the invalid element
+     */
+    static void validate(int[] code, Symbol[] constants)
+            throws UnsupportedOpcodeException {
+        boolean[] starts;
+        int[] jumps;
+        int jumpCount;
+
+        starts = new boolean[code.length];
+        jumps = new int[code.length / (OpcodeKind.JUMP.getOperands() + 1)];
+        jumpCount = 0;
+
+        for (int i = 0; i < code.length; i++) {
+            OpcodeKind kind;
+            int opcode;
+
+            opcode = code[i];
+            kind = SupportedOpcodes.kindOf(opcode);
+            starts[i] = true;
+
+            if (kind == OpcodeKind.UNSUPPORTED) {
+                throw new UnsupportedOpcodeException(
+                        "Unsupported opcode " + opcode + " is used at " + i
+                            + ".",
+                        opcode,
+                        i);
+            }
+
+            if (i + kind.getOperands() >= code.length) {
+                throw new UnsupportedOpcodeException(
+                        "Opcode " + opcode + " at " + i + " misses its "
+                            + "operands.",
+                        opcode,
+                        i);
+            }
+
+            for (int j = 1; j <= kind.getOperands(); j++) {
+                if (code[i + j] < 0 || code[i + j] > MAX_OPERAND) {
+                    throw new UnsupportedOpcodeException(
+                            "Operand " + code[i + j] + " at " + (i + j)
+                                + " is not an unsigned byte.",
+                            opcode,
+                            i + j);
+                }
+            }
+
+            if (opcode == Opcodes.NEWARRAY
+                    && (code[i + 1] < Opcodes.T_BOOLEAN
+                        || code[i + 1] > Opcodes.T_LONG)) {
+                throw new UnsupportedOpcodeException(
+                        "Array type " + code[i + 1] + " at " + (i + 1)
+                            + " is not a primitive type.",
+                        opcode,
+                        i + 1);
+            }
+
+            if (kind == OpcodeKind.JUMP) {
+                jumps[jumpCount++] = i;
+            } else if (kind.usesConstant()) {
+                validateConstant(code, i, constants);
+            }
+
+            i += kind.getOperands();
+        }
+
+        for (int j = 0; j < jumpCount; j++) {
+            int target;
+
+            target = (code[jumps[j] + 1] << 8) + code[jumps[j] + 2];
+
+            if (target >= code.length || !starts[target]) {
+                throw new UnsupportedOpcodeException(
+                        "Jump at " + jumps[j] + " targets " + target
+                            + ", which is not an instruction.",
+                        code[jumps[j]],
+                        jumps[j]);
+            }
+        }
+    }
+
+    /**
+     * Validates the constant that the instruction at <code>index</code>
+     * refers to.
+     */
+    private static void validateConstant(int[] code, int index,
+                                         Symbol[] constants)
+            throws UnsupportedOpcodeException {
+        Symbol constant;
+        String expected;
+        int constantIndex;
+        int opcode;
+
+        opcode = code[index];
+        constantIndex = SupportedOpcodes.constantIndex(code, index);
+
+        if (constantIndex >= constants.length) {
+            throw new UnsupportedOpcodeException(
+                    "Constant " + constantIndex + " at " + (index + 1)
+                        + " is not in the constants.",
+                    opcode,
+                    index + 1);
+        }
+
+        constant = constants[constantIndex];
+
+        if (!constant.isWellFormed()) {
+            throw new UnsupportedOpcodeException(
+                    "Constant " + constantIndex + " (" + constant + ") at "
+                        + (index + 1) + " is malformed.",
+                    opcode,
+                    index + 1);
+        }
+
+        expected = expectedKind(opcode, constant);
+
+        if (expected != null) {
+            throw new UnsupportedOpcodeException(
+                    "Constant " + constantIndex + " (" + constant + ") at "
+                        + (index + 1) + " is not " + expected + ".",
+                    opcode,
+                    index + 1);
+        }
+
+        if (opcode == Opcodes.INVOKEINTERFACE
+                && (code[index + 3] != constant.getArgumentSize() + 1
+                    || code[index + 4] != 0)) {
+            throw new UnsupportedOpcodeException(
+                    "Operands " + code[index + 3] + " and " + code[index + 4]
+                        + " at " + (index + 3) + " are not the number of "
+                        + "the argument slots and zero.",
+                    opcode,
+                    index + 3);
+        }
+    }
+
+    /**
+     * Checks if <code>constant</code> is of the kind that
+     * <code>opcode</code> expects.
+     *
+     * @return <code>null</code> if <code>constant</code> is of the kind, or
+     *      the description of the kind otherwise
+     */
+    private static String expectedKind(int opcode, Symbol constant) {
+        Symbol.Kind kind;
+
+        kind = constant.getKind();
+
+        switch (opcode) {
+        case Opcodes.LDC:
+        case SupportedOpcodes.LDC_W:
+            return kind == Symbol.Kind.INT
+                   || kind == Symbol.Kind.FLOAT
+                   || kind == Symbol.Kind.STRING
+                   || kind == Symbol.Kind.CLASS
+                           ? null
+                           : "an int, a float, a string or a class";
+        case SupportedOpcodes.LDC2_W:
+            return kind == Symbol.Kind.LONG || kind == Symbol.Kind.DOUBLE
+                           ? null
+                           : "a long or a double";
+        case Opcodes.GETSTATIC:
+        case Opcodes.PUTSTATIC:
+        case Opcodes.GETFIELD:
+        case Opcodes.PUTFIELD:
+            return kind == Symbol.Kind.FIELD ? null : "a field";
+        case Opcodes.INVOKEVIRTUAL:
+            return kind == Symbol.Kind.METHOD && !isInitializer(constant)
+                           ? null
+                           : "a method of a class";
+        case Opcodes.INVOKESPECIAL:
+            return (kind == Symbol.Kind.METHOD
+                        || kind == Symbol.Kind.INTERFACE_METHOD)
+                   && !constant.getName().equals("<clinit>")
+                   && (!constant.getName().equals("<init>")
+                       || constant.getType().getSort() == Type.VOID)
+                           ? null
+                           : "a method";
+        case Opcodes.INVOKESTATIC:
+            return (kind == Symbol.Kind.METHOD
+                        || kind == Symbol.Kind.INTERFACE_METHOD)
+                   && !isInitializer(constant)
+                           ? null
+                           : "a method";
+        case Opcodes.INVOKEINTERFACE:
+            return kind == Symbol.Kind.INTERFACE_METHOD
+                   && !isInitializer(constant)
+                           ? null
+                           : "a method of an interface";
+        case Opcodes.NEW:
+            return kind == Symbol.Kind.CLASS
+                   && !constant.getName().startsWith("[")
+                           ? null
+                           : "a class that is not an array";
+        default:
+            return kind == Symbol.Kind.CLASS ? null : "a class";
+        }
+    }
+
+    private static boolean isInitializer(Symbol constant) {
+        return constant.getName().startsWith("<");
+    }
+}
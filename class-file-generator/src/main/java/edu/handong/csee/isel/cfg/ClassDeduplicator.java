@@ -0,0 +1,238 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Bounded LRU cache of generated class files keyed by the part of a class
+ * that does not depend on its name, which is the version, the method name,
+ * the method descriptor and the bytecode.
+ * <br></br>
+ * A class whose key is cached does not have to be generated again. Its class
+ * file is the cached class file with the class name replaced, since the
+ * constant pool entry of the class name is the only part of a generated class
+ * file that depends on the name. The code and the stack map frames refer to
+ * the class through that entry, so they are reused as they are.
+ */
+class ClassDeduplicator {
+    private Map<Key, Template> templates;
+
+    /**
+     * Constructs a <code>ClassDeduplicator</code> that keeps at most
+     * <code>capacity</code> class files.
+     *
+     * @param capacity maximum number of cached class files
+     */
+    ClassDeduplicator(int capacity) {
+        templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, Template> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Finds the cached class file that has the same key as
+     * <code>classInfo</code>.
+     *
+     * @param classInfo information of the class to be generated
+     * @return the cached class file, or <code>null</code> if there is none
+     */
+    Template find(ClassInfo classInfo) {
+        synchronized (templates) {
+            return templates.get(new Key(classInfo));
+        }
+    }
+
+    /**
+     * Caches <code>bytes</code> generated from <code>classInfo</code>.
+     *
+     * @param classInfo information of the generated class
+     * @param bytes the generated class file
+     */
+    void add(ClassInfo classInfo, byte[] bytes) {
+        Template template;
+
+        template = Template.of(classInfo, bytes);
+
+        if (template == null) {
+            return;
+        }
+
+        synchronized (templates) {
+            templates.putIfAbsent(new Key(classInfo), template);
+        }
+    }
+
+    /**
+     * Cached class file with the location of its class name.
+     */
+    static class Template {
+        private byte[] bytes;
+        private String classname;
+        private int nameEnd;
+        private int nameStart;
+        private String packagename;
+
+        private Template(byte[] bytes, String packagename, String classname,
+                         int nameStart, int nameEnd) {
+            this.bytes = bytes;
+            this.packagename = packagename;
+            this.classname = classname;
+            this.nameStart = nameStart;
+            this.nameEnd = nameEnd;
+        }
+
+        /**
+         * Creates a template from <code>bytes</code>. A class file whose
+         * class name is shared with its method name, its descriptor or a
+         * string of its constants cannot be renamed alone, so it is not a
+         * template. Neither is a class file whose descriptors refer to the
+         * class itself, since its stack map frames share the entry of the
+         * class name with the descriptors that are not renamed.
+         *
+         * @param classInfo information of the generated class
+         * @param bytes the generated class file
+         * @return the template, or <code>null</code> if <code>bytes</code>
+         *      cannot be a template
+         */
+        private static Template of(ClassInfo classInfo, byte[] bytes) {
+            ClassReader reader;
+            String descriptor;
+            String name;
+            int nameIndex;
+            int offset;
+
+            name = internalName(classInfo.getPackagename(),
+                                classInfo.getClassname());
+
+            descriptor = "L" + name + ";";
+
+            if (name.equals(classInfo.getMethodname())
+                    || name.equals(classInfo.getMethodDesc())
+                    || classInfo.getMethodDesc().contains(descriptor)) {
+                return null;
+            }
+
+            for (Symbol constant : classInfo.getConstants()) {
+                if (name.equals(constant.getValue())
+                        || name.equals(constant.getOwner())
+                        || name.equals(constant.getName())
+                        || name.equals(constant.getDesc())
+                        || contains(constant.getName(), descriptor)
+                        || contains(constant.getDesc(), descriptor)) {
+                    return null;
+                }
+            }
+
+            reader = new ClassReader(bytes);
+            nameIndex = reader.readUnsignedShort(
+                    reader.getItem(reader.readUnsignedShort(reader.header
+                                                                + 2)));
+            offset = reader.getItem(nameIndex);
+
+            return new Template(bytes,
+                                classInfo.getPackagename(),
+                                classInfo.getClassname(),
+                                offset,
+                                offset + 2 + reader.readUnsignedShort(offset));
+        }
+
+        String getClassname() {
+            return classname;
+        }
+
+        String getPackagename() {
+            return packagename;
+        }
+
+        /**
+         * Creates the class file of this template with the class name
+         * replaced.
+         *
+         * @param packagename packagename of the class file
+         * @param classname classname of the class file
+         * @return the renamed class file
+         */
+        byte[] rename(String packagename, String classname) {
+            ByteArrayOutputStream out;
+
+            out = new ByteArrayOutputStream(bytes.length + 32);
+
+            try (DataOutputStream data = new DataOutputStream(out)) {
+                data.write(bytes, 0, nameStart);
+                data.writeUTF(internalName(packagename, classname));
+                data.write(bytes, nameEnd, bytes.length - nameEnd);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return out.toByteArray();
+        }
+
+        private static boolean contains(String string, String descriptor) {
+            return string != null && string.contains(descriptor);
+        }
+
+        private static String internalName(String packagename,
+                                           String classname) {
+            return packagename.replace('.', '/') + '/' + classname;
+        }
+    }
+
+    /**
+     * Name independent part of a class.
+     */
+    private static class Key {
+        private int[] bytecode;
+        private Symbol[] constants;
+        private int hash;
+        private String methodDesc;
+        private String methodname;
+        private int version;
+
+        private Key(ClassInfo classInfo) {
+            version = classInfo.getVersion();
+            methodname = classInfo.getMethodname();
+            methodDesc = classInfo.getMethodDesc();
+            bytecode = classInfo.getBytecode();
+            constants = classInfo.getConstants();
+            hash = (Objects.hash(version, methodname, methodDesc)
+                        * 31 + Arrays.hashCode(bytecode))
+                       * 31 + Arrays.hashCode(constants);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            Key key;
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            key = (Key) obj;
+
+            return hash == key.hash
+                   && version == key.version
+                   && methodname.equals(key.methodname)
+                   && methodDesc.equals(key.methodDesc)
+                   && Arrays.equals(bytecode, key.bytecode)
+                   && Arrays.equals(constants, key.constants);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,734 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonWriter;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Extractor of the json contents of class files, which is the reverse of the
+ * generation.
+ * <br></br>
+ * A class file is read by a <code>ClassReader</code>, and its only method
+ * other than the constructor is mapped back to the elements of a
+ * <code>ClassInfo</code>. Instructions are placed in the
+ * <code>bytecode</code> array as <code>JsonReader</code> expects them: a
+ * shortened instruction such as <code>iload_1</code> is spelled as
+ * <code>iload 1</code>, and a jump refers to the array index of its target.
+ * An instruction that refers to the constant pool refers to the index of its
+ * symbol in the <code>constants</code> array instead, where each symbol of a
+ * method is placed once and is shared through a <code>SymbolCache</code>.
+ * Class files that use an opcode out of {@link SupportedOpcodes}, a constant
+ * that is not a symbol, or whose shape cannot be generated, are skipped.
+ * <br></br>
+ * Class files of a directory or a jar file are extracted by a pool of
+ * threads and written to a json lines file in the order they are extracted.
+ */
+class ClassExtractor {
+    private static final Logger LOGGER
+            = Logger.getLogger(ClassExtractor.class.getName());
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+    private static final int MAX_CONSTANT = 0xFFFF;
+    private static final int MAX_JUMP_TARGET = 0xFFFF;
+    private static final int MAX_OPERAND = 0xFF;
+
+    private AtomicLong extracted;
+    private AtomicLong skipped;
+    private SymbolCache symbols;
+    private int threads;
+
+    /**
+     * Constructs a <code>ClassExtractor</code> object.
+     *
+     * @param threads number of threads that extract class files
+     */
+    ClassExtractor(int threads) {
+        this.threads = threads;
+        extracted = new AtomicLong();
+        skipped = new AtomicLong();
+        symbols = new SymbolCache();
+    }
+
+    /**
+     * Extracts the class files of <code>src</code> to json lines file
+     * <code>jsonlFile</code>.
+     *
+     * @param src directory that contains class files, jar file, or class
+     *      file
+     * @param jsonlFile json lines file that json contents to be written
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>src</code> or writing <code>jsonlFile</code>, or the
+     *      extraction is interrupted
+     */
+    void extract(Path src, Path jsonlFile) throws IOException {
+        ThreadPoolExecutor extractors;
+        double seconds;
+        long start;
+
+        start = System.nanoTime();
+
+        try (BufferedWriter out = Files.newBufferedWriter(jsonlFile)) {
+            extractors = GenerationPipeline.newStage(
+                    threads, threads * QUEUE_CAPACITY_PER_THREAD);
+
+            try {
+                if (Files.isDirectory(src)) {
+                    walk(extractors, out, src);
+                } else if (src.getFileName().toString().endsWith(".class")) {
+                    extractors.execute(
+                            () -> extract(out, src.toString(), src));
+                } else {
+                    readJar(extractors, out, src);
+                }
+            } finally {
+                GenerationPipeline.awaitStage(extractors);
+            }
+        }
+
+        seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        LOGGER.info(String.format("Extracted %d classes and skipped %d class "
+                                      + "files in %.3f s (%.1f files/sec).",
+                                  extracted.get(),
+                                  skipped.get(),
+                                  seconds,
+                                  (extracted.get() + skipped.get())
+                                      / seconds));
+    }
+
+    long getExtracted() {
+        return extracted.get();
+    }
+
+    long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Maps the class of <code>bytes</code> to a <code>ClassInfo</code>.
+     *
+     * @param bytes class file to be extracted
+     * @return the information of the class
+     * @throws UnsupportedOpcodeException if the class uses an unsupported
+     *      opcode, or does not have the shape of a generated class
+     * @throws IllegalArgumentException if <code>bytes</code> is not a valid
+     *      class file
+     */
+    static ClassInfo extract(byte[] bytes) throws UnsupportedOpcodeException {
+        return extract(bytes, new SymbolCache());
+    }
+
+    /**
+     * Maps the class of <code>bytes</code> to a <code>ClassInfo</code> whose
+     * constants are interned by <code>symbols</code>.
+     *
+     * @param bytes class file to be extracted
+     * @param symbols cache of the symbols of the constants
+     * @return the information of the class
+     * @throws UnsupportedOpcodeException if the class uses an unsupported
+     *      opcode or constant, or does not have the shape of a generated
+     *      class
+     * @throws IllegalArgumentException if <code>bytes</code> is not a valid
+     *      class file
+     */
+    static ClassInfo extract(byte[] bytes, SymbolCache symbols)
+            throws UnsupportedOpcodeException {
+        Extraction extraction;
+
+        extraction = new Extraction(symbols);
+
+        new ClassReader(bytes).accept(extraction,
+                                      ClassReader.SKIP_DEBUG
+                                      | ClassReader.SKIP_FRAMES);
+
+        return extraction.toClassInfo();
+    }
+
+    /**
+     * Writes <code>classInfo</code> as a single line json content whose
+     * elements are in the order of the json file format. The
+     * <code>constants</code> array is written only if the class has
+     * constants.
+     *
+     * @param classInfo information of a class
+     * @return the json content
+     */
+    static String toJson(ClassInfo classInfo) {
+        StringWriter content;
+
+        content = new StringWriter();
+
+        try (JsonWriter out = new JsonWriter(content)) {
+            out.setStrictness(Strictness.LENIENT);
+            out.beginObject();
+            out.name("version").value(classInfo.getVersion());
+            out.name("packagename").value(classInfo.getPackagename());
+            out.name("classname").value(classInfo.getClassname());
+            out.name("methodname").value(classInfo.getMethodname());
+            out.name("methodDesc").value(classInfo.getMethodDesc());
+            out.name("bytecode").beginArray();
+
+            for (int element : classInfo.getBytecode()) {
+                out.value(element);
+            }
+
+            out.endArray();
+
+            if (classInfo.getConstants().length > 0) {
+                out.name("constants").beginArray();
+
+                for (Symbol constant : classInfo.getConstants()) {
+                    writeConstant(out, constant);
+                }
+
+                out.endArray();
+            }
+
+            out.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return content.toString();
+    }
+
+    private static void writeConstant(JsonWriter out, Symbol constant)
+            throws IOException {
+        out.beginObject();
+
+        switch (constant.getKind()) {
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+            out.name(constant.getKind().name().toLowerCase())
+               .value((Number) constant.getValue());
+            break;
+        case STRING:
+            out.name("string").value((String) constant.getValue());
+            break;
+        case CLASS:
+            out.name("class").value(constant.getName());
+            break;
+        default:
+            out.name("owner").value(constant.getOwner());
+            out.name("name").value(constant.getName());
+            out.name("desc").value(constant.getDesc());
+
+            if (constant.getKind() == Symbol.Kind.INTERFACE_METHOD) {
+                out.name("interface").value(true);
+            }
+        }
+
+        out.endObject();
+    }
+
+    private void walk(ThreadPoolExecutor extractors, Writer out, Path srcDir)
+            throws IOException {
+        Files.walkFileTree(
+                srcDir,
+                new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(
+                                Path path, BasicFileAttributes attr) {
+                            if (path.getFileName()
+                                    .toString()
+                                    .endsWith(".class")) {
+                                extractors.execute(
+                                        () -> extract(out,
+                                                      path.toString(),
+                                                      path));
+                            }
+
+                            return FileVisitResult.CONTINUE;
+                        }});
+    }
+
+    /**
+     * Reads the class files of <code>jarFile</code> one entry at a time and
+     * passes them to <code>extractors</code>.
+     *
+     * @param extractors stage that extracts class files
+     * @param out writer of the json lines file
+     * @param jarFile jar file that contains class files
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>jarFile</code>
+     */
+    private void readJar(ThreadPoolExecutor extractors, Writer out,
+                         Path jarFile) throws IOException {
+        try (ZipInputStream in
+                = new ZipInputStream(Files.newInputStream(jarFile))) {
+            ZipEntry entry;
+
+            while ((entry = in.getNextEntry()) != null) {
+                String location;
+                byte[] bytes;
+
+                if (entry.isDirectory()
+                        || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                location = jarFile + "!/" + entry.getName();
+                bytes = in.readAllBytes();
+
+                extractors.execute(() -> extract(out, location, bytes));
+            }
+        }
+    }
+
+    private void extract(Writer out, String location, Path classFile) {
+        byte[] bytes;
+
+        try (InputStream in = Files.newInputStream(classFile)) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            skip("Skip reading " + location + ". " + e.getMessage(), true);
+
+            return;
+        }
+
+        extract(out, location, bytes);
+    }
+
+    /**
+     * Extracts class file <code>bytes</code> and writes its json content to
+     * <code>out</code>. The class file is skipped if it cannot be extracted.
+     *
+     * @param out writer of the json lines file
+     * @param location location of the class file
+     * @param bytes class file to be extracted
+     */
+    private void extract(Writer out, String location, byte[] bytes) {
+        String content;
+
+        try {
+            content = toJson(extract(bytes, symbols));
+        } catch (UnsupportedOpcodeException e) {
+            skip("Skip extracting " + location + ". " + e.getMessage(), false);
+
+            return;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            skip("Skip reading " + location + ". The class file is "
+                     + "malformed.",
+                 true);
+
+            return;
+        }
+
+        try {
+            synchronized (out) {
+                out.write(content);
+                out.write('\n');
+            }
+
+            extracted.incrementAndGet();
+        } catch (IOException e) {
+            skip("Skip writing json content of " + location + ". "
+                     + e.getMessage(),
+                 true);
+        }
+    }
+
+    private void skip(String message, boolean warning) {
+        skipped.incrementAndGet();
+
+        if (warning) {
+            LOGGER.warning(message);
+        } else {
+            LOGGER.info(message);
+        }
+    }
+
+    /**
+     * Visitor of a class file that collects the elements of its
+     * <code>ClassInfo</code>. The first reason that the class cannot be
+     * extracted is kept, since visitors cannot throw checked exceptions.
+     */
+    private static class Extraction extends ClassVisitor {
+        private String failure;
+        private Instructions method;
+        private int methods;
+        private String name;
+        private SymbolCache symbols;
+        private int version;
+
+        private Extraction(SymbolCache symbols) {
+            super(Opcodes.ASM9);
+            this.symbols = symbols;
+        }
+
+        @Override
+        public void visit(int version, int access, String name,
+                          String signature, String superName,
+                          String[] interfaces) {
+            this.version = version & 0xFFFF;
+            this.name = name;
+
+            if (name.indexOf('/') == -1) {
+                failure = "The class is in the unnamed package.";
+            }
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name,
+                                         String descriptor, String signature,
+                                         String[] exceptions) {
+            if (name.equals("<init>")) {
+                return null;
+            }
+
+            methods++;
+
+            if ((access & (Opcodes.ACC_STATIC
+                           | Opcodes.ACC_ABSTRACT
+                           | Opcodes.ACC_NATIVE)) != 0
+                    || name.equals("<clinit>")) {
+                fail("The method " + name + " is not an instance method "
+                     + "with code.");
+
+                return null;
+            }
+
+            method = new Instructions(this, name, descriptor);
+
+            return method;
+        }
+
+        private void fail(String message) {
+            if (failure == null) {
+                failure = message;
+            }
+        }
+
+        private ClassInfo toClassInfo() throws UnsupportedOpcodeException {
+            int[] bytecode;
+            Symbol[] constants;
+            int slash;
+
+            if (failure == null && methods != 1) {
+                failure = "The class has " + methods + " methods other "
+                          + "than constructors.";
+            }
+
+            if (failure != null) {
+                throw new UnsupportedOpcodeException(failure);
+            }
+
+            bytecode = method.toBytecode();
+            constants = method.constants.toArray(new Symbol[0]);
+            slash = name.lastIndexOf('/');
+
+            BytecodeValidator.validate(method.descriptor, bytecode, constants);
+
+            return new ClassInfo(version,
+                                 name.substring(0, slash).replace('/', '.'),
+                                 name.substring(slash + 1),
+                                 method.name,
+                                 method.descriptor,
+                                 bytecode,
+                                 constants);
+        }
+    }
+
+    /**
+     * Visitor of a method that places its instructions in a
+     * <code>bytecode</code> array and its symbols in a <code>constants</code>
+     * array. Jump targets are patched when the method ends, since a label can
+     * be visited after the jumps to it.
+     */
+    private static class Instructions extends MethodVisitor {
+        private int[] code;
+        private Map<Symbol, Integer> constantIndices;
+        private List<Symbol> constants;
+        private String descriptor;
+        private Extraction extraction;
+        private List<Integer> jumpIndices;
+        private List<Label> jumps;
+        private Map<Label, Integer> labels;
+        private String name;
+        private int size;
+
+        private Instructions(Extraction extraction, String name,
+                             String descriptor) {
+            super(Opcodes.ASM9);
+            this.extraction = extraction;
+            this.name = name;
+            this.descriptor = descriptor;
+            code = new int[64];
+            constantIndices = new HashMap<>();
+            constants = new ArrayList<>();
+            jumps = new ArrayList<>();
+            jumpIndices = new ArrayList<>();
+            labels = new IdentityHashMap<>();
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            if (check(opcode, OpcodeKind.NO_ARG)) {
+                add(opcode);
+            }
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            if (check(opcode, OpcodeKind.UNARY)) {
+                add(opcode);
+                add(operand);
+            }
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            if (!check(opcode, OpcodeKind.VAR)) {
+                return;
+            }
+
+            if (var > MAX_OPERAND) {
+                extraction.fail("The local variable " + var + " needs wide.");
+
+                return;
+            }
+
+            add(opcode);
+            add(var);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            if (check(opcode, OpcodeKind.JUMP)) {
+                add(opcode);
+                jumps.add(label);
+                jumpIndices.add(size);
+                add(0);
+                add(0);
+            }
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            labels.put(label, size);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (check(opcode, OpcodeKind.TYPE)) {
+                addConstant(opcode, extraction.symbols.internClass(type));
+            }
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name,
+                                   String descriptor) {
+            if (check(opcode, OpcodeKind.FIELD)) {
+                addConstant(opcode,
+                            extraction.symbols.internMember(owner,
+                                                            name,
+                                                            descriptor,
+                                                            false));
+            }
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name,
+                                    String descriptor, boolean isInterface) {
+            if (!check(opcode,
+                       opcode == Opcodes.INVOKEINTERFACE
+                               ? OpcodeKind.INTERFACE_METHOD
+                               : OpcodeKind.METHOD)) {
+                return;
+            }
+
+            addConstant(opcode,
+                        extraction.symbols.internMember(owner,
+                                                        name,
+                                                        descriptor,
+                                                        isInterface));
+
+            if (opcode == Opcodes.INVOKEINTERFACE) {
+                add(Type.getArgumentsAndReturnSizes(descriptor) >> 2);
+                add(0);
+            }
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor,
+                                           Handle bootstrapMethodHandle,
+                                           Object... bootstrapMethodArguments) {
+            unsupported(Opcodes.INVOKEDYNAMIC);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            Type type;
+
+            if (value instanceof Long || value instanceof Double) {
+                addConstant(SupportedOpcodes.LDC2_W,
+                            extraction.symbols.internValue(value));
+            } else if (value instanceof Integer || value instanceof Float
+                           || value instanceof String) {
+                addConstant(Opcodes.LDC,
+                            extraction.symbols.internValue(value));
+            } else if (value instanceof Type
+                           && ((Type) value).getSort() != Type.METHOD) {
+                type = (Type) value;
+
+                addConstant(Opcodes.LDC,
+                            extraction.symbols.internClass(
+                                    type.getInternalName()));
+            } else {
+                extraction.fail("The constant " + value + " of "
+                                + value.getClass().getSimpleName()
+                                + " is not supported.");
+            }
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            unsupported(Opcodes.IINC);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt,
+                                         Label... labels) {
+            unsupported(Opcodes.TABLESWITCH);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys,
+                                          Label[] labels) {
+            unsupported(Opcodes.LOOKUPSWITCH);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor,
+                                            int numDimensions) {
+            unsupported(Opcodes.MULTIANEWARRAY);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler,
+                                       String type) {
+            extraction.fail("The method has an exception handler.");
+        }
+
+        private boolean check(int opcode, OpcodeKind kind) {
+            if (SupportedOpcodes.kindOf(opcode) != kind) {
+                unsupported(opcode);
+
+                return false;
+            }
+
+            return true;
+        }
+
+        private void unsupported(int opcode) {
+            extraction.fail("Unsupported opcode " + opcode + " is used.");
+        }
+
+        /**
+         * Places <code>constant</code> in the <code>constants</code> array
+         * once, and adds the instruction that refers to it. An
+         * <code>ldc</code> whose index does not fit in a byte becomes an
+         * <code>ldc_w</code>.
+         *
+         * @param opcode opcode of the instruction
+         * @param constant constant that the instruction refers to
+         */
+        private void addConstant(int opcode, Symbol constant) {
+            Integer index;
+
+            index = constantIndices.get(constant);
+
+            if (index == null) {
+                index = constants.size();
+
+                if (index > MAX_CONSTANT) {
+                    extraction.fail("The method has more than "
+                                    + (MAX_CONSTANT + 1) + " constants.");
+
+                    return;
+                }
+
+                constants.add(constant);
+                constantIndices.put(constant, index);
+            }
+
+            if (opcode == Opcodes.LDC && index > MAX_OPERAND) {
+                opcode = SupportedOpcodes.LDC_W;
+            }
+
+            add(opcode);
+
+            if (opcode == Opcodes.LDC) {
+                add(index);
+            } else {
+                add(index >> 8);
+                add(index & 0xFF);
+            }
+        }
+
+        private void add(int element) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+
+            code[size++] = element;
+        }
+
+        /**
+         * Patches the jumps with the indices of their targets.
+         *
+         * @return the <code>bytecode</code> array of this method
+         * @throws UnsupportedOpcodeException if a target is too far to be
+         *      addressed
+         */
+        private int[] toBytecode() throws UnsupportedOpcodeException {
+            for (int i = 0; i < jumps.size(); i++) {
+                int index;
+                int target;
+
+                index = jumpIndices.get(i);
+                target = labels.get(jumps.get(i));
+
+                if (target > MAX_JUMP_TARGET) {
+                    throw new UnsupportedOpcodeException(
+                            "The jump target " + target + " is too far.");
+                }
+
+                code[index] = target >> 8;
+                code[index + 1] = target & 0xFF;
+            }
+
+            return Arrays.copyOf(code, size);
+        }
+    }
+}
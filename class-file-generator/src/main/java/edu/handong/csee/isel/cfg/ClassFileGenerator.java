@@ -1,34 +1,31 @@
 package edu.handong.csee.isel.cfg;
 
 import java.io.File;
-import java.io.InputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.util.logging.Logger;
-
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
+import java.util.zip.Deflater;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import org.objectweb.asm.ClassWriter;
-
 public class ClassFileGenerator {
     private static final Logger LOGGER 
             = Logger.getLogger(ClassFileGenerator.class.getName());
+    private static final int DEDUP_CAPACITY = 4096;
+    private static final String SYNTHETIC_PACKAGE = "synth";
 
     private CommandLine cmd;    
+    private boolean failed;
     private Options opts;
 
     private ClassFileGenerator(String[] args) throws ParseException {
@@ -37,149 +34,797 @@ public class ClassFileGenerator {
     }
 
     private Options defineOptions() {
+        OptionGroup outputs;
+
+        outputs = new OptionGroup().addOption(Option.builder("d")
+                                                    .longOpt("directory")
+                                                    .hasArg()
+                                                    .argName("output_directory")
+                                                    .desc("set output directory " 
+                                                          + "that generated " 
+                                                          + "class files to be " 
+                                                          + "saved")
+                                                    .build())
+                                   .addOption(Option.builder("j")
+                                                    .longOpt("jar")
+                                                    .hasArg()
+                                                    .argName("jar_file")
+                                                    .desc("save generated " 
+                                                          + "class files to a " 
+                                                          + "single jar file " 
+                                                          + "instead of output " 
+                                                          + "directory")
+                                                    .build());
+
         return new Options().addOption(Option.builder("h")
                                              .longOpt("help")
                                              .desc("print this message")
                                              .build())
-                            .addOption(Option.builder("d")
-                                             .longOpt("directory")
+                            .addOptionGroup(outputs)
+                            .addOption(Option.builder("c")
+                                             .longOpt("compression-level")
+                                             .hasArg()
+                                             .argName("0-9")
+                                             .type(Integer.class)
+                                             .desc("set compression level of "
+                                                   + "jar file, where 0 "
+                                                   + "stores class files "
+                                                   + "without compression "
+                                                   + "(default: 6)")
+                                             .build())
+                            .addOption(Option.builder("f")
+                                             .longOpt("fast-frames")
+                                             .desc("compute stack map frames "
+                                                   + "without loading classes "
+                                                   + "and fall back to ASM for "
+                                                   + "methods it cannot "
+                                                   + "analyze")
+                                             .build())
+                            .addOption(Option.builder("i")
+                                             .longOpt("incremental")
+                                             .desc("only generate class files "
+                                                   + "of changed json files "
+                                                   + "and delete class files "
+                                                   + "of removed json files")
+                                             .build())
+                            .addOption(Option.builder("l")
+                                             .longOpt("from-list")
+                                             .hasArg()
+                                             .argName("file")
+                                             .desc("read paths of source "
+                                                   + "files separated by "
+                                                   + "newlines or NULs from "
+                                                   + "a file, or from the "
+                                                   + "standard input if the "
+                                                   + "file is -, instead of "
+                                                   + "walking a source "
+                                                   + "directory")
+                                             .build())
+                            .addOption(Option.builder("m")
+                                             .longOpt("metrics")
+                                             .hasArg()
+                                             .argName("metrics_file")
+                                             .desc("write latencies of each "
+                                                   + "stage, bytes in and out, "
+                                                   + "and skipped files by "
+                                                   + "cause to a json file")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("optimize")
+                                             .desc("optimize bytecode of "
+                                                   + "json contents with "
+                                                   + "peephole rewrites "
+                                                   + "before generating "
+                                                   + "class files")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("pack")
+                                             .hasArg()
+                                             .argName("N")
+                                             .type(Integer.class)
+                                             .desc("pack N json contents of "
+                                                   + "the same package and "
+                                                   + "version into one class "
+                                                   + "of N methods")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("pack-mapping")
+                                             .hasArg()
+                                             .argName("mapping_file")
+                                             .desc("record the class and "
+                                                   + "the method of each "
+                                                   + "packed json content to "
+                                                   + "a mapping file")
+                                             .build())
+                            .addOption(Option.builder("s")
+                                             .longOpt("server")
+                                             .hasArg()
+                                             .argName("port")
+                                             .type(Integer.class)
+                                             .desc("run as a server that "
+                                                   + "generates class files "
+                                                   + "for requests over the "
+                                                   + "localhost port instead "
+                                                   + "of a source directory")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("server-root")
+                                             .hasArg()
+                                             .argName("dir")
+                                             .desc("let the server generate "
+                                                   + "directories under dir "
+                                                   + "(default: only json "
+                                                   + "contents)")
+                                             .build())
+                            .addOption(Option.builder("u")
+                                             .longOpt("dedup")
+                                             .desc("reuse class files of "
+                                                   + "classes that only "
+                                                   + "differ in names")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("dedup-index")
+                                             .hasArg()
+                                             .argName("index_file")
+                                             .desc("record classes that only "
+                                                   + "differ in names from a "
+                                                   + "generated class to an "
+                                                   + "index file instead of "
+                                                   + "writing them")
+                                             .build())
+                            .addOption(Option.builder("t")
+                                             .longOpt("threads")
+                                             .hasArg()
+                                             .argName("N")
+                                             .type(Integer.class)
+                                             .desc("set number of threads "
+                                                   + "that generate class "
+                                                   + "files (default: 1)")
+                                             .build())
+                            .addOption(Option.builder("w")
+                                             .longOpt("writers")
+                                             .hasArg()
+                                             .argName("N")
+                                             .type(Integer.class)
+                                             .desc("set number of threads "
+                                                   + "that write class files "
+                                                   + "(default: 1)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("write-queue")
+                                             .hasArg()
+                                             .argName("depth")
+                                             .type(Integer.class)
+                                             .desc("set number of generated "
+                                                   + "class files that can "
+                                                   + "wait for writers "
+                                                   + "(default: 64)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("errors")
+                                             .hasArg()
+                                             .argName("errors_file")
+                                             .desc("write skipped contents "
+                                                   + "with their failures to "
+                                                   + "a json lines file")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("fsync-batch")
+                                             .hasArg()
+                                             .argName("N")
+                                             .type(Integer.class)
+                                             .desc("sync written class files "
+                                                   + "to the storage every N "
+                                                   + "class files")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("synthesize")
+                                             .hasArg()
+                                             .argName("count")
+                                             .type(Long.class)
+                                             .desc("generate class files of "
+                                                   + "count random classes "
+                                                   + "instead of reading "
+                                                   + "json files")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("seed")
+                                             .hasArg()
+                                             .argName("seed")
+                                             .type(Long.class)
+                                             .desc("set seed of random "
+                                                   + "classes (default: 0)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("synth-desc")
+                                             .hasArg()
+                                             .argName("method_desc")
+                                             .desc("set method descriptor "
+                                                   + "of random classes "
+                                                   + "(default: (II)I)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("synth-length")
+                                             .hasArg()
+                                             .argName("N")
+                                             .type(Integer.class)
+                                             .desc("set minimum length of "
+                                                   + "the bytecode of random "
+                                                   + "classes (default: 64)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("branch-density")
+                                             .hasArg()
+                                             .argName("0-1")
+                                             .type(Double.class)
+                                             .desc("set probability that a "
+                                                   + "statement of random "
+                                                   + "classes is a branch "
+                                                   + "(default: 0.2)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("loop-density")
+                                             .hasArg()
+                                             .argName("0-1")
+                                             .type(Double.class)
+                                             .desc("set probability that a "
+                                                   + "statement of random "
+                                                   + "classes is a loop "
+                                                   + "(default: 0.1)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("to-compact")
                                              .hasArg()
                                              .argName("output_directory")
-                                             .desc("set output directory that " 
-                                                   + "generated class files to " 
-                                                   + "be saved")
+                                             .desc("convert json files to "
+                                                   + "compact files under an "
+                                                   + "output directory "
+                                                   + "instead of generating "
+                                                   + "class files")
+                                             .build())
+                            .addOption(Option.builder("v")
+                                             .longOpt("validate-only")
+                                             .desc("only validate json files "
+                                                   + "without generating "
+                                                   + "class files")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("verify")
+                                             .hasArg()
+                                             .argName("report_file")
+                                             .desc("load and run the class "
+                                                   + "files of a directory "
+                                                   + "or a jar file, and "
+                                                   + "write the outcomes to "
+                                                   + "a json lines report "
+                                                   + "instead of generating "
+                                                   + "class files")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("verify-timeout")
+                                             .hasArg()
+                                             .argName("millis")
+                                             .type(Long.class)
+                                             .desc("set time that each "
+                                                   + "method can run while "
+                                                   + "verifying (default: "
+                                                   + "1000)")
+                                             .build())
+                            .addOption(Option.builder()
+                                             .longOpt("watch")
+                                             .desc("keep regenerating class "
+                                                   + "files of json files "
+                                                   + "that change in the "
+                                                   + "source directory until "
+                                                   + "terminated")
+                                             .build())
+                            .addOption(Option.builder("x")
+                                             .longOpt("extract")
+                                             .hasArg()
+                                             .argName("jsonl_file")
+                                             .desc("extract json contents "
+                                                   + "of the class files of "
+                                                   + "a directory or a jar "
+                                                   + "file to a json lines "
+                                                   + "file instead of "
+                                                   + "generating class files")
                                              .build());
     }
 
+    private void generateClassFiles(Path dst, GenerationPipeline pipeline) 
+            throws IOException, ParseException {
+        LOGGER.info("------- Start generating class files. -------\n"
+                    + source()
+                    + "\ndestination: "
+                    + dst);
+        
+        runPipeline(pipeline);
+
+        LOGGER.info("------- Finished generating class files. -------");
+    }
+
     /**
-     * Generates class file to <code>dstDir</code> by using 
-     * <code>srcFile</code>.
-     *  
-     * @param dstDir directory that class file to be generated
-     * @param srcFile json file for generating class file
-     * @throws FileAlreadyExistsException if <code>dstDir</code> exists but is 
-     *      not a directory
-     * @throws FileExtensionException if <code>srcFile</code> is not a json file
-     * @throws JsonSyntaxException if <code>srcFile</code> contains malformed 
-     *      json element, or is not a valid representation for an object of 
-     *      <code>ClassInfo</code>
-     * @throws JsonIOException if there was a problem reading from the Reader
-     * @throws IOException if an I/O error occurs while reading 
-     *      <code>srcFile</code> or writing class file 
-     * @throws UnsupportedOpcodeException if unsupported opcode is used in 
-     *      <code>srcFile</code>
+     * Runs <code>pipeline</code> with random classes if they are requested,
+     * with the source files of the list if it is given, or with the source
+     * directory otherwise.
+     *
+     * @param pipeline pipeline to be run
+     * @throws IOException if an I/O error occurs while reading the source
+     *      files or the list
+     * @throws ParseException if the options of random classes are invalid
      */
-    private void generateClassFile(Path dstDir, Path srcFile)
-            throws FileAlreadyExistsException, FileExtensionException, 
-                   JsonSyntaxException, JsonIOException, 
-                   IOException, UnsupportedOpcodeException {
-        if (!srcFile.getFileName().toString().endsWith(".json")) { 
-            throw new FileExtensionException("The file is not a json file.");
+    private void runPipeline(GenerationPipeline pipeline)
+            throws IOException, ParseException {
+        String list;
+
+        if (cmd.hasOption("synthesize")) {
+            long count;
+
+            count = cmd.getParsedOptionValue("synthesize");
+
+            if (count < 0) {
+                throw new ParseException("The number of random classes must "
+                                         + "not be negative.");
+            }
+
+            pipeline.runSynthesized(synthesizer(), count);
+
+            return;
         }
-        
-        ClassWriter writer;
-        JsonReader reader;
 
-        writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-        
-        try (InputStream in = Files.newInputStream(srcFile)) {
-            reader = new JsonReader(in);
-                    
-            reader.accept(writer);
-        } 
+        if (!cmd.hasOption("l")) {
+            pipeline.run(Path.of(cmd.getArgs()[0]));
+
+            return;
+        }
 
-        Path dstPkgDir;
+        list = cmd.getOptionValue("l");
 
-        dstPkgDir = dstDir.resolve(reader.readPackagename()
-                                         .replace('.', File.separatorChar));
-        
-        Files.createDirectories(dstPkgDir);
-    
-        try (OutputStream out 
-                = Files.newOutputStream(
-                        dstPkgDir.resolve(reader.readClassname() + ".class"))) {
-            out.write(writer.toByteArray());
-        }   
+        try (Reader in = "-".equals(list)
+                                 ? new InputStreamReader(System.in)
+                                 : Files.newBufferedReader(Path.of(list))) {
+            pipeline.runFromList(in);
+        }
     }
 
-    private void generateClassFiles(Path dstDir, Path srcDir) 
-            throws FileAlreadyExistsException, IOException {
-        LOGGER.info("------- Start generating class files. -------\n"
-                    + "source directory: " 
-                    + srcDir
-                    + "\ndestination directory: " 
-                    + dstDir);
-        
-        Files.walkFileTree(
-                Files.createDirectories(dstDir),
-                new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(
-                                Path path, BasicFileAttributes attr) {
-                            try {
-                                generateClassFile(dstDir, path);
-                            } catch (FileAlreadyExistsException e) {
-                                LOGGER.info("Skip writing class file of "
-                                            + path
-                                            + "."
-                                            + e.getMessage());
-                            } catch (JsonSyntaxException e) {
-                                LOGGER.info("Skip reading " 
-                                            + path 
-                                            + ". " 
-                                            + e.getMessage());
-                            } catch (JsonIOException e) {
-                                LOGGER.warning("Skip reading "
-                                               + path 
-                                               + "."
-                                               + e.getMessage());
-                            } catch (UnsupportedOpcodeException e) {
-                                LOGGER.info("Skip parsing " 
-                                            + path 
-                                            + ". "
-                                            + e.getMessage());
-                            } catch (IOException e) {
-                                LOGGER.warning("Skip reading" 
-                                               + path 
-                                               + " or writing class file of" 
-                                               + path
-                                               + "."
-                                               + e.getMessage());
-                            }
-
-                            return FileVisitResult.CONTINUE;
-                        }});
+    /**
+     * Creates the synthesizer of random classes from the options.
+     *
+     * @return the created synthesizer
+     * @throws ParseException if the method descriptor, the length or the
+     *      densities are invalid
+     */
+    private ClassSynthesizer synthesizer() throws ParseException {
+        ClassSynthesizer synthesizer;
+        double branchDensity;
+        double loopDensity;
+        int length;
 
-        LOGGER.info("------- Finished generating class files. -------");
+        length = cmd.getParsedOptionValue("synth-length", 64);
+        branchDensity = cmd.getParsedOptionValue("branch-density", 0.2);
+        loopDensity = cmd.getParsedOptionValue("loop-density", 0.1);
+
+        if (length < 1 || length > ClassSynthesizer.MAX_LENGTH) {
+            throw new ParseException("The length of random classes must be "
+                                     + "from 1 to "
+                                     + ClassSynthesizer.MAX_LENGTH + ".");
+        }
+
+        if (!(branchDensity >= 0 && loopDensity >= 0
+                && branchDensity + loopDensity <= 1)) {
+            throw new ParseException("The branch and loop densities must "
+                                     + "not be negative, and their sum must "
+                                     + "not exceed 1.");
+        }
+
+        try {
+            synthesizer = new ClassSynthesizer(
+                    cmd.getParsedOptionValue("seed", 0L),
+                    SYNTHETIC_PACKAGE,
+                    cmd.getOptionValue("synth-desc", "(II)I"));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ParseException("The method descriptor of random "
+                                     + "classes is invalid. "
+                                     + e.getMessage());
+        }
+
+        synthesizer.setLength(length);
+        synthesizer.setBranchDensity(branchDensity);
+        synthesizer.setLoopDensity(loopDensity);
+
+        return synthesizer;
     }
 
-    private void run() throws FileAlreadyExistsException, IOException {
+    private String source() {
+        if (cmd.hasOption("synthesize")) {
+            return "source: " + cmd.getOptionValue("synthesize")
+                   + " random classes of seed "
+                   + cmd.getOptionValue("seed", "0");
+        }
+
+        if (!cmd.hasOption("l")) {
+            return "source directory: " + cmd.getArgs()[0];
+        }
+
+        return "source list: "
+               + ("-".equals(cmd.getOptionValue("l"))
+                          ? "standard input"
+                          : cmd.getOptionValue("l"));
+    }
+
+    /**
+     * Creates the sink that generated class files to be written, which is
+     * either the output directory or the jar file.
+     *
+     * @return the created sink
+     * @throws FileAlreadyExistsException if the output directory exists but
+     *      is not a directory
+     * @throws IOException if an I/O error occurs while creating the sink
+     * @throws ParseException if the compression level is invalid or used
+     *      without the jar file
+     */
+    private ClassSink createSink()
+            throws FileAlreadyExistsException, IOException, ParseException {
+        int level;
+
+        if (!cmd.hasOption("j")) {
+            DirectoryClassSink sink;
+            int syncBatch;
+
+            if (cmd.hasOption("c")) {
+                throw new ParseException("The compression level can only be "
+                                         + "set for a jar file.");
+            }
+
+            syncBatch = cmd.getParsedOptionValue("fsync-batch", 0);
+
+            if (syncBatch < 0) {
+                throw new ParseException("The fsync batch must not be "
+                                         + "negative.");
+            }
+
+            sink = new DirectoryClassSink(outputDirectory());
+
+            sink.setSyncBatch(syncBatch);
+
+            return sink;
+        }
+
+        if (cmd.hasOption("fsync-batch")) {
+            throw new ParseException("The fsync batch can only be set for an "
+                                     + "output directory.");
+        }
+
+        if (cmd.hasOption("i")) {
+            throw new ParseException("Incremental generation cannot save "
+                                     + "class files to a jar file.");
+        }
+
+        level = cmd.getParsedOptionValue("c", Deflater.DEFAULT_COMPRESSION);
+
+        if (level < Deflater.NO_COMPRESSION
+                && level != Deflater.DEFAULT_COMPRESSION
+                || level > Deflater.BEST_COMPRESSION) {
+            throw new ParseException("The compression level must be from 0 "
+                                     + "to 9.");
+        }
+
+        return new JarClassSink(Path.of(cmd.getOptionValue("j")), level);
+    }
+
+    /**
+     * Creates the sink that failures to be reported to, which writes them to
+     * the errors file if it is given.
+     *
+     * @return the created sink
+     * @throws IOException if an I/O error occurs while creating the errors
+     *      file
+     */
+    private ErrorSink createErrorSink() throws IOException {
+        if (!cmd.hasOption("errors")) {
+            return new ErrorSink();
+        }
+
+        return new ErrorSink(Path.of(cmd.getOptionValue("errors")));
+    }
+
+    private Path outputDirectory() {
+        return Path.of(cmd.getOptionValue(
+                               "d",
+                               String.join(File.separator,
+                                           System.getProperty("user.home"),
+                                           "class-files")));
+    }
+
+    /**
+     * Runs the generation server until the process is terminated.
+     *
+     * @throws IOException if the root directory does not exist or an I/O
+     *      error occurs while opening the server socket
+     * @throws ParseException if the port or the number of threads is invalid
+     */
+    private void serve() throws IOException, ParseException {
+        GenerationServer server;
+        int port;
+
+        port = cmd.getParsedOptionValue("s");
+
+        if (port < 0 || port > 65535) {
+            throw new ParseException("The port must be from 0 to 65535.");
+        }
+
+        server = new GenerationServer(port, threads());
+
+        server.setFastFrames(cmd.hasOption("f"));
+
+        if (cmd.hasOption("server-root")) {
+            server.setRoot(Path.of(cmd.getOptionValue("server-root")));
+        }
+
+        server.run();
+    }
+
+    /**
+     * Validates the json files of the source directory or the list without 
+     * generating class files.
+     *
+     * @param threads number of threads that validate json files
+     * @throws IOException if an I/O error occurs while reading the source 
+     *      files or writing the metrics
+     * @throws ParseException if the incremental generation is requested
+     */
+    private void validate(int threads) 
+            throws IOException, ParseException {
+        GenerationPipeline pipeline;
+
+        if (cmd.hasOption("i")) {
+            throw new ParseException("Validation cannot be incremental.");
+        }
+
+        pipeline = new GenerationPipeline(null, threads);
+
+        pipeline.setValidateOnly(true);
+
+        try (ErrorSink errors = createErrorSink()) {
+            pipeline.setErrorSink(errors);
+            LOGGER.info("------- Start validating json files. -------\n"
+                        + source());
+            runPipeline(pipeline);
+            LOGGER.info("------- Finished validating json files. -------");
+        }
+
+        if (cmd.hasOption("m")) {
+            pipeline.writeMetrics(Path.of(cmd.getOptionValue("m")));
+        }
+    }
+
+    private int threads() throws ParseException {
+        int threads;
+
+        threads = cmd.getParsedOptionValue("t", 1);
+
+        if (threads < 1) {
+            throw new ParseException("The number of threads must be " 
+                                     + "positive.");
+        }
+
+        return threads;
+    }
+
+    private void run() 
+            throws FileAlreadyExistsException, IOException, ParseException {
         String[] args;
+        int threads;
+        int writeQueueDepth;
+        int writers;
 
         args = cmd.getArgs();
 
         if (cmd.hasOption("h")) {
             new HelpFormatter().printHelp("cfg [options] path_to_directory",             
                                           opts);
-        } else if (args.length == 0) {
+        } else if (cmd.hasOption("s")) {
+            serve();
+
+            return;
+        } else if (args.length == 0
+                       && !cmd.hasOption("l")
+                       && !cmd.hasOption("synthesize")) {
             System.err.println("usage: cfg [options] path_to_directory");
             System.err.println("use -h or --help to see options");
         }
         
-        if (args.length > 0) {        
-            generateClassFiles(
-                    Path.of(cmd.getOptionValue(
-                                "d", 
-                                String.join(File.separator, 
-                                            System.getProperty("user.home"), 
-                                            "class-files"))), 
-                    Path.of(args[0]));
+        if (args.length > 0
+                || cmd.hasOption("l")
+                || cmd.hasOption("synthesize")) {        
+            threads = threads();
+            writers = cmd.getParsedOptionValue("w", 1);
+            writeQueueDepth = cmd.getParsedOptionValue("write-queue", 64);
+
+            if (writers < 1 || writeQueueDepth < 1) {
+                throw new ParseException("The number of writers and the "
+                                         + "write queue depth must be "
+                                         + "positive.");
+            }
+
+            if (cmd.hasOption("synthesize")
+                    && (args.length > 0
+                            || cmd.hasOption("l")
+                            || cmd.hasOption("i")
+                            || cmd.hasOption("verify")
+                            || cmd.hasOption("x")
+                            || cmd.hasOption("to-compact"))) {
+                throw new ParseException("Random classes cannot be combined "
+                                         + "with source files or "
+                                         + "incremental generation.");
+            }
+
+            if (cmd.hasOption("v")) {
+                validate(threads);
+
+                return;
+            }
+
+            if (cmd.hasOption("verify")) {
+                long timeout;
+
+                if (cmd.hasOption("l")) {
+                    throw new ParseException("Verification needs a directory "
+                                             + "or a jar file instead of a "
+                                             + "list.");
+                }
+
+                timeout = cmd.getParsedOptionValue("verify-timeout", 1000L);
+
+                if (timeout < 1) {
+                    throw new ParseException("The verify timeout must be "
+                                             + "positive.");
+                }
+
+                failed = !new ExecutionHarness(threads, timeout).run(
+                        Path.of(args[0]),
+                        Path.of(cmd.getOptionValue("verify")));
+
+                return;
+            }
+
+            if (cmd.hasOption("x")) {
+                if (cmd.hasOption("l")) {
+                    throw new ParseException("Extraction needs a directory "
+                                             + "or a jar file instead of a "
+                                             + "list.");
+                }
+
+                new ClassExtractor(threads).extract(
+                        Path.of(args[0]),
+                        Path.of(cmd.getOptionValue("x")));
+
+                return;
+            }
+
+            if (cmd.hasOption("to-compact")) {
+                if (cmd.hasOption("l")) {
+                    throw new ParseException("Conversion needs a source "
+                                             + "directory instead of a "
+                                             + "list.");
+                }
+
+                new CompactConverter().convert(
+                        Path.of(args[0]),
+                        Path.of(cmd.getOptionValue("to-compact")));
+
+                return;
+            }
+
+            if (cmd.hasOption("i") && cmd.hasOption("dedup-index")) {
+                throw new ParseException("Incremental generation cannot "
+                                         + "record classes to a dedup "
+                                         + "index.");
+            }
+
+            if (cmd.hasOption("pack") != cmd.hasOption("pack-mapping")) {
+                throw new ParseException("Packing needs both the pack size "
+                                         + "and the mapping file.");
+            }
+
+            if (cmd.hasOption("pack")
+                    && (cmd.hasOption("i")
+                            || cmd.hasOption("u")
+                            || cmd.hasOption("dedup-index"))) {
+                throw new ParseException("Packing cannot be incremental or "
+                                         + "deduplicated.");
+            }
+
+            if (cmd.hasOption("watch")
+                    && (cmd.hasOption("j")
+                            || cmd.hasOption("l")
+                            || cmd.hasOption("m")
+                            || cmd.hasOption("synthesize")
+                            || cmd.hasOption("pack")
+                            || cmd.hasOption("dedup-index"))) {
+                throw new ParseException("Watching needs a source directory "
+                                         + "and an output directory, and "
+                                         + "cannot write metrics, packs or "
+                                         + "a dedup index.");
+            }
+
+            try (ClassSink sink = createSink();
+                    ErrorSink errors = createErrorSink()) {
+                GenerationPipeline pipeline;
+
+                pipeline = new GenerationPipeline(sink, threads);
+                pipeline.setErrorSink(errors);
+                pipeline.setFastFrames(cmd.hasOption("f"));
+                pipeline.setOptimize(cmd.hasOption("optimize"));
+                pipeline.setWriters(writers, writeQueueDepth);
+
+                if (cmd.hasOption("u") || cmd.hasOption("dedup-index")) {
+                    pipeline.setDeduplication(DEDUP_CAPACITY,
+                                              cmd.hasOption("dedup-index"));
+                }
+
+                if (cmd.hasOption("pack")) {
+                    int packSize;
+
+                    packSize = cmd.getParsedOptionValue("pack");
+
+                    if (packSize < 1 || packSize > ClassPacker.MAX_SIZE) {
+                        throw new ParseException("The pack size must be from "
+                                                 + "1 to "
+                                                 + ClassPacker.MAX_SIZE
+                                                 + ".");
+                    }
+
+                    pipeline.setPacking(packSize);
+                }
+
+                if (cmd.hasOption("watch")) {
+                    new SourceWatcher(pipeline,
+                                      Path.of(args[0]),
+                                      outputDirectory()).run();
+
+                    return;
+                }
+
+                if (cmd.hasOption("i")) {
+                    pipeline.setManifest(Manifest.load(outputDirectory(),
+                                                       pipeline.options()));
+                }
+
+                generateClassFiles(cmd.hasOption("j")
+                                           ? Path.of(cmd.getOptionValue("j"))
+                                           : outputDirectory(),
+                                   pipeline);
+
+                if (cmd.hasOption("m")) {
+                    pipeline.writeMetrics(Path.of(cmd.getOptionValue("m")));
+                }
+
+                if (cmd.hasOption("dedup-index")) {
+                    pipeline.writeDedupIndex(
+                            Path.of(cmd.getOptionValue("dedup-index")));
+                }
+
+                if (cmd.hasOption("pack")) {
+                    pipeline.writePackMapping(
+                            Path.of(cmd.getOptionValue("pack-mapping")));
+                }
+            }
         }
     }
 
     public static void main(String[] args) {
         try {
-            new ClassFileGenerator(args).run();
+            ClassFileGenerator generator;
+
+            generator = new ClassFileGenerator(args);
+
+            generator.run();
+
+            if (generator.failed) {
+                LOGGER.severe("Some class files failed the verification.");
+                System.exit(1);
+            }
         } catch (FileAlreadyExistsException e) {
             LOGGER.info("Terminated from generating class files." 
                         + e.getMessage());
@@ -0,0 +1,35 @@
+package edu.handong.csee.isel.cfg;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a class file generated by a pipeline. The duration of the
+ * event covers reading the json content and generating the class file.
+ */
+@Name("edu.handong.csee.isel.cfg.ClassGenerated")
+@Label("Class Generated")
+@Category("Class File Generator")
+@Description("A class file is generated from a json content.")
+class ClassGeneratedEvent extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Package Name")
+    String packagename;
+
+    @Label("Class Name")
+    String classname;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    @Label("Saved Bytecode")
+    @Description("Bytecode elements removed by the optimization.")
+    int saved;
+}
@@ -0,0 +1,235 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * In-memory API to generate class files without the file system.
+ * <br></br>
+ * A <code>ClassGenerator</code> turns a <code>ClassInfo</code> or a json
+ * content into the bytes of a class file, and can define them directly into
+ * the JVM. It keeps no state other than its options and a concurrent cache
+ * of the symbols of constants, so one instance can be shared by threads.
+ *
+ * @see https://github.com/ISEL-HGU/class-file-generator
+ */
+public class ClassGenerator {
+    private static final MethodHandle DEFINE_HIDDEN_CLASS
+            = findDefineHiddenClass();
+    private static final Object NO_CLASS_OPTIONS = noClassOptions();
+
+    private boolean fastFrames;
+    private SymbolCache symbols;
+
+    /**
+     * Constructs a <code>ClassGenerator</code> object whose json contents
+     * share the symbols of constants.
+     */
+    public ClassGenerator() {
+        symbols = new SymbolCache();
+    }
+
+    /**
+     * Sets whether stack map frames are computed with a built-in analysis of
+     * the bytecode instead of <code>ClassWriter.COMPUTE_FRAMES</code>.
+     * Methods that the analysis cannot handle still fall back to
+     * <code>ClassWriter.COMPUTE_FRAMES</code>.
+     *
+     * @param fastFrames <code>true</code> to compute frames with the built-in
+     *      analysis
+     */
+    public void setFastFrames(boolean fastFrames) {
+        this.fastFrames = fastFrames;
+    }
+
+    public boolean isFastFrames() {
+        return fastFrames;
+    }
+
+    /**
+     * Gets the cache of the symbols of constants of this generator, so that
+     * json contents read elsewhere for this generator share the symbols too.
+     *
+     * @return the cache
+     */
+    SymbolCache getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Generates the class file described by <code>classInfo</code>.
+     *
+     * @param classInfo information of the class file to be generated
+     * @return the bytes of the class file
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the
+     *      bytecode
+     */
+    public byte[] generate(ClassInfo classInfo)
+            throws UnsupportedOpcodeException {
+        return generate(new JsonReader(classInfo));
+    }
+
+    /**
+     * Generates the class file described by the json content of
+     * <code>reader</code>.
+     *
+     * @param reader a reader of json content to be generated
+     * @return the bytes of the class file
+     * @throws JsonIOException if there was a problem reading from the Reader
+     * @throws JsonSyntaxException if the json content contains malformed
+     *      json element, or is not a valid representation for an object of
+     *      <code>ClassInfo</code>
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the
+     *      json content
+     */
+    public byte[] generate(Reader reader)
+            throws JsonIOException, JsonSyntaxException,
+                   UnsupportedOpcodeException {
+        return generate(new JsonReader(reader, symbols));
+    }
+
+    /**
+     * Generates the class file described by <code>classInfo</code> into a
+     * buffer.
+     *
+     * @param classInfo information of the class file to be generated
+     * @return a buffer of the bytes of the class file, whose position is zero
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the
+     *      bytecode
+     */
+    public ByteBuffer generateBuffer(ClassInfo classInfo)
+            throws UnsupportedOpcodeException {
+        return ByteBuffer.wrap(generate(classInfo));
+    }
+
+    /**
+     * Generates the class file described by <code>classInfo</code> and
+     * defines it with <code>lookup</code>.
+     *
+     * @param lookup lookup whose lookup class is in the package of the class
+     *      file and has full privilege access
+     * @param classInfo information of the class file to be generated
+     * @return the defined class
+     * @throws IllegalAccessException if <code>lookup</code> does not have
+     *      full privilege access
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the
+     *      bytecode
+     * @see #define(MethodHandles.Lookup, byte[])
+     */
+    public Class<?> define(MethodHandles.Lookup lookup, ClassInfo classInfo)
+            throws IllegalAccessException, UnsupportedOpcodeException {
+        return define(lookup, generate(classInfo));
+    }
+
+    /**
+     * Defines the class file <code>bytes</code> with <code>lookup</code>.
+     * <br></br>
+     * On Java 15 or later, the class is defined as a hidden class that is
+     * not discoverable by name and can be unloaded as soon as it is no
+     * longer reachable. On earlier versions, it is defined as a normal class
+     * by <code>MethodHandles.Lookup.defineClass</code>. Either way, the class
+     * must be in the same package as the lookup class of
+     * <code>lookup</code>.
+     *
+     * @param lookup lookup whose lookup class is in the package of the class
+     *      file and has full privilege access
+     * @param bytes the bytes of the class file
+     * @return the defined class
+     * @throws IllegalAccessException if <code>lookup</code> does not have
+     *      full privilege access
+     */
+    public static Class<?> define(MethodHandles.Lookup lookup, byte[] bytes)
+            throws IllegalAccessException {
+        if (DEFINE_HIDDEN_CLASS == null) {
+            return lookup.defineClass(bytes);
+        }
+
+        try {
+            return ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(
+                            lookup, bytes, false, NO_CLASS_OPTIONS))
+                    .lookupClass();
+        } catch (IllegalAccessException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generates the class file of <code>reader</code>. The bytecode is
+     * validated before a <code>ClassWriter</code> is created.
+     *
+     * @param reader reader of the class file to be generated
+     * @return the bytes of the class file
+     * @throws UnsupportedOpcodeException if the bytecode is invalid
+     */
+    byte[] generate(JsonReader reader) throws UnsupportedOpcodeException {
+        reader.validate();
+
+        return generateValidated(reader);
+    }
+
+    /**
+     * Generates the class file of <code>reader</code> whose bytecode has been
+     * validated by {@link JsonReader#validate()}.
+     *
+     * @param reader reader of the class file to be generated
+     * @return the bytes of the class file
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the
+     *      bytecode
+     */
+    byte[] generateValidated(JsonReader reader)
+            throws UnsupportedOpcodeException {
+        ClassWriter writer;
+        MethodFrames frames;
+
+        frames = fastFrames ? reader.computeFrames() : null;
+        writer = ClassSkeleton.newClassWriter(
+                frames != null ? 0 : ClassWriter.COMPUTE_FRAMES);
+
+        reader.accept(writer, frames);
+
+        return writer.toByteArray();
+    }
+
+    private static MethodHandle findDefineHiddenClass() {
+        try {
+            return MethodHandles.publicLookup()
+                                .findVirtual(MethodHandles.Lookup.class,
+                                             "defineHiddenClass",
+                                             MethodType.methodType(
+                                                     MethodHandles.Lookup.class,
+                                                     byte[].class,
+                                                     boolean.class,
+                                                     classOptionArrayType()))
+                                .asFixedArity();
+        } catch (ClassNotFoundException | NoSuchMethodException
+                 | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Object noClassOptions() {
+        try {
+            return Array.newInstance(classOptionArrayType().getComponentType(),
+                                     0);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> classOptionArrayType()
+            throws ClassNotFoundException {
+        return Class.forName(
+                "[Ljava.lang.invoke.MethodHandles$Lookup$ClassOption;");
+    }
+}
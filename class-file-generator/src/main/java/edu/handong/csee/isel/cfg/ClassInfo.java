@@ -9,32 +9,92 @@ import java.util.Random;
  * Class that contains information for creating class file.
  */
 public class ClassInfo {  
+    static final int DEFAULT_VERSION = 55;
+    static final String DEFAULT_PACKAGENAME = "gen";
+    static final String DEFAULT_METHODNAME = "solve";
+    static final String DEFAULT_METHOD_DESC = "()V";
+
     private static Random rnd = new Random();
 
     private int[] bytecode;
     private String classname;
+    private Symbol[] constants;
     private String methodname;
     private String methodDesc;
     private String packagename;
     private int version;
 
     public ClassInfo() {
-        version = 55;
-        packagename = "gen";
-        classname = "GeneratedClass" + rnd.nextInt();
-        methodname = "solve";
-        methodDesc = "()V";
-        bytecode = new int[] { 177 };
+        version = DEFAULT_VERSION;
+        packagename = DEFAULT_PACKAGENAME;
+        classname = defaultClassname();
+        methodname = DEFAULT_METHODNAME;
+        methodDesc = DEFAULT_METHOD_DESC;
+        bytecode = defaultBytecode();
+        constants = defaultConstants();
     }
 
     public ClassInfo(int version, String packagename, String classname, 
                      String methodname, String methodDesc, int[] bytecode) {
+        this(version,
+             packagename,
+             classname,
+             methodname,
+             methodDesc,
+             bytecode,
+             defaultConstants());
+    }
+
+    /**
+     * Constructs a <code>ClassInfo</code> object whose bytecode refers to
+     * <code>constants</code>.
+     *
+     * @param version major version of the class file
+     * @param packagename name of the package
+     * @param classname name of the class
+     * @param methodname name of the method
+     * @param methodDesc descriptor of the method
+     * @param bytecode bytecode of the method
+     * @param constants symbolic constants that the bytecode refers to by
+     *      their indices
+     */
+    public ClassInfo(int version, String packagename, String classname,
+                     String methodname, String methodDesc, int[] bytecode,
+                     Symbol[] constants) {
         this.version = version;
         this.packagename = packagename;
         this.classname = classname;
         this.methodname = methodname;
         this.methodDesc = methodDesc;
         this.bytecode = bytecode;
+        this.constants = constants;
+    }
+
+    /**
+     * Creates the default classname, which ends with a random integer.
+     * 
+     * @return the default classname
+     */
+    static String defaultClassname() {
+        return "GeneratedClass" + rnd.nextInt();
+    }
+
+    /**
+     * Creates the default bytecode, which only returns from the method.
+     * 
+     * @return the default bytecode
+     */
+    static int[] defaultBytecode() {
+        return new int[] { 177 };
+    }
+
+    /**
+     * Creates the default constants, which are empty.
+     *
+     * @return the default constants
+     */
+    static Symbol[] defaultConstants() {
+        return new Symbol[0];
     }
 
     public int[] getBytecode() {
@@ -45,6 +105,10 @@ public class ClassInfo {
         return classname;
     }
 
+    public Symbol[] getConstants() {
+        return constants;
+    }
+
     public String getMethodname() {
         return methodname;
     }
@@ -77,6 +141,11 @@ public class ClassInfo {
                     if (!Arrays.equals((int []) val, (int []) field.get(obj))) {
                         return false;
                     }
+                } else if (val instanceof Object[]) {
+                    if (!Arrays.equals((Object[]) val,
+                                       (Object[]) field.get(obj))) {
+                        return false;
+                    }
                 } else {
                     if (!val.equals(field.get(obj))) {
                         return false;
@@ -0,0 +1,374 @@
+package edu.handong.csee.isel.cfg;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Packer of many json contents into one class with one method per json
+ * content, so that the constant pool, the superclass reference and the
+ * constructor of a class are shared by many methods.
+ * <br></br>
+ * Json contents of the same package and version are collected until there are
+ * as many as the pack size, and then become a pack, which is a class named
+ * <code>CfgPack</code> followed by a sequence number. Methods whose names and
+ * descriptors collide in a pack get the suffix <code>$</code> followed by a
+ * number. The rest of the json contents become smaller packs when the packer
+ * is flushed.
+ * <br></br>
+ * Since every json content may bring its own constants, a pack is also made
+ * early when one more json content could overflow the constant pool of the
+ * class, whose size is estimated with the worst case of each constant.
+ * <br></br>
+ * Json contents whose methods are named <code>&lt;init&gt;</code> or
+ * <code>&lt;clinit&gt;</code> cannot be packed, since a pack has its own
+ * constructor and its methods are instance methods.
+ * <br></br>
+ * Json contents are packed in the order they are added. When they are added
+ * by several threads, which json contents share a pack and the numbers of
+ * the packs may differ from run to run.
+ */
+class ClassPacker {
+    static final String CLASSNAME_PREFIX = "CfgPack";
+    /**
+     * Maximum number of constant pool entries of a pack. Entries below the
+     * limit of 65535 are left for the class itself, its superclass and its
+     * constructor.
+     */
+    static final int MAX_ENTRIES = 65535 - 64;
+    /**
+     * Maximum number of methods of a pack. Packs of json contents with many
+     * constants are smaller, as limited by {@link #MAX_ENTRIES}.
+     */
+    static final int MAX_SIZE = 16384;
+
+    private Map<String, Bucket> buckets;
+    private long packs;
+    private int size;
+
+    /**
+     * Constructs a <code>ClassPacker</code> object.
+     *
+     * @param size number of methods of a pack
+     */
+    ClassPacker(int size) {
+        this.size = size;
+        buckets = new HashMap<>();
+    }
+
+    /**
+     * Adds the json content of <code>reader</code> to the pack of its package
+     * and version.
+     *
+     * @param reader reader of a validated json content
+     * @param srcFile file that contains the json content
+     * @param line line number of the json content in <code>srcFile</code>,
+     *      or <code>0</code> if the content is the whole file
+     * @return the pack that became full, or <code>null</code> if there is
+     *      none
+     * @throws UnsupportedOpcodeException if the method of the json content is
+     *      a constructor or a class initializer
+     */
+    Pack add(JsonReader reader, Path srcFile, long line)
+            throws UnsupportedOpcodeException {
+        Bucket bucket;
+        ClassInfo classInfo;
+        int entries;
+        String key;
+
+        classInfo = reader.readClassInfo();
+
+        if (classInfo.getMethodname().equals("<init>")
+                || classInfo.getMethodname().equals("<clinit>")) {
+            throw new UnsupportedOpcodeException(
+                    "The method " + classInfo.getMethodname()
+                    + " cannot be packed.");
+        }
+
+        entries = entries(classInfo);
+        key = classInfo.getVersion()
+              + " "
+              + classInfo.getPackagename().replace('.', '/');
+
+        synchronized (buckets) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+
+            if (!bucket.members.isEmpty()
+                    && bucket.entries + entries > MAX_ENTRIES) {
+                Pack pack;
+
+                pack = new Pack(bucket.members, packs++);
+                bucket = new Bucket();
+
+                bucket.add(new Member(reader, srcFile, line), entries);
+                buckets.put(key, bucket);
+
+                return pack;
+            }
+
+            bucket.add(new Member(reader, srcFile, line), entries);
+
+            if (bucket.members.size() < size) {
+                return null;
+            }
+
+            buckets.remove(key);
+
+            return new Pack(bucket.members, packs++);
+        }
+    }
+
+    /**
+     * Makes packs of the json contents that have not been packed yet.
+     *
+     * @return the packs
+     */
+    List<Pack> flush() {
+        List<Pack> rest;
+
+        rest = new ArrayList<>();
+
+        synchronized (buckets) {
+            for (Bucket bucket : buckets.values()) {
+                rest.add(new Pack(bucket.members, packs++));
+            }
+
+            buckets.clear();
+        }
+
+        return rest;
+    }
+
+    /**
+     * Estimates the number of constant pool entries that the method of
+     * <code>classInfo</code> adds to a pack. Each constant is counted with
+     * all the entries it refers to, as if no entry were shared, and each
+     * class type of the method descriptor is counted for the stack map
+     * frames.
+     *
+     * @param classInfo elements of a validated json content
+     * @return the estimated number of entries
+     */
+    static int entries(ClassInfo classInfo) {
+        String methodDesc;
+        int entries;
+
+        methodDesc = classInfo.getMethodDesc();
+        entries = 2;
+
+        for (int i = 0; i < methodDesc.length(); i++) {
+            if (methodDesc.charAt(i) == ';') {
+                entries += 2;
+            }
+        }
+
+        for (Symbol constant : classInfo.getConstants()) {
+            switch (constant.getKind()) {
+            case FIELD:
+            case METHOD:
+            case INTERFACE_METHOD:
+                entries += 6;
+                break;
+            default:
+                entries += 2;
+                break;
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Class of packed json contents.
+     */
+    static class Pack {
+        private String classname;
+        private List<Member> members;
+        private List<String> methodnames;
+        private String packagename;
+        private int version;
+
+        private Pack(List<Member> members, long number) {
+            ClassInfo first;
+            Set<String> signatures;
+
+            first = members.get(0).reader.readClassInfo();
+            this.members = members;
+            version = first.getVersion();
+            packagename = first.getPackagename();
+            classname = CLASSNAME_PREFIX + number;
+            methodnames = new ArrayList<>(members.size());
+            signatures = new HashSet<>();
+
+            for (Member member : members) {
+                ClassInfo classInfo;
+                String methodDesc;
+                String methodname;
+                int suffix;
+
+                classInfo = member.reader.readClassInfo();
+                methodname = classInfo.getMethodname();
+                methodDesc = classInfo.getMethodDesc();
+                suffix = 0;
+
+                while (!signatures.add(methodname + methodDesc)) {
+                    methodname = classInfo.getMethodname() + '$' + ++suffix;
+                }
+
+                methodnames.add(methodname);
+            }
+        }
+
+        /**
+         * Generates the class file of this pack.
+         *
+         * @param fastFrames <code>true</code> to compute frames with
+         *      {@link MethodFrames}, which falls back to
+         *      <code>ClassWriter.COMPUTE_FRAMES</code> for the whole class if
+         *      a method cannot be analyzed
+         * @return the bytes of the class file
+         * @throws UnsupportedOpcodeException if unsupported opcode is used in
+         *      a json content
+         */
+        byte[] generate(boolean fastFrames)
+                throws UnsupportedOpcodeException {
+            ClassWriter writer;
+            MethodFrames[] frames;
+            String owner;
+
+            owner = packagename.replace('.', '/') + '/' + classname;
+            frames = new MethodFrames[members.size()];
+
+            for (int i = 0; fastFrames && i < frames.length; i++) {
+                frames[i] = members.get(i).reader.computeFrames(owner);
+
+                if (frames[i] == null) {
+                    fastFrames = false;
+                }
+            }
+
+            writer = ClassSkeleton.newClassWriter(
+                    fastFrames ? 0 : ClassWriter.COMPUTE_FRAMES);
+
+            ClassSkeleton.accept(writer, version, owner);
+
+            for (int i = 0; i < frames.length; i++) {
+                members.get(i).reader.acceptMethod(writer,
+                                                   methodnames.get(i),
+                                                   fastFrames
+                                                           ? frames[i]
+                                                           : null);
+            }
+
+            writer.visitEnd();
+
+            return writer.toByteArray();
+        }
+
+        /**
+         * Describes where each json content of this pack is placed. Each line
+         * consists of the location of a json content, the path of the class
+         * file of this pack, the method name and the method descriptor,
+         * separated by tabs.
+         *
+         * @return the lines of the mapping
+         */
+        List<String> mapping() {
+            List<String> lines;
+            String path;
+
+            lines = new ArrayList<>(members.size());
+            path = ClassSink.path(packagename, classname);
+
+            for (int i = 0; i < members.size(); i++) {
+                Member member;
+
+                member = members.get(i);
+
+                lines.add((member.line == 0
+                                   ? member.srcFile.toString()
+                                   : member.srcFile + ":" + member.line)
+                          + '\t' + path
+                          + '\t' + methodnames.get(i)
+                          + '\t' + member.reader.readClassInfo()
+                                                .getMethodDesc());
+            }
+
+            return lines;
+        }
+
+        String getClassname() {
+            return classname;
+        }
+
+        String getPackagename() {
+            return packagename;
+        }
+
+        /**
+         * Gets the file that contains the <code>i</code>th json content of
+         * this pack.
+         *
+         * @param i index of a json content
+         * @return the file
+         */
+        Path getSource(int i) {
+            return members.get(i).srcFile;
+        }
+
+        /**
+         * Gets the line number of the <code>i</code>th json content of this
+         * pack.
+         *
+         * @param i index of a json content
+         * @return the line number, or <code>0</code> if the content is the
+         *      whole file
+         */
+        long getLine(int i) {
+            return members.get(i).line;
+        }
+
+        int size() {
+            return members.size();
+        }
+    }
+
+    /**
+     * Json contents that have not been packed yet.
+     */
+    private static class Bucket {
+        private int entries;
+        private List<Member> members;
+
+        private Bucket() {
+            members = new ArrayList<>();
+        }
+
+        private void add(Member member, int entries) {
+            members.add(member);
+
+            this.entries += entries;
+        }
+    }
+
+    /**
+     * Json content of a pack.
+     */
+    private static class Member {
+        private long line;
+        private JsonReader reader;
+        private Path srcFile;
+
+        private Member(JsonReader reader, Path srcFile, long line) {
+            this.reader = reader;
+            this.srcFile = srcFile;
+            this.line = line;
+        }
+    }
+}
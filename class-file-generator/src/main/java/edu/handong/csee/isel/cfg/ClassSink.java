@@ -0,0 +1,79 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination that generated class files are written to.
+ * <br></br>
+ * Implementations must be safe to be written by several threads at once.
+ */
+interface ClassSink extends Closeable {
+
+    /**
+     * Writes class file of a class.
+     * 
+     * @param packagename package name of the class, which can be separated 
+     *      with either '.' or '/'
+     * @param classname name of the class
+     * @param bytes content of the class file
+     * @return the path of the written class file relative to this sink
+     * @throws IOException if an I/O error occurs while writing the class file
+     */
+    String write(String packagename, String classname, byte[] bytes) 
+            throws IOException;
+
+    /**
+     * Sets the listener that is told whether each written class file has
+     * been synced to the storage, if this sink syncs class files after
+     * writing them.
+     *
+     * @param listener listener of synced class files
+     * @return <code>true</code> if this sink syncs class files and tells
+     *      <code>listener</code> about each of them, <code>false</code> if
+     *      <code>listener</code> is never told
+     */
+    default boolean setSyncListener(SyncListener listener) {
+        return false;
+    }
+
+    /**
+     * Syncs the class files that have been written but not synced yet, if
+     * this sink syncs class files after writing them.
+     *
+     * @throws IOException if an I/O error occurs while syncing class files
+     *      and no listener is set
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Gets the path of class file of a class relative to the root of 
+     * packages.
+     * 
+     * @param packagename package name of the class, which can be separated 
+     *      with either '.' or '/'
+     * @param classname name of the class
+     * @return the path separated with '/'
+     */
+    static String path(String packagename, String classname) {
+        return packagename.replace('.', '/') + '/' + classname + ".class";
+    }
+
+    /**
+     * Listener of the class files that a sink syncs to the storage after
+     * writing them.
+     */
+    interface SyncListener {
+
+        /**
+         * Tells that the class file of <code>path</code> has been synced, or
+         * failed to be synced.
+         *
+         * @param path path of the class file relative to the sink
+         * @param failure error that occurred while syncing the class file,
+         *      or <code>null</code> if it has been synced
+         */
+        void synced(String path, IOException failure);
+    }
+}
@@ -0,0 +1,117 @@
+package edu.handong.csee.isel.cfg;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Prebuilt skeleton shared by all generated classes, which is a public class
+ * extending <code>java.lang.Object</code> with the default constructor.
+ * <br></br>
+ * The skeleton is serialized once. A <code>ClassWriter</code> created by
+ * {@link #newClassWriter(int)} starts with the constant pool of the skeleton,
+ * and copies the bytes of the constructor instead of rebuilding them when
+ * {@link #accept(ClassVisitor, int, String)} is called on it. Other visitors
+ * receive the usual visit events.
+ * <br></br>
+ * The skeleton is named <code>java/lang/Object</code>, which is its own
+ * superclass, so that renaming it does not leave an unused class name in the
+ * copied constant pool. The version and the name of the skeleton are replaced
+ * while it is visited, so one skeleton serves every version and package.
+ */
+class ClassSkeleton {
+    private static final String SUPER_NAME = Type.getInternalName(Object.class);
+    private static final ClassReader SKELETON = new ClassReader(build());
+
+    private ClassSkeleton() {
+    }
+
+    /**
+     * Creates a <code>ClassWriter</code> whose constant pool is seeded with
+     * the skeleton. When frames are computed, the common superclass of two
+     * classes that cannot be loaded is <code>java/lang/Object</code>, since
+     * the classes referred to by constants need not be on the class path.
+     *
+     * @param flags option flags of <code>ClassWriter</code>
+     * @return the created <code>ClassWriter</code>
+     */
+    static ClassWriter newClassWriter(int flags) {
+        return new ClassWriter(SKELETON, flags) {
+
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                try {
+                    return super.getCommonSuperClass(type1, type2);
+                } catch (TypeNotPresentException e) {
+                    return SUPER_NAME;
+                }
+            }
+        };
+    }
+
+    /**
+     * Makes <code>visitor</code> visit the class header and the constructor
+     * of the skeleton. <code>visitEnd</code> is not called, so that the
+     * method of the class can be visited afterwards.
+     *
+     * @param visitor visitor to visit the skeleton
+     * @param version major version of the class
+     * @param name internal name of the class
+     */
+    static void accept(ClassVisitor visitor, int version, String name) {
+        SKELETON.accept(new ClassVisitor(Opcodes.ASM9, visitor) {
+
+                            @Override
+                            public void visit(int skeletonVersion,
+                                              int access,
+                                              String skeletonName,
+                                              String signature,
+                                              String superName,
+                                              String[] interfaces) {
+                                super.visit(version,
+                                            access,
+                                            name,
+                                            signature,
+                                            superName,
+                                            interfaces);
+                            }
+
+                            @Override
+                            public void visitEnd() {
+                            }
+                        },
+                        0);
+    }
+
+    private static byte[] build() {
+        ClassWriter writer;
+        MethodVisitor mv;
+
+        writer = new ClassWriter(0);
+
+        writer.visit(ClassInfo.DEFAULT_VERSION,
+                     Opcodes.ACC_PUBLIC,
+                     SUPER_NAME,
+                     null,
+                     SUPER_NAME,
+                     null);
+        mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                           SUPER_NAME,
+                           "<init>",
+                           "()V",
+                           false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        writer.visitEnd();
+
+        return writer.toByteArray();
+    }
+}
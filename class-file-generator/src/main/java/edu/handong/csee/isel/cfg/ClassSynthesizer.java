@@ -0,0 +1,487 @@
+package edu.handong.csee.isel.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Synthesizer of random classes whose methods only use supported opcodes,
+ * so that a dataset of valid classes can be produced without json files.
+ * <br></br>
+ * The method of each class is a random sequence of statements over the
+ * parameters of the method descriptor and a few local variables of fixed
+ * types. A statement stores an expression to a local variable or an
+ * element of a local array, pops an expression, branches on an expression,
+ * or loops a constant number of times with a counter of its own. The
+ * operand stack is empty between statements, every local variable keeps its
+ * type through the whole method, and the method ends with a return of its
+ * return type, so that every synthesized method passes the verification.
+ * Divisors of integers and indices of arrays are constants in range, and
+ * loops always terminate, so that the methods also run without exceptions.
+ * <br></br>
+ * The class of an index is synthesized from the seed and the index alone,
+ * so that the same seed reproduces the same classes regardless of the
+ * order or the threads that synthesize them.
+ *
+ * @see SupportedOpcodes
+ */
+class ClassSynthesizer {
+    static final String CLASSNAME_PREFIX = "Synth";
+    /**
+     * Maximum length of a method, which keeps the jump targets of a method
+     * within their two bytes.
+     */
+    static final int MAX_LENGTH = 16384;
+
+    private static final int ARRAY_LENGTH = 5;
+    private static final int MAX_DEPTH = 3;
+    private static final int MAX_EXPRESSION_DEPTH = 3;
+    private static final int MAX_BLOCK_SIZE = 3;
+    private static final int SCRATCH_LOCALS = 2;
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private double branchDensity;
+    private int[] floatArrayLocals;
+    private int[] floatLocals;
+    private int[] intArrayLocals;
+    private int[] intLocals;
+    private int length;
+    private int[] loopCounters;
+    private double loopDensity;
+    private String methodDesc;
+    private String packagename;
+    private int[] readableIntLocals;
+    private Type returnType;
+    private long seed;
+
+    /**
+     * Constructs a <code>ClassSynthesizer</code> object. By default, methods
+     * are about 64 elements long, and a fifth and a tenth of their
+     * statements are branches and loops respectively.
+     *
+     * @param seed seed of the synthesized classes
+     * @param packagename package of the synthesized classes
+     * @param methodDesc method descriptor of the synthesized methods
+     * @throws IllegalArgumentException if the return type of
+     *      <code>methodDesc</code> cannot be returned by supported opcodes,
+     *      or the method has too many local variables
+     */
+    ClassSynthesizer(long seed, String packagename, String methodDesc) {
+        List<Integer> floats;
+        List<Integer> ints;
+        List<Integer> intArrays;
+        List<Integer> floatArrays;
+        int slot;
+
+        this.seed = seed;
+        this.packagename = packagename;
+        this.methodDesc = methodDesc;
+        returnType = Type.getReturnType(methodDesc);
+        length = 64;
+        branchDensity = 0.2;
+        loopDensity = 0.1;
+
+        if (!isIntType(returnType)
+                && !isArrayOf(returnType, Type.INT_TYPE)
+                && !isArrayOf(returnType, Type.FLOAT_TYPE)
+                && returnType.getSort() != Type.FLOAT
+                && returnType.getSort() != Type.VOID) {
+            throw new IllegalArgumentException(
+                    "The return type " + returnType.getClassName()
+                    + " cannot be returned by supported opcodes.");
+        }
+
+        ints = new ArrayList<>();
+        floats = new ArrayList<>();
+        intArrays = new ArrayList<>();
+        floatArrays = new ArrayList<>();
+        slot = 1;
+
+        for (Type type : Type.getArgumentTypes(methodDesc)) {
+            if (isIntType(type)) {
+                ints.add(slot);
+            } else if (type.getSort() == Type.FLOAT) {
+                floats.add(slot);
+            } else if (isArrayOf(type, Type.INT_TYPE)) {
+                intArrays.add(slot);
+            } else if (isArrayOf(type, Type.FLOAT_TYPE)) {
+                floatArrays.add(slot);
+            }
+
+            slot += type.getSize();
+        }
+
+        // Parameters are read but never written, so that arrays of
+        // parameters, which may be null or short, are only returned.
+        intLocals = slots(slot, SCRATCH_LOCALS);
+        floatLocals = slots(slot + SCRATCH_LOCALS, SCRATCH_LOCALS);
+        intArrayLocals = slots(slot + 2 * SCRATCH_LOCALS, 1);
+        floatArrayLocals = slots(slot + 2 * SCRATCH_LOCALS + 1, 1);
+        loopCounters = slots(slot + 2 * SCRATCH_LOCALS + 2, MAX_DEPTH);
+
+        if (loopCounters[MAX_DEPTH - 1] > 255) {
+            throw new IllegalArgumentException(
+                    "The method descriptor " + methodDesc
+                    + " has too many parameters to be synthesized.");
+        }
+
+        readableIntLocals = concat(concat(intLocals, loopCounters), ints);
+        floatLocals = concat(floatLocals, floats);
+        intArrays.add(0, intArrayLocals[0]);
+        floatArrays.add(0, floatArrayLocals[0]);
+        intArrayLocals = toArray(intArrays);
+        floatArrayLocals = toArray(floatArrays);
+    }
+
+    /**
+     * Sets the length of the synthesized methods. Statements are added until
+     * a method is at least <code>length</code> elements long.
+     *
+     * @param length length of the methods, from <code>1</code> to
+     *      {@link #MAX_LENGTH}
+     */
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Sets the probability that a statement is a branch.
+     *
+     * @param branchDensity probability from <code>0</code> to
+     *      <code>1</code>
+     */
+    void setBranchDensity(double branchDensity) {
+        this.branchDensity = branchDensity;
+    }
+
+    /**
+     * Sets the probability that a statement is a loop. Loops are nested up
+     * to three levels including branches.
+     *
+     * @param loopDensity probability from <code>0</code> to <code>1</code>
+     */
+    void setLoopDensity(double loopDensity) {
+        this.loopDensity = loopDensity;
+    }
+
+    /**
+     * Synthesizes the class of <code>index</code>, whose name is
+     * {@link #CLASSNAME_PREFIX} followed by <code>index</code>.
+     *
+     * @param index index of the class
+     * @return the information of the synthesized class
+     */
+    ClassInfo synthesize(long index) {
+        Method method;
+
+        method = new Method(new SplittableRandom(seed ^ (index + 1) * GAMMA));
+
+        method.prologue();
+
+        while (method.size < length) {
+            method.statement(0);
+        }
+
+        method.epilogue();
+
+        return new ClassInfo(Opcodes.V11,
+                             packagename,
+                             CLASSNAME_PREFIX + index,
+                             "run",
+                             methodDesc,
+                             Arrays.copyOf(method.code, method.size));
+    }
+
+    private static boolean isIntType(Type type) {
+        switch (type.getSort()) {
+        case Type.BOOLEAN:
+        case Type.BYTE:
+        case Type.CHAR:
+        case Type.SHORT:
+        case Type.INT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean isArrayOf(Type type, Type elementType) {
+        return type.getSort() == Type.ARRAY
+               && type.getDimensions() == 1
+               && type.getElementType().equals(elementType);
+    }
+
+    private static int[] slots(int first, int count) {
+        int[] slots;
+
+        slots = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            slots[i] = first + i;
+        }
+
+        return slots;
+    }
+
+    private static int[] concat(int[] first, List<Integer> second) {
+        return concat(first, toArray(second));
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result;
+
+        result = Arrays.copyOf(first, first.length + second.length);
+
+        System.arraycopy(second, 0, result, first.length, second.length);
+
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Bytecode of a method that is being synthesized.
+     */
+    private class Method {
+        private int[] code;
+        private SplittableRandom random;
+        private int size;
+
+        private Method(SplittableRandom random) {
+            this.random = random;
+            code = new int[length + 64];
+        }
+
+        /**
+         * Initializes the local variables, so that they are readable
+         * everywhere in the method.
+         */
+        private void prologue() {
+            for (int local : intLocals) {
+                emit(Opcodes.ICONST_0, Opcodes.ISTORE, local);
+            }
+
+            for (int counter : loopCounters) {
+                emit(Opcodes.ICONST_0, Opcodes.ISTORE, counter);
+            }
+
+            for (int i = 0; i < SCRATCH_LOCALS; i++) {
+                emit(Opcodes.FCONST_0, Opcodes.FSTORE, floatLocals[i]);
+            }
+
+            emit(Opcodes.ICONST_0 + ARRAY_LENGTH,
+                 Opcodes.NEWARRAY, Opcodes.T_INT,
+                 Opcodes.ASTORE, intArrayLocals[0]);
+            emit(Opcodes.ICONST_0 + ARRAY_LENGTH,
+                 Opcodes.NEWARRAY, Opcodes.T_FLOAT,
+                 Opcodes.ASTORE, floatArrayLocals[0]);
+        }
+
+        private void epilogue() {
+            if (returnType.getSort() == Type.VOID) {
+                emit(Opcodes.RETURN);
+            } else if (returnType.getSort() == Type.FLOAT) {
+                floatExpression(0);
+                emit(Opcodes.FRETURN);
+            } else if (isIntType(returnType)) {
+                intExpression(0);
+                emit(Opcodes.IRETURN);
+            } else {
+                emit(Opcodes.ALOAD,
+                     pick(isArrayOf(returnType, Type.INT_TYPE)
+                                  ? intArrayLocals
+                                  : floatArrayLocals),
+                     Opcodes.ARETURN);
+            }
+        }
+
+        private void statement(int depth) {
+            double kind;
+
+            kind = random.nextDouble();
+
+            if (depth < MAX_DEPTH && kind < loopDensity) {
+                loop(depth);
+            } else if (depth < MAX_DEPTH && kind < loopDensity
+                                                   + branchDensity) {
+                branch(depth);
+            } else {
+                switch (random.nextInt(5)) {
+                case 0:
+                    intExpression(0);
+                    emit(Opcodes.ISTORE, pick(intLocals));
+                    break;
+                case 1:
+                    floatExpression(0);
+                    emit(Opcodes.FSTORE,
+                         floatLocals[random.nextInt(SCRATCH_LOCALS)]);
+                    break;
+                case 2:
+                    emit(Opcodes.ALOAD, intArrayLocals[0], index());
+                    intExpression(0);
+                    emit(Opcodes.IASTORE);
+                    break;
+                case 3:
+                    emit(Opcodes.ALOAD, floatArrayLocals[0], index());
+                    floatExpression(0);
+                    emit(Opcodes.FASTORE);
+                    break;
+                default:
+                    intExpression(0);
+                    emit(Opcodes.POP);
+                    break;
+                }
+            }
+        }
+
+        private void block(int depth) {
+            for (int i = random.nextInt(MAX_BLOCK_SIZE) + 1; i > 0; i--) {
+                statement(depth);
+            }
+        }
+
+        private void branch(int depth) {
+            int end;
+            int jump;
+
+            intExpression(0);
+
+            jump = size;
+
+            emit(Opcodes.IFEQ + random.nextInt(6), 0, 0);
+            block(depth + 1);
+
+            if (random.nextBoolean()) {
+                end = size;
+
+                emit(Opcodes.GOTO, 0, 0);
+                patch(jump, size);
+                block(depth + 1);
+                patch(end, size);
+            } else {
+                patch(jump, size);
+            }
+        }
+
+        /**
+         * Loops a block a constant number of times by counting down the
+         * counter of <code>depth</code>, which blocks only read.
+         */
+        private void loop(int depth) {
+            int counter;
+            int exit;
+            int head;
+
+            counter = loopCounters[depth];
+
+            emit(Opcodes.ICONST_1 + random.nextInt(ARRAY_LENGTH),
+                 Opcodes.ISTORE, counter);
+
+            head = size;
+
+            emit(Opcodes.ILOAD, counter);
+
+            exit = size;
+
+            emit(Opcodes.IFLE, 0, 0);
+            block(depth + 1);
+            emit(Opcodes.ILOAD, counter,
+                 Opcodes.ICONST_1,
+                 Opcodes.ISUB,
+                 Opcodes.ISTORE, counter,
+                 Opcodes.GOTO, head >> 8, head & 0xFF);
+            patch(exit, size);
+        }
+
+        private void intExpression(int depth) {
+            if (depth == MAX_EXPRESSION_DEPTH || random.nextInt(5) < 2) {
+                switch (random.nextInt(4)) {
+                case 0:
+                    emit(Opcodes.ICONST_M1 + random.nextInt(7));
+                    break;
+                case 1:
+                    emit(Opcodes.ILOAD, pick(readableIntLocals));
+                    break;
+                case 2:
+                    emit(Opcodes.ALOAD, intArrayLocals[0], index(),
+                         Opcodes.IALOAD);
+                    break;
+                default:
+                    emit(Opcodes.ALOAD, intArrayLocals[0],
+                         Opcodes.ARRAYLENGTH);
+                    break;
+                }
+
+                return;
+            }
+
+            intExpression(depth + 1);
+
+            if (random.nextInt(4) == 0) {
+                emit(Opcodes.ICONST_1 + random.nextInt(ARRAY_LENGTH),
+                     random.nextBoolean() ? Opcodes.IDIV : Opcodes.IREM);
+            } else {
+                intExpression(depth + 1);
+                emit(random.nextBoolean()
+                             ? Opcodes.IADD
+                             : random.nextBoolean()
+                                       ? Opcodes.ISUB
+                                       : Opcodes.IMUL);
+            }
+        }
+
+        private void floatExpression(int depth) {
+            if (depth == MAX_EXPRESSION_DEPTH || random.nextInt(5) < 2) {
+                switch (random.nextInt(3)) {
+                case 0:
+                    emit(Opcodes.FCONST_0 + random.nextInt(3));
+                    break;
+                case 1:
+                    emit(Opcodes.FLOAD, pick(floatLocals));
+                    break;
+                default:
+                    emit(Opcodes.ALOAD, floatArrayLocals[0], index(),
+                         Opcodes.FALOAD);
+                    break;
+                }
+
+                return;
+            }
+
+            floatExpression(depth + 1);
+            floatExpression(depth + 1);
+            emit(Opcodes.FADD + 4 * random.nextInt(5));
+        }
+
+        private int index() {
+            return Opcodes.ICONST_0 + random.nextInt(ARRAY_LENGTH);
+        }
+
+        private int pick(int[] locals) {
+            return locals[random.nextInt(locals.length)];
+        }
+
+        private void emit(int... elements) {
+            if (size + elements.length > code.length) {
+                code = Arrays.copyOf(code,
+                                     Math.max(code.length * 2,
+                                              size + elements.length));
+            }
+
+            System.arraycopy(elements, 0, code, size, elements.length);
+
+            size += elements.length;
+        }
+
+        private void patch(int jump, int target) {
+            code[jump + 1] = target >> 8;
+            code[jump + 2] = target & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Converter of json and json lines files to {@link CompactFile}s, so that a
+ * corpus can be converted once and generated many times without parsing
+ * json contents.
+ * <br></br>
+ * Each json file or json lines file of the source directory is converted to
+ * a compact file of the same relative path whose extension is
+ * <code>.cfgb</code>. Json contents are validated before they are
+ * converted, and invalid contents are skipped.
+ */
+class CompactConverter {
+    private static final Logger LOGGER
+            = Logger.getLogger(CompactConverter.class.getName());
+
+    private long converted;
+    private long skipped;
+    private SymbolCache symbols;
+
+    /**
+     * Constructs a <code>CompactConverter</code> object whose readers share
+     * the symbols of constants.
+     */
+    CompactConverter() {
+        symbols = new SymbolCache();
+    }
+
+    /**
+     * Converts the json files and json lines files of <code>srcDir</code> to
+     * compact files under <code>dstDir</code>.
+     *
+     * @param srcDir root source directory that contains json files
+     * @param dstDir directory that compact files to be written
+     * @throws IOException if an I/O error occurs while walking
+     *      <code>srcDir</code>
+     */
+    void convert(Path srcDir, Path dstDir) throws IOException {
+        Files.walkFileTree(
+                srcDir,
+                new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(
+                                Path path, BasicFileAttributes attr) {
+                            String name;
+
+                            name = path.getFileName().toString();
+
+                            if (name.endsWith(".json")
+                                    || name.endsWith(".jsonl")) {
+                                convertFile(path,
+                                            dstDir.resolve(
+                                                    srcDir.relativize(path)
+                                                          .toString()));
+                            }
+
+                            return FileVisitResult.CONTINUE;
+                        }});
+
+        LOGGER.info("Converted " + converted + " classes and skipped "
+                    + skipped + " classes.");
+    }
+
+    long getConverted() {
+        return converted;
+    }
+
+    long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Converts <code>srcFile</code> to a compact file next to
+     * <code>dstFile</code>. The records are written as they are read, and
+     * the compact file is not created if <code>srcFile</code> has no valid
+     * json content.
+     *
+     * @param srcFile json file or json lines file to be converted
+     * @param dstFile path of <code>srcFile</code> under the destination
+     *      directory
+     */
+    private void convertFile(Path srcFile, Path dstFile) {
+        Output out;
+        String name;
+
+        name = dstFile.getFileName().toString();
+        out = new Output(dstFile.resolveSibling(
+                name.substring(0, name.lastIndexOf('.'))
+                + CompactFile.EXTENSION));
+
+        try (out) {
+            if (name.endsWith(".jsonl")) {
+                try (BufferedReader in = Files.newBufferedReader(srcFile)) {
+                    String record;
+                    long line;
+
+                    line = 0;
+
+                    while ((record = in.readLine()) != null) {
+                        final String finalRecord;
+
+                        finalRecord = record;
+                        line++;
+
+                        if (!record.isBlank()) {
+                            add(out,
+                                srcFile + ":" + line,
+                                () -> new JsonReader(
+                                        new StringReader(finalRecord),
+                                        symbols));
+                        }
+                    }
+                }
+            } else {
+                add(out,
+                    srcFile.toString(),
+                    () -> {
+                        try (InputStream in = Files.newInputStream(srcFile)) {
+                            return new JsonReader(in, symbols);
+                        }
+                    });
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Skip converting " + srcFile + ". "
+                           + e.getMessage());
+        }
+
+        converted += out.classes;
+    }
+
+    /**
+     * Writes the class of a json content to <code>out</code> if the json
+     * content is valid.
+     *
+     * @param out compact file that the class to be written
+     * @param location location of the json content
+     * @param source source of the json content
+     * @throws IOException if an I/O error occurs while reading the json
+     *      content or writing the class
+     */
+    private void add(Output out, String location, JsonSource source)
+            throws IOException {
+        JsonReader reader;
+
+        try {
+            reader = source.read();
+
+            reader.validate();
+        } catch (JsonSyntaxException | UnsupportedOpcodeException e) {
+            skipped++;
+
+            LOGGER.info("Skip converting " + location + ". "
+                        + e.getMessage());
+
+            return;
+        } catch (JsonIOException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        out.write(reader.readClassInfo());
+    }
+
+    /**
+     * Compact file that is created when its first class is written.
+     */
+    private static class Output implements AutoCloseable {
+        private long classes;
+        private Path file;
+        private DataOutputStream out;
+
+        private Output(Path file) {
+            this.file = file;
+        }
+
+        private void write(ClassInfo classInfo) throws IOException {
+            if (out == null) {
+                Files.createDirectories(file.getParent());
+
+                out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(file)));
+
+                CompactFile.writeHeader(out);
+            }
+
+            CompactFile.write(out, classInfo);
+
+            classes++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Source of a json content.
+     */
+    private interface JsonSource {
+        JsonReader read() throws IOException;
+    }
+}
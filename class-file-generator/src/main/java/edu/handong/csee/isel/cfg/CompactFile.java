@@ -0,0 +1,305 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary file of classes, which is read through memory-mapped I/O
+ * instead of parsing json contents.
+ * <br></br>
+ * A compact file starts with the magic <code>CFGB</code> and the format
+ * version, and is followed by records of classes until the end of the file.
+ * Each record consists of the class version as <code>u4</code>, the
+ * packagename, the classname, the method name and the method descriptor as
+ * UTF-8 strings prefixed by their <code>u2</code> lengths, and the bytecode
+ * as a <code>u4</code> length followed by one byte per element. Since every
+ * element of valid bytecode is from <code>0</code> to <code>255</code>, the
+ * bytecode is stored as raw bytes, and decoding it is a plain copy.
+ * <br></br>
+ * Since version 2, the bytecode is followed by the constants as a
+ * <code>u2</code> count and one entry per constant, which is the tag of its
+ * constant pool entry as <code>u1</code> followed by a <code>u4</code> or a
+ * <code>u8</code> for a number, a string for a class or a string, and the
+ * owner, the name and the descriptor for a member. Files of version 1 are
+ * still read, and their classes have no constants.
+ */
+class CompactFile {
+    static final String EXTENSION = ".cfgb";
+
+    private static final int MAGIC = 0x43464742;
+    private static final int FORMAT_VERSION = 2;
+
+    private ByteBuffer buffer;
+    private Path file;
+    private int formatVersion;
+    private SymbolCache symbols;
+
+    /**
+     * Constructs a <code>CompactFile</code> object by mapping
+     * <code>file</code> into memory and checking its header.
+     *
+     * @param file compact file to be read
+     * @throws IOException if an I/O error occurs while mapping
+     *      <code>file</code>, or it is not a compact file
+     */
+    CompactFile(Path file) throws IOException {
+        this(file, new SymbolCache());
+    }
+
+    /**
+     * Constructs a <code>CompactFile</code> object by mapping
+     * <code>file</code> into memory and checking its header. The symbols of
+     * the constants of the records are interned by <code>symbols</code>.
+     *
+     * @param file compact file to be read
+     * @param symbols cache of the symbols of the constants
+     * @throws IOException if an I/O error occurs while mapping
+     *      <code>file</code>, or it is not a compact file
+     */
+    CompactFile(Path file, SymbolCache symbols) throws IOException {
+        this.file = file;
+        this.symbols = symbols;
+
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The compact file " + file
+                                      + " is too large to be mapped.");
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                                 0,
+                                 channel.size());
+        }
+
+        if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+            throw new IOException("The file " + file
+                                  + " is not a compact file.");
+        }
+
+        formatVersion = buffer.getShort() & 0xFFFF;
+
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+            throw new IOException("The compact file " + file
+                                  + " has unsupported format version "
+                                  + formatVersion + ".");
+        }
+    }
+
+    /**
+     * Checks if there is a record that has not been read.
+     *
+     * @return <code>true</code> if there is a record left
+     */
+    boolean hasNext() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Reads the next record of this file.
+     *
+     * @return the information of the class of the record
+     * @throws IOException if the record is truncated or corrupted
+     */
+    ClassInfo next() throws IOException {
+        String classname;
+        String methodDesc;
+        String methodname;
+        String packagename;
+        int[] bytecode;
+        Symbol[] constants;
+        int version;
+
+        try {
+            version = buffer.getInt();
+            packagename = readString();
+            classname = readString();
+            methodname = readString();
+            methodDesc = readString();
+            bytecode = new int[checkedLength(buffer.getInt())];
+
+            for (int i = 0; i < bytecode.length; i++) {
+                bytecode[i] = buffer.get() & 0xFF;
+            }
+
+            constants = formatVersion >= 2 ? readConstants()
+                                           : ClassInfo.defaultConstants();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The compact file " + file
+                                  + " is truncated.", e);
+        }
+
+        return new ClassInfo(version,
+                             packagename,
+                             classname,
+                             methodname,
+                             methodDesc,
+                             bytecode,
+                             constants);
+    }
+
+    /**
+     * Writes the header of a compact file to <code>out</code>.
+     *
+     * @param out stream of the compact file
+     * @throws IOException if an I/O error occurs while writing
+     */
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+    }
+
+    /**
+     * Writes the record of <code>classInfo</code> to <code>out</code>.
+     *
+     * @param out stream of the compact file whose header is written
+     * @param classInfo information of the class, whose bytecode is valid
+     * @throws IOException if an I/O error occurs while writing, or a string
+     *      or the constants of <code>classInfo</code> are too long to be
+     *      written
+     */
+    static void write(DataOutputStream out, ClassInfo classInfo)
+            throws IOException {
+        out.writeInt(classInfo.getVersion());
+        writeString(out, classInfo.getPackagename());
+        writeString(out, classInfo.getClassname());
+        writeString(out, classInfo.getMethodname());
+        writeString(out, classInfo.getMethodDesc());
+        out.writeInt(classInfo.getBytecode().length);
+
+        for (int element : classInfo.getBytecode()) {
+            out.writeByte(element);
+        }
+
+        if (classInfo.getConstants().length > 0xFFFF) {
+            throw new IOException("The class " + classInfo.getClassname()
+                                  + " has too many constants for a compact "
+                                  + "file.");
+        }
+
+        out.writeShort(classInfo.getConstants().length);
+
+        for (Symbol constant : classInfo.getConstants()) {
+            writeConstant(out, constant);
+        }
+    }
+
+    private Symbol[] readConstants() throws IOException {
+        Symbol[] constants;
+
+        constants = new Symbol[checkedLength(buffer.getShort() & 0xFFFF)];
+
+        for (int i = 0; i < constants.length; i++) {
+            Symbol.Kind kind;
+
+            kind = Symbol.Kind.ofTag(buffer.get() & 0xFF);
+
+            if (kind == null) {
+                throw new IOException("The compact file " + file
+                                      + " is corrupted.");
+            }
+
+            switch (kind) {
+            case INT:
+                constants[i] = symbols.internValue(buffer.getInt());
+                break;
+            case FLOAT:
+                constants[i] = symbols.internValue(
+                        Float.intBitsToFloat(buffer.getInt()));
+                break;
+            case LONG:
+                constants[i] = symbols.internValue(buffer.getLong());
+                break;
+            case DOUBLE:
+                constants[i] = symbols.internValue(
+                        Double.longBitsToDouble(buffer.getLong()));
+                break;
+            case STRING:
+                constants[i] = symbols.internValue(readString());
+                break;
+            case CLASS:
+                constants[i] = symbols.internClass(readString());
+                break;
+            default:
+                constants[i] = symbols.internMember(
+                        readString(),
+                        readString(),
+                        readString(),
+                        kind == Symbol.Kind.INTERFACE_METHOD);
+            }
+        }
+
+        return constants;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes;
+
+        bytes = new byte[checkedLength(buffer.getShort() & 0xFFFF)];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checkedLength(int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("The compact file " + file
+                                  + " is corrupted.");
+        }
+
+        return length;
+    }
+
+    private static void writeConstant(DataOutputStream out, Symbol constant)
+            throws IOException {
+        out.writeByte(constant.getKind().getTag());
+
+        switch (constant.getKind()) {
+        case INT:
+            out.writeInt((Integer) constant.getValue());
+            break;
+        case FLOAT:
+            out.writeInt(Float.floatToRawIntBits((Float) constant.getValue()));
+            break;
+        case LONG:
+            out.writeLong((Long) constant.getValue());
+            break;
+        case DOUBLE:
+            out.writeLong(Double.doubleToRawLongBits(
+                    (Double) constant.getValue()));
+            break;
+        case STRING:
+            writeString(out, (String) constant.getValue());
+            break;
+        case CLASS:
+            writeString(out, constant.getName());
+            break;
+        default:
+            writeString(out, constant.getOwner());
+            writeString(out, constant.getName());
+            writeString(out, constant.getDesc());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string)
+            throws IOException {
+        byte[] bytes;
+
+        bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("The string " + string.substring(0, 32)
+                                  + "... is too long for a compact file.");
+        }
+
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
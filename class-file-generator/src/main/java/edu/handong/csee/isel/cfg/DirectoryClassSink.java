@@ -0,0 +1,247 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>ClassSink</code> that writes each class file to its package directory 
+ * under a destination directory.
+ * <br></br>
+ * Package directories that have been created are remembered, so that each of
+ * them is created only once. Class files are written through
+ * <code>FileChannel</code>s, and can optionally be synced to the storage in
+ * batches. A written class file is closed at once and reopened when its batch
+ * is synced, so that a large batch does not hold as many file descriptors.
+ * The directories of a batch, up to the destination directory, are synced
+ * after its class files, so that new class files and package directories are
+ * durable too. Whether each class file has been synced is told to the sync
+ * listener.
+ */
+class DirectoryClassSink implements ClassSink {
+    private Set<Path> createdDirs;
+    private Path dstDir;
+    private SyncListener listener;
+    private int syncBatch;
+    private List<String> unsynced;
+
+    /**
+     * Constructs a <code>DirectoryClassSink</code> object and creates 
+     * <code>dstDir</code> if it does not exist.
+     * 
+     * @param dstDir directory that class files to be written
+     * @throws FileAlreadyExistsException if <code>dstDir</code> exists but is 
+     *      not a directory
+     * @throws IOException if an I/O error occurs while creating 
+     *      <code>dstDir</code>
+     */
+    DirectoryClassSink(Path dstDir) 
+            throws FileAlreadyExistsException, IOException {
+        this.dstDir = Files.createDirectories(dstDir);
+        createdDirs = ConcurrentHashMap.newKeySet();
+        unsynced = new ArrayList<>();
+    }
+
+    /**
+     * Makes this sink sync written class files to the storage every
+     * <code>syncBatch</code> class files, and the rest when it is closed.
+     * Class files are not synced by default.
+     *
+     * @param syncBatch number of class files synced at once, or
+     *      <code>0</code> not to sync class files
+     */
+    void setSyncBatch(int syncBatch) {
+        this.syncBatch = syncBatch;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br></br>
+     * Without a listener, an error that occurs while syncing a batch is
+     * thrown by the write or the flush that syncs the batch.
+     */
+    @Override
+    public boolean setSyncListener(SyncListener listener) {
+        this.listener = listener;
+
+        return syncBatch > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws FileAlreadyExistsException if a package directory exists but is 
+     *      not a directory
+     * @throws IOException if an I/O error occurs while writing the class
+     *      file, or while syncing its batch and no listener is set
+     */
+    @Override
+    public String write(String packagename, String classname, byte[] bytes) 
+            throws FileAlreadyExistsException, IOException {
+        FileChannel channel;
+        ByteBuffer buffer;
+        Path dstFile;
+        String path;
+
+        path = ClassSink.path(packagename, classname);
+        dstFile = dstDir.resolve(path);
+
+        if (!createdDirs.contains(dstFile.getParent())) {
+            Files.createDirectories(dstFile.getParent());
+            createdDirs.add(dstFile.getParent());
+        }
+
+        buffer = ByteBuffer.wrap(bytes);
+        channel = FileChannel.open(dstFile,
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+
+        try (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        if (syncBatch > 0) {
+            defer(path);
+        }
+
+        return path;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        List<String> batch;
+
+        synchronized (unsynced) {
+            batch = new ArrayList<>(unsynced);
+
+            unsynced.clear();
+        }
+
+        sync(batch);
+    }
+
+    /**
+     * Syncs class files that have not been synced yet.
+     *
+     * @throws IOException if an I/O error occurs while syncing class files
+     *      and no listener is set
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Defers syncing the class file of <code>path</code> until its batch is
+     * full.
+     *
+     * @param path path of a written class file relative to the destination
+     *      directory
+     * @throws IOException if an I/O error occurs while syncing the batch and
+     *      no listener is set
+     */
+    private void defer(String path) throws IOException {
+        List<String> batch;
+
+        synchronized (unsynced) {
+            unsynced.add(path);
+
+            if (unsynced.size() < syncBatch) {
+                return;
+            }
+
+            batch = new ArrayList<>(unsynced);
+
+            unsynced.clear();
+        }
+
+        sync(batch);
+    }
+
+    /**
+     * Syncs the class files of <code>batch</code>, and then their directories
+     * up to the destination directory. Each class file is reopened, since
+     * syncing any descriptor of a file writes all of its cached data. Each
+     * class file is told to the listener, and it fails if the class file or
+     * one of its directories fails to be synced.
+     *
+     * @param batch paths of written class files relative to the destination
+     *      directory
+     * @throws IOException if an I/O error occurs while syncing a class file
+     *      and no listener is set
+     */
+    private void sync(List<String> batch) throws IOException {
+        Map<String, IOException> failures;
+        Map<Path, IOException> dirs;
+        IOException failure;
+
+        failures = new HashMap<>();
+        dirs = new HashMap<>();
+        failure = null;
+
+        for (String path : batch) {
+            Path dstFile;
+
+            dstFile = dstDir.resolve(path);
+
+            try (FileChannel channel
+                    = FileChannel.open(dstFile, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (IOException e) {
+                failures.put(path, e);
+            }
+
+            for (Path dir = dstFile.getParent();
+                    dir != null && dir.startsWith(dstDir);
+                    dir = dir.getParent()) {
+                dirs.put(dir, null);
+            }
+        }
+
+        for (Path dir : new ArrayList<>(dirs.keySet())) {
+            try (FileChannel channel
+                    = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                dirs.put(dir, e);
+            }
+        }
+
+        for (String path : batch) {
+            IOException cause;
+
+            cause = failures.get(path);
+
+            for (Path dir = dstDir.resolve(path).getParent();
+                    cause == null && dir != null && dir.startsWith(dstDir);
+                    dir = dir.getParent()) {
+                cause = dirs.get(dir);
+            }
+
+            if (listener != null) {
+                listener.synced(path, cause);
+            } else if (cause != null && failure == null) {
+                failure = cause;
+            } else if (cause != null && cause != failure) {
+                failure.addSuppressed(cause);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
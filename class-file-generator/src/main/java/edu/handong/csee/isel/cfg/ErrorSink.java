@@ -0,0 +1,323 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Sink of the failures of a generation, which counts them by the type of
+ * the exception, logs a limited number of them per second, and writes all of
+ * them as json lines when a failure file is given.
+ * <br></br>
+ * Reporting a failure never waits for the console or the file. The message
+ * of a failure is only logged within the limit, and failure records are
+ * rendered and queued to a writer thread that serializes them to the file,
+ * which is flushed once the sink is closed. The queue is bounded, and records
+ * that do not fit in it, or that arrive after the file failed, are dropped
+ * and counted. Each record consists of the location of the content, the stage
+ * of the generation, the type and the message of the exception, and the
+ * opcode and the offset of the invalid element of the bytecode when they are
+ * known.
+ */
+class ErrorSink implements AutoCloseable {
+    private static final Logger LOGGER
+            = Logger.getLogger(ErrorSink.class.getName());
+    private static final int LOGS_PER_SECOND = 20;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    private volatile boolean broken;
+    private Map<String, LongAdder> counts;
+    private LongAdder dropped;
+    private AtomicLong logged;
+    private AtomicLong logWindow;
+    private BufferedWriter out;
+    private BlockingQueue<Failure> queue;
+    private volatile boolean closed;
+    private LongAdder suppressed;
+    private Thread writer;
+
+    /**
+     * Constructs an <code>ErrorSink</code> object that only logs failures.
+     */
+    ErrorSink() {
+        counts = new ConcurrentHashMap<>();
+        dropped = new LongAdder();
+        logged = new AtomicLong();
+        logWindow = new AtomicLong();
+        suppressed = new LongAdder();
+    }
+
+    /**
+     * Constructs an <code>ErrorSink</code> object that also writes failures
+     * to <code>file</code>.
+     *
+     * @param file json lines file that failures to be written
+     * @throws IOException if an I/O error occurs while creating
+     *      <code>file</code>
+     */
+    ErrorSink(Path file) throws IOException {
+        this(file, QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs an <code>ErrorSink</code> object that also writes failures
+     * to <code>file</code>, where at most <code>capacity</code> failures wait
+     * for the writer thread.
+     *
+     * @param file json lines file that failures to be written
+     * @param capacity maximum number of queued failures
+     * @throws IOException if an I/O error occurs while creating
+     *      <code>file</code>
+     */
+    ErrorSink(Path file, int capacity) throws IOException {
+        this();
+
+        out = Files.newBufferedWriter(file);
+        queue = new LinkedBlockingQueue<>(capacity);
+        writer = new Thread(this::drain, "cfg-error-sink");
+
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reports that a content of <code>srcFile</code> could not be generated.
+     *
+     * @param srcFile file that contains the content
+     * @param line line number or record number of the content in
+     *      <code>srcFile</code>, or <code>0</code> if the content is the
+     *      whole file
+     * @param stage stage of the generation that failed
+     * @param cause exception of the failure
+     * @param warning <code>true</code> to log the failure as a warning
+     *      rather than an information
+     */
+    void report(Path srcFile, long line, GenerationMetrics.Stage stage,
+                Exception cause, boolean warning) {
+        counts.computeIfAbsent(cause.getClass().getSimpleName(),
+                               type -> new LongAdder())
+              .increment();
+
+        if (queue != null) {
+            Failure failure;
+
+            failure = new Failure(srcFile, line, stage, cause);
+
+            if (broken || !queue.offer(failure)) {
+                dropped.increment();
+            }
+        }
+
+        if (!shouldLog()) {
+            suppressed.increment();
+
+            return;
+        }
+
+        LOGGER.log(warning ? Level.WARNING : Level.INFO,
+                   "Skip " + verb(stage) + " " + location(srcFile, line) + ". "
+                   + cause.getMessage());
+    }
+
+    /**
+     * Gets the number of failures that were not written to the failure file.
+     *
+     * @return the number of dropped failures
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Logs the number of failures by the type of the exception since the
+     * last summary, and starts counting again.
+     */
+    void summarize() {
+        Map<String, Long> summary;
+        long total;
+
+        summary = new TreeMap<>();
+        total = 0;
+
+        for (Map.Entry<String, LongAdder> count : counts.entrySet()) {
+            long sum;
+
+            sum = count.getValue().sumThenReset();
+
+            if (sum > 0) {
+                summary.put(count.getKey(), sum);
+                total += sum;
+            }
+        }
+
+        if (total == 0) {
+            return;
+        }
+
+        LOGGER.info("Skipped " + total + " contents by " + summary
+                    + (suppressed.sum() > 0
+                               ? " and suppressed " + suppressed.sumThenReset()
+                                 + " of their messages."
+                               : "."));
+    }
+
+    /**
+     * Writes the queued failures and closes the failure file.
+     *
+     * @throws IOException if an I/O error occurs while writing the failure
+     *      file
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        out.close();
+
+        if (dropped.sum() > 0) {
+            LOGGER.warning("Dropped " + dropped.sum() + " failures that "
+                           + "could not be written to the failure file.");
+        }
+    }
+
+    /**
+     * Checks if a failure can be logged within the limit of the current
+     * second.
+     */
+    private boolean shouldLog() {
+        long window;
+
+        window = System.nanoTime() / NANOS_PER_SECOND;
+
+        if (logWindow.get() != window
+                && logWindow.getAndSet(window) != window) {
+            logged.set(0);
+        }
+
+        return logged.incrementAndGet() <= LOGS_PER_SECOND;
+    }
+
+    /**
+     * Writes queued failures until this sink is closed and the queue is
+     * empty.
+     */
+    private void drain() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Failure failure;
+
+                failure = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (failure != null) {
+                    failure.write(out);
+                }
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            broken = true;
+
+            dropped.add(queue.size());
+            queue.clear();
+            LOGGER.warning("Failed to write the failures. " + e.getMessage());
+        } catch (InterruptedException e) {
+            LOGGER.warning("Interrupted while writing the failures.");
+        }
+    }
+
+    private static String location(Path srcFile, long line) {
+        return line == 0 ? srcFile.toString() : srcFile + ":" + line;
+    }
+
+    private static String verb(GenerationMetrics.Stage stage) {
+        switch (stage) {
+        case WALK:
+            return "walking";
+        case PARSE:
+            return "reading";
+        case VALIDATE:
+            return "validating";
+        case GENERATE:
+            return "generating";
+        default:
+            return "writing class file of";
+        }
+    }
+
+    /**
+     * Rendered failure of a content, which does not keep the exception.
+     */
+    private static class Failure {
+        private String exception;
+        private String location;
+        private String message;
+        private int offset;
+        private int opcode;
+        private String stage;
+
+        private Failure(Path srcFile, long line,
+                        GenerationMetrics.Stage stage, Exception cause) {
+            location = location(srcFile, line);
+            this.stage = stage.name().toLowerCase();
+            exception = cause.getClass().getName();
+            message = cause.getMessage();
+            opcode = -1;
+            offset = -1;
+
+            if (cause instanceof UnsupportedOpcodeException) {
+                opcode = ((UnsupportedOpcodeException) cause).getOpcode();
+                offset = ((UnsupportedOpcodeException) cause).getOffset();
+            }
+        }
+
+        /**
+         * Writes this failure as a json line to <code>out</code> without
+         * flushing it.
+         */
+        private void write(BufferedWriter out) throws IOException {
+            JsonWriter json;
+
+            json = new JsonWriter(out);
+
+            json.beginObject();
+            json.name("location").value(location);
+            json.name("stage").value(stage);
+            json.name("exception").value(exception);
+            json.name("message").value(message);
+
+            if (opcode >= 0) {
+                json.name("opcode").value(opcode);
+            }
+
+            if (offset >= 0) {
+                json.name("offset").value(offset);
+            }
+
+            json.endObject();
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.gson.stream.JsonWriter;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Harness that loads generated class files and runs their methods, so that a
+ * corpus of class files can be checked to actually work.
+ * <br></br>
+ * Class files of a directory or a jar file are loaded in batches. Each batch
+ * is defined by its own class loader, which is dropped with the classes when
+ * the batch is done, and batches are checked by a pool of workers. A class
+ * is initialized to be verified and linked, and then every method declared
+ * by it is invoked with arguments synthesized from its parameter types, on a
+ * separate thread with a timeout. A thread whose invocation timed out cannot
+ * be stopped safely, so it is abandoned. Once too many abandoned threads are
+ * still running, the remaining methods are not run, so that spinning threads
+ * do not starve the process.
+ * <br></br>
+ * The outcome and the time of each method, or of each class that could not
+ * be loaded, are written to a json lines report.
+ */
+class ExecutionHarness {
+    private static final Logger LOGGER
+            = Logger.getLogger(ExecutionHarness.class.getName());
+    private static final int BATCH_SIZE = 256;
+    private static final int ARRAY_LENGTH = 8;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 4;
+    /**
+     * Default maximum number of abandoned invoker threads that can be still
+     * running before the remaining methods are not run.
+     */
+    static final int MAX_ABANDONED = 64;
+
+    private Set<Thread> abandoned;
+    private int maxAbandoned;
+    private Map<Outcome, AtomicLong> outcomes;
+    private int threads;
+    private long timeoutMillis;
+
+    /**
+     * Outcomes of loading a class or running a method.
+     */
+    enum Outcome {
+        /** The method returned. */
+        RETURNED(false),
+        /** The method threw an exception. */
+        THREW(false),
+        /** The method did not return within the timeout. */
+        TIMED_OUT(true),
+        /** The class file could not be defined. */
+        MALFORMED(true),
+        /** The class failed the verification. */
+        UNVERIFIABLE(true),
+        /** The class could not be linked or initialized. */
+        UNLINKABLE(true),
+        /** The method was not run since too many invocations timed out. */
+        NOT_RUN(true);
+
+        private final boolean failure;
+
+        private Outcome(boolean failure) {
+            this.failure = failure;
+        }
+
+        /**
+         * Checks if this outcome means that the class file does not work.
+         * A method that throws an exception for the synthesized arguments
+         * still works.
+         *
+         * @return <code>true</code> if this outcome is a failure
+         */
+        boolean isFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Constructs an <code>ExecutionHarness</code> object.
+     *
+     * @param threads number of workers that check batches
+     * @param timeoutMillis time that each method invocation can take in
+     *      milliseconds
+     */
+    ExecutionHarness(int threads, long timeoutMillis) {
+        this(threads, timeoutMillis, MAX_ABANDONED);
+    }
+
+    /**
+     * Constructs an <code>ExecutionHarness</code> object.
+     *
+     * @param threads number of workers that check batches
+     * @param timeoutMillis time that each method invocation can take in
+     *      milliseconds
+     * @param maxAbandoned maximum number of abandoned invoker threads that
+     *      can be still running before the remaining methods are not run
+     */
+    ExecutionHarness(int threads, long timeoutMillis, int maxAbandoned) {
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAbandoned = maxAbandoned;
+        abandoned = ConcurrentHashMap.newKeySet();
+        outcomes = new EnumMap<>(Outcome.class);
+
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new AtomicLong());
+        }
+    }
+
+    /**
+     * Loads and runs the class files of <code>src</code>, and writes the
+     * outcomes to json lines file <code>reportFile</code>.
+     *
+     * @param src directory that contains class files, or jar file
+     * @param reportFile json lines file that outcomes to be written
+     * @return <code>true</code> if no outcome is a failure
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>src</code> or writing <code>reportFile</code>, or the run
+     *      is interrupted
+     */
+    boolean run(Path src, Path reportFile) throws IOException {
+        ThreadPoolExecutor workers;
+        double seconds;
+        long failures;
+        long start;
+
+        start = System.nanoTime();
+
+        for (AtomicLong count : outcomes.values()) {
+            count.set(0);
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(reportFile)) {
+            Map<String, byte[]> batch;
+
+            workers = GenerationPipeline.newStage(
+                    threads, threads * QUEUE_CAPACITY_PER_THREAD);
+            batch = new HashMap<>();
+
+            try {
+                if (Files.isDirectory(src)) {
+                    walk(workers, out, batch, src);
+                } else {
+                    readJar(workers, out, batch, src);
+                }
+
+                submit(workers, out, batch);
+            } finally {
+                GenerationPipeline.awaitStage(workers);
+            }
+        }
+
+        seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        failures = 0;
+
+        for (Outcome outcome : Outcome.values()) {
+            if (outcome.isFailure()) {
+                failures += outcomes.get(outcome).get();
+            }
+        }
+
+        LOGGER.info(String.format("Checked %d methods and classes in %.3f s "
+                                      + "(%.1f/sec): %s.",
+                                  count(),
+                                  seconds,
+                                  count() / seconds,
+                                  outcomes));
+
+        return failures == 0;
+    }
+
+    /**
+     * Gets the number of methods and unloadable classes that had
+     * <code>outcome</code> in the last run.
+     *
+     * @param outcome outcome to be counted
+     * @return the number of the outcome
+     */
+    long getCount(Outcome outcome) {
+        return outcomes.get(outcome).get();
+    }
+
+    /**
+     * Synthesizes arguments of parameter types <code>types</code>.
+     * Primitive values grow with the position of the parameter, primitive
+     * arrays are filled with values in descending order, and the other
+     * references are <code>null</code>.
+     *
+     * @param types parameter types of a method
+     * @return the arguments
+     */
+    static Object[] arguments(Class<?>[] types) {
+        Object[] args;
+
+        args = new Object[types.length];
+
+        for (int i = 0; i < types.length; i++) {
+            Class<?> component;
+
+            component = types[i].getComponentType();
+
+            if (types[i].isPrimitive()) {
+                args[i] = value(types[i], i + 2);
+            } else if (component != null && component.isPrimitive()) {
+                args[i] = Array.newInstance(component, ARRAY_LENGTH);
+
+                for (int j = 0; j < ARRAY_LENGTH; j++) {
+                    Array.set(args[i], j, value(component, ARRAY_LENGTH - j));
+                }
+            }
+        }
+
+        return args;
+    }
+
+    private static Object value(Class<?> type, int n) {
+        if (type == boolean.class) {
+            return n % 2 == 0;
+        } else if (type == byte.class) {
+            return (byte) n;
+        } else if (type == char.class) {
+            return (char) ('a' + n);
+        } else if (type == short.class) {
+            return (short) n;
+        } else if (type == long.class) {
+            return (long) n;
+        } else if (type == float.class) {
+            return n + 0.5f;
+        } else if (type == double.class) {
+            return n + 0.5;
+        }
+
+        return n;
+    }
+
+    private long count() {
+        long count;
+
+        count = 0;
+
+        for (AtomicLong outcome : outcomes.values()) {
+            count += outcome.get();
+        }
+
+        return count;
+    }
+
+    private void walk(ThreadPoolExecutor workers, Writer out,
+                      Map<String, byte[]> batch, Path srcDir)
+            throws IOException {
+        Files.walkFileTree(
+                srcDir,
+                new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(
+                                Path path, BasicFileAttributes attr)
+                                throws IOException {
+                            if (path.getFileName()
+                                    .toString()
+                                    .endsWith(".class")) {
+                                add(workers,
+                                    out,
+                                    batch,
+                                    Files.readAllBytes(path));
+                            }
+
+                            return FileVisitResult.CONTINUE;
+                        }});
+    }
+
+    private void readJar(ThreadPoolExecutor workers, Writer out,
+                         Map<String, byte[]> batch, Path jarFile)
+            throws IOException {
+        try (ZipInputStream in
+                = new ZipInputStream(Files.newInputStream(jarFile))) {
+            ZipEntry entry;
+
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.isDirectory()
+                        && entry.getName().endsWith(".class")) {
+                    add(workers, out, batch, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds class file <code>bytes</code> to <code>batch</code>, and submits
+     * the batch to <code>workers</code> when it is full. If the batch already
+     * has a class of the same name, which happens when the source has several
+     * copies of a class, the batch is submitted first, so that every copy is
+     * checked by its own class loader.
+     *
+     * @param workers stage that checks batches
+     * @param out writer of the report
+     * @param batch class files by their binary names
+     * @param bytes class file to be checked
+     */
+    private void add(ThreadPoolExecutor workers, Writer out,
+                     Map<String, byte[]> batch, byte[] bytes) {
+        String name;
+
+        try {
+            name = new ClassReader(bytes).getClassName().replace('/', '.');
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException e) {
+            report(out, "?", null, Outcome.MALFORMED, 0, e);
+
+            return;
+        }
+
+        if (batch.containsKey(name)) {
+            submit(workers, out, batch);
+        }
+
+        batch.put(name, bytes);
+
+        if (batch.size() == BATCH_SIZE) {
+            submit(workers, out, batch);
+        }
+    }
+
+    private void submit(ThreadPoolExecutor workers, Writer out,
+                        Map<String, byte[]> batch) {
+        Map<String, byte[]> classes;
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        classes = new HashMap<>(batch);
+
+        batch.clear();
+        workers.execute(() -> check(out, classes));
+    }
+
+    /**
+     * Loads the classes of a batch with a new class loader and runs their
+     * methods.
+     *
+     * @param out writer of the report
+     * @param classes class files of the batch by their binary names
+     */
+    private void check(Writer out, Map<String, byte[]> classes) {
+        BatchClassLoader loader;
+        ExecutorService invoker;
+
+        loader = new BatchClassLoader(classes);
+        invoker = newInvoker();
+
+        try {
+            for (String name : classes.keySet()) {
+                Class<?> clazz;
+                long started;
+
+                started = System.nanoTime();
+
+                try {
+                    clazz = Class.forName(name, true, loader);
+                } catch (ClassFormatError e) {
+                    report(out, name, null, Outcome.MALFORMED,
+                           System.nanoTime() - started, e);
+
+                    continue;
+                } catch (VerifyError e) {
+                    report(out, name, null, Outcome.UNVERIFIABLE,
+                           System.nanoTime() - started, e);
+
+                    continue;
+                } catch (LinkageError | ClassNotFoundException e) {
+                    report(out, name, null, Outcome.UNLINKABLE,
+                           System.nanoTime() - started, e);
+
+                    continue;
+                }
+
+                for (Method method : clazz.getDeclaredMethods()) {
+                    abandoned.removeIf(thread -> !thread.isAlive());
+
+                    if (abandoned.size() >= maxAbandoned) {
+                        report(out, name, method.getName(), Outcome.NOT_RUN,
+                               0, null);
+
+                        continue;
+                    }
+
+                    if (!run(out, invoker, clazz, method)) {
+                        invoker.shutdownNow();
+
+                        invoker = newInvoker();
+                    }
+                }
+            }
+        } finally {
+            invoker.shutdownNow();
+        }
+    }
+
+    /**
+     * Invokes <code>method</code> on a new instance of <code>clazz</code> by
+     * <code>invoker</code>, and reports the outcome.
+     *
+     * @param out writer of the report
+     * @param invoker single thread that invokes methods
+     * @param clazz class that declares <code>method</code>
+     * @param method method to be invoked
+     * @return <code>false</code> if the invocation timed out and the thread
+     *      of <code>invoker</code> is still busy, in which case the thread is
+     *      abandoned
+     */
+    private boolean run(Writer out, ExecutorService invoker, Class<?> clazz,
+                        Method method) {
+        AtomicReference<Thread> thread;
+        Future<?> invocation;
+        long started;
+
+        started = System.nanoTime();
+        thread = new AtomicReference<>();
+        invocation = invoker.submit(() -> {
+            Object instance;
+
+            thread.set(Thread.currentThread());
+            method.setAccessible(true);
+
+            instance = Modifier.isStatic(method.getModifiers())
+                               ? null
+                               : clazz.getDeclaredConstructor()
+                                      .newInstance();
+
+            return method.invoke(instance,
+                                 arguments(method.getParameterTypes()));
+        });
+
+        try {
+            invocation.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            report(out, clazz.getName(), method.getName(), Outcome.RETURNED,
+                   System.nanoTime() - started, null);
+        } catch (ExecutionException e) {
+            Throwable cause;
+
+            cause = e.getCause() instanceof InvocationTargetException
+                            ? e.getCause().getCause()
+                            : e.getCause();
+
+            report(out, clazz.getName(), method.getName(),
+                   cause instanceof VerifyError
+                           ? Outcome.UNVERIFIABLE
+                           : cause instanceof LinkageError
+                                     ? Outcome.UNLINKABLE
+                                     : Outcome.THREW,
+                   System.nanoTime() - started, cause);
+        } catch (TimeoutException e) {
+            invocation.cancel(true);
+            abandon(thread.get());
+            report(out, clazz.getName(), method.getName(), Outcome.TIMED_OUT,
+                   System.nanoTime() - started, null);
+
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            invocation.cancel(true);
+            abandon(thread.get());
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private void abandon(Thread thread) {
+        if (thread != null && thread.isAlive()) {
+            abandoned.add(thread);
+        }
+    }
+
+    private void report(Writer out, String classname, String methodname,
+                        Outcome outcome, long nanos, Throwable cause) {
+        StringWriter record;
+
+        outcomes.get(outcome).incrementAndGet();
+
+        record = new StringWriter();
+
+        try (JsonWriter json = new JsonWriter(record)) {
+            json.beginObject();
+            json.name("class").value(classname);
+            json.name("method").value(methodname);
+            json.name("outcome").value(outcome.name().toLowerCase());
+            json.name("nanos").value(nanos);
+
+            if (cause != null) {
+                json.name("message").value(cause.toString());
+            }
+
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            synchronized (out) {
+                out.write(record.toString());
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to write the outcome of " + classname
+                           + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a single daemon thread that invokes methods. A thread whose
+     * invocation timed out cannot be stopped safely, so it is abandoned and
+     * left to finish or to end with the process, and counted until it
+     * finishes.
+     *
+     * @return the invoker
+     */
+    private static ExecutorService newInvoker() {
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread;
+
+            thread = new Thread(task, "cfg-harness-invoker");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Disposable class loader of a batch of class files. Classes that are
+     * not in the batch are loaded by the platform class loader, so that the
+     * batch does not see the classes of the application.
+     */
+    private static class BatchClassLoader extends ClassLoader {
+        private Map<String, byte[]> classes;
+
+        private BatchClassLoader(Map<String, byte[]> classes) {
+            super("cfg-batch", ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name)
+                throws ClassNotFoundException {
+            byte[] bytes;
+
+            bytes = classes.get(name);
+
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.handong.csee.isel.cfg;
+
+import java.nio.file.Path;
+
+/**
+ * Class file that has been generated from a source file but not yet written.
+ */
+class GeneratedClass {
+    private byte[] bytes;
+    private String classname;
+    private long line;
+    private String packagename;
+    private Path source;
+
+    GeneratedClass(Path source, long line, String packagename, 
+                   String classname, byte[] bytes) {
+        this.source = source;
+        this.line = line;
+        this.packagename = packagename;
+        this.classname = classname;
+        this.bytes = bytes;
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    String getClassname() {
+        return classname;
+    }
+
+    /**
+     * Gets the line number of the json content in the source file.
+     * 
+     * @return the line number, or <code>0</code> if the json content is the 
+     *      whole source file
+     */
+    long getLine() {
+        return line;
+    }
+
+    String getPackagename() {
+        return packagename;
+    }
+
+    Path getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,231 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Metrics of a generation run, which are the latencies of each stage, the
+ * bytes read from json files and written as class files, the bytecode
+ * elements removed by the optimization, and the number of skipped files
+ * grouped by the type of the exception.
+ * <br></br>
+ * All methods can be called by the stages of a pipeline at the same time.
+ */
+class GenerationMetrics {
+
+    /**
+     * Stages of a generation run whose latencies are recorded.
+     */
+    enum Stage {
+        /** Walking the source directory to the next file. */
+        WALK,
+        /** Reading and parsing a json content. */
+        PARSE,
+        /** Validating the bytecode of a json content. */
+        VALIDATE,
+        /** Making a <code>ClassWriter</code> visit a json content, including
+         *  the computation of frames. */
+        GENERATE,
+        /** Writing a class file to the sink. */
+        WRITE
+    }
+
+    private LongAdder bytesIn;
+    private LongAdder bytesOut;
+    private LongAdder bytecodeSaved;
+    private Histogram[] histograms;
+    private ConcurrentHashMap<String, LongAdder> skips;
+
+    GenerationMetrics() {
+        bytesIn = new LongAdder();
+        bytesOut = new LongAdder();
+        bytecodeSaved = new LongAdder();
+        histograms = new Histogram[Stage.values().length];
+        skips = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    void addBytecodeSaved(long elements) {
+        bytecodeSaved.add(elements);
+    }
+
+    long getBytecodeSaved() {
+        return bytecodeSaved.sum();
+    }
+
+    /**
+     * Records that a file is skipped because of <code>cause</code>.
+     *
+     * @param cause exception that made the file skipped
+     */
+    void skip(Exception cause) {
+        skips.computeIfAbsent(cause.getClass().getSimpleName(),
+                              type -> new LongAdder())
+             .increment();
+    }
+
+    /**
+     * Writes the metrics as a json object to <code>file</code>.
+     *
+     * @param file file that the metrics to be written
+     * @param elapsedNanos elapsed time of the run
+     * @param generated number of generated class files
+     * @param skipped number of skipped files
+     * @param unchanged number of unchanged files
+     * @throws IOException if an I/O error occurs while writing
+     *      <code>file</code>
+     */
+    void write(Path file, long elapsedNanos,
+               long generated, long skipped, long unchanged)
+            throws IOException {
+        try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(file))) {
+            Map<String, LongAdder> sortedSkips;
+
+            sortedSkips = new TreeMap<>(skips);
+
+            out.setIndent("  ");
+            out.beginObject();
+            out.name("elapsedNanos").value(elapsedNanos);
+            out.name("generated").value(generated);
+            out.name("skipped").value(skipped);
+            out.name("unchanged").value(unchanged);
+            out.name("bytesIn").value(bytesIn.sum());
+            out.name("bytesOut").value(bytesOut.sum());
+            out.name("bytecodeSaved").value(bytecodeSaved.sum());
+            out.name("skippedBy").beginObject();
+
+            for (Map.Entry<String, LongAdder> skip : sortedSkips.entrySet()) {
+                out.name(skip.getKey()).value(skip.getValue().sum());
+            }
+
+            out.endObject();
+            out.name("stages").beginObject();
+
+            for (Stage stage : Stage.values()) {
+                out.name(stage.name().toLowerCase());
+                histograms[stage.ordinal()].write(out);
+            }
+
+            out.endObject();
+            out.endObject();
+        }
+    }
+
+    /**
+     * Latency histogram whose buckets are powers of two nanoseconds.
+     */
+    private static class Histogram {
+        private static final int BUCKETS = 64;
+
+        private AtomicLongArray counts;
+        private LongAdder count;
+        private LongAdder sum;
+        private AtomicLong max;
+
+        private Histogram() {
+            counts = new AtomicLongArray(BUCKETS);
+            count = new LongAdder();
+            sum = new LongAdder();
+            max = new AtomicLong();
+        }
+
+        private void record(long nanos) {
+            long current;
+
+            nanos = Math.max(nanos, 0);
+
+            counts.incrementAndGet(
+                    nanos <= 1
+                            ? 0
+                            : BUCKETS - Long.numberOfLeadingZeros(nanos - 1));
+            count.increment();
+            sum.add(nanos);
+
+            while ((current = max.get()) < nanos
+                    && !max.compareAndSet(current, nanos)) {
+            }
+        }
+
+        /**
+         * Estimates the latency at <code>quantile</code> by the upper bound of
+         * the bucket that contains it. The bucket <code>i</code> contains
+         * latencies from <code>2^(i-1)</code> exclusive to <code>2^i</code>
+         * inclusive.
+         *
+         * @param quantile quantile from 0 to 1
+         * @param total number of the recorded latencies
+         * @return the estimated latency in nanoseconds
+         */
+        private long percentile(double quantile, long total) {
+            long rank;
+            long seen;
+
+            rank = (long) Math.ceil(quantile * total);
+            seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+
+            return max.get();
+        }
+
+        private void write(JsonWriter out) throws IOException {
+            long total;
+
+            total = count.sum();
+
+            out.beginObject();
+            out.name("count").value(total);
+            out.name("totalNanos").value(sum.sum());
+            out.name("meanNanos").value(total == 0 ? 0 : sum.sum() / total);
+            out.name("p50Nanos").value(percentile(0.5, total));
+            out.name("p90Nanos").value(percentile(0.9, total));
+            out.name("p99Nanos").value(percentile(0.99, total));
+            out.name("maxNanos").value(max.get());
+            out.name("buckets").beginObject();
+
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts.get(i) > 0) {
+                    out.name(Long.toString(upperBound(i)))
+                       .value(counts.get(i));
+                }
+            }
+
+            out.endObject();
+            out.endObject();
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket);
+        }
+    }
+}
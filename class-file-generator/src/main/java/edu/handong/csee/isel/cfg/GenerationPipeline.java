@@ -0,0 +1,1300 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * A pipeline that generates class files from the json files of a source
+ * directory.
+ * <br></br>
+ * The pipeline consists of three bounded stages. Json files are discovered
+ * by walking the source directory with a pool of walker threads or by
+ * reading a list of source files, and the records of json lines files, whose
+ * each line is a json content of a class, are read as they are discovered. A
+ * pool of generation workers parses the json contents and makes
+ * <code>ClassWriter</code>s visit them, and a pool of writer threads saves
+ * the generated class files to a <code>ClassSink</code>. When the queue of a
+ * stage is full, the preceding stage waits until there is a room for its work,
+ * so that generation workers never block on the storage unless the writer
+ * stage falls behind by more than its queue depth.
+ */
+class GenerationPipeline {
+    private static final Logger LOGGER
+            = Logger.getLogger(GenerationPipeline.class.getName());
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+    private static final Path SYNTHETIC = Path.of("synthetic");
+
+    private ClassDeduplicator deduplicator;
+    private AtomicLong deduplicated;
+    private Queue<String> dedupIndex;
+    private long elapsedNanos;
+    private ErrorSink errors;
+    private AtomicLong generated;
+    private ClassGenerator generator;
+    private GenerationMetrics metrics;
+    private AtomicLong skipped;
+    private AtomicLong unchanged;
+    private Manifest manifest;
+    private boolean optimize;
+    private ClassPacker packer;
+    private Queue<String> packMapping;
+    private ClassSink sink;
+    private SymbolCache symbols;
+    private boolean syncing;
+    private int threads;
+    private ConcurrentHashMap<String, Location> unsynced;
+    private boolean validateOnly;
+    private ForkJoinPool walkers;
+    private int writeQueueDepth;
+    private int writerThreads;
+
+    /**
+     * Constructs a <code>GenerationPipeline</code> object.
+     *
+     * @param sink destination that class files to be written
+     * @param threads number of generation workers
+     */
+    GenerationPipeline(ClassSink sink, int threads) {
+        this(sink, threads, new ClassGenerator());
+    }
+
+    /**
+     * Constructs a <code>GenerationPipeline</code> object that generates
+     * class files with <code>generator</code> and shares its symbol cache,
+     * so that pipelines run one after another by a resident process reuse
+     * the symbols of the earlier runs. <code>generator</code> may be shared
+     * by other pipelines and threads, but {@link #setFastFrames(boolean)}
+     * changes it for all of them.
+     *
+     * @param sink destination that class files to be written
+     * @param threads number of generation workers
+     * @param generator generator of class files
+     */
+    GenerationPipeline(ClassSink sink, int threads,
+                       ClassGenerator generator) {
+        this.sink = sink;
+        this.threads = threads;
+        this.generator = generator;
+        writerThreads = 1;
+        writeQueueDepth = QUEUE_CAPACITY_PER_THREAD;
+        deduplicated = new AtomicLong();
+        errors = new ErrorSink();
+        generated = new AtomicLong();
+        metrics = new GenerationMetrics();
+        skipped = new AtomicLong();
+        symbols = generator.getSymbols();
+        unchanged = new AtomicLong();
+        unsynced = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets the manifest of the previous generation to the same destination 
+     * directory, so that this pipeline only generates class files of source 
+     * files that changed since then.
+     * <br></br>
+     * In the incremental generation, the manifest is updated with source 
+     * files and their class files, and class files whose source files 
+     * disappeared are deleted.
+     *
+     * @param manifest manifest that has been loaded with the options of this 
+     *      pipeline, or <code>null</code> to generate all class files
+     */
+    void setManifest(Manifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Sets the sink that failures of this pipeline are reported to. By
+     * default, failures are only logged at a limited rate.
+     *
+     * @param errors sink of failures
+     */
+    void setErrorSink(ErrorSink errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Sets whether this pipeline computes stack map frames with 
+     * {@link MethodFrames} instead of <code>ClassWriter.COMPUTE_FRAMES</code>.
+     * Methods that <code>MethodFrames</code> cannot analyze still fall back to 
+     * <code>ClassWriter.COMPUTE_FRAMES</code>.
+     *
+     * @param fastFrames <code>true</code> to compute frames with 
+     *      <code>MethodFrames</code>
+     */
+    void setFastFrames(boolean fastFrames) {
+        generator.setFastFrames(fastFrames);
+    }
+
+    /**
+     * Generates class files to the sink of this pipeline by using json files
+     * in <code>srcDir</code>. The directories under <code>srcDir</code> are
+     * walked in parallel by as many threads as the generation workers.
+     *
+     * @param srcDir root source directory that contains json files
+     * @throws IOException if an I/O error occurs while walking
+     *      <code>srcDir</code> or accessing the manifest, or the pipeline is
+     *      interrupted
+     */
+    void run(Path srcDir) throws IOException {
+        run((generators, writers) -> walk(generators, writers, srcDir), true);
+    }
+
+    /**
+     * Generates class files to the sink of this pipeline by using the source
+     * files listed in <code>list</code>, instead of walking a directory.
+     * <br></br>
+     * The paths of the list are separated by newlines or NUL characters, and
+     * are read as they are needed, so that generation starts before the end
+     * of the list. Blank paths are ignored, and listed directories are walked.
+     * In the incremental generation, class files of source files that are
+     * not listed are kept, and class files of listed source files that no
+     * longer exist are deleted.
+     *
+     * @param list list of the paths of json and json lines files
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>list</code> or accessing the manifest, or the pipeline is
+     *      interrupted
+     */
+    void runFromList(Reader list) throws IOException {
+        run((generators, writers) -> readList(generators, writers, list),
+            false);
+    }
+
+    /**
+     * Generates class files of <code>count</code> classes synthesized by
+     * <code>synthesizer</code>, instead of reading source files. The classes
+     * are synthesized by the generation workers, and their locations are
+     * <code>synthetic</code> followed by their one-based numbers.
+     *
+     * @param synthesizer synthesizer of the classes
+     * @param count number of the classes
+     * @throws IOException if the pipeline is interrupted
+     */
+    void runSynthesized(ClassSynthesizer synthesizer, long count)
+            throws IOException {
+        run((generators, writers) -> {
+                for (long i = 0; i < count; i++) {
+                    final long index;
+
+                    index = i;
+
+                    generators.execute(
+                            () -> generate(writers,
+                                           SYNTHETIC,
+                                           index + 1,
+                                           () -> new JsonReader(
+                                                   synthesizer.synthesize(
+                                                           index))));
+                }
+            },
+            false);
+    }
+
+    /**
+     * Generates class files of the source files that <code>discovery</code>
+     * finds.
+     *
+     * @param discovery discovery of the source files
+     * @param complete <code>true</code> if <code>discovery</code> finds all
+     *      source files, so that class files of the other source files can be
+     *      deleted in the incremental generation
+     * @throws IOException if an I/O error occurs while discovering source
+     *      files or accessing the manifest, or the pipeline is interrupted
+     */
+    private void run(Discovery discovery, boolean complete)
+            throws IOException {
+        ThreadPoolExecutor generators;
+        ThreadPoolExecutor writers;
+        long start;
+
+        generators = newStage(threads, threads * QUEUE_CAPACITY_PER_THREAD);
+        writers = newStage(writerThreads, writeQueueDepth);
+        walkers = new ForkJoinPool(threads);
+        syncing = sink != null && sink.setSyncListener(this::synced);
+        start = System.nanoTime();
+
+        generated.set(0);
+        skipped.set(0);
+        unsynced.clear();
+        unchanged.set(0);
+
+        try {
+            discovery.discover(generators, writers);
+        } finally {
+            walkers.shutdownNow();
+            awaitStage(generators);
+
+            if (packer != null) {
+                for (ClassPacker.Pack pack : packer.flush()) {
+                    generatePack(writers, pack);
+                }
+            }
+
+            awaitStage(writers);
+
+            if (syncing) {
+                sink.flush();
+            }
+        }
+
+        if (manifest != null) {
+            if (!complete) {
+                manifest.retainUnchecked();
+            }
+
+            LOGGER.info("Deleted "
+                        + manifest.prune()
+                        + " class files whose source files disappeared.");
+            manifest.save();
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+
+        report(elapsedNanos);
+        errors.summarize();
+
+        if (deduplicator != null) {
+            LOGGER.info("Reused class files of identical bytecode for "
+                        + deduplicated.get()
+                        + (dedupIndex != null
+                                   ? " classes in the dedup index."
+                                   : " classes."));
+        }
+
+        if (optimize) {
+            LOGGER.info("Optimization removed "
+                        + metrics.getBytecodeSaved()
+                        + " bytecode elements in total.");
+        }
+
+        if (packer != null) {
+            LOGGER.info("Packed " + packMapping.size()
+                        + " json contents into the generated class files.");
+        }
+
+        if (symbols.size() > 0) {
+            LOGGER.info("Shared " + symbols.size() + " symbols of constants "
+                        + "for " + symbols.getHits() + " repeated uses.");
+        }
+    }
+
+    /**
+     * Sets the number of threads that write generated class files to the
+     * sink, and the number of generated class files that can wait for them.
+     * Generation workers wait while the queue is full. By default, one
+     * thread writes class files with a queue of 64 class files.
+     *
+     * @param writers number of writer threads
+     * @param queueDepth capacity of the queue of the writer stage
+     */
+    void setWriters(int writers, int queueDepth) {
+        writerThreads = writers;
+        writeQueueDepth = queueDepth;
+    }
+
+    /**
+     * Makes this pipeline reuse class files of classes that differ from a
+     * recently generated class only in their names.
+     * <br></br>
+     * If <code>index</code> is <code>true</code>, such class files are not
+     * written at all, and each of them is recorded in the dedup index with
+     * the class file it duplicates instead.
+     *
+     * @param capacity maximum number of class files kept for reuse
+     * @param index <code>true</code> to record duplicates in the dedup index
+     *      instead of writing them
+     * @see #writeDedupIndex(Path)
+     */
+    void setDeduplication(int capacity, boolean index) {
+        deduplicator = new ClassDeduplicator(capacity);
+        dedupIndex = index ? new ConcurrentLinkedQueue<>() : null;
+    }
+
+    /**
+     * Makes this pipeline pack json contents of the same package and version
+     * into classes of <code>size</code> methods instead of generating a
+     * class per json content. Each json content is recorded in the pack
+     * mapping with the class and the method it is packed into.
+     *
+     * @param size number of methods of a packed class
+     * @see ClassPacker
+     * @see #writePackMapping(Path)
+     */
+    void setPacking(int size) {
+        packer = new ClassPacker(size);
+        packMapping = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Sets whether this pipeline only reads and validates json contents
+     * without generating class files. In that mode, the sink of this pipeline
+     * is not used and may be <code>null</code>, and the number of generated
+     * class files is the number of valid json contents.
+     *
+     * @param validateOnly <code>true</code> to only validate json contents
+     */
+    void setValidateOnly(boolean validateOnly) {
+        this.validateOnly = validateOnly;
+    }
+
+    /**
+     * Sets whether this pipeline optimizes the bytecode of json contents with
+     * {@link PeepholeOptimizer} before generating class files. The number of
+     * bytecode elements removed from each class is recorded in its JFR event
+     * and in the metrics.
+     *
+     * @param optimize <code>true</code> to optimize the bytecode
+     */
+    void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Describes the options of this pipeline that affect generated class
+     * files.
+     *
+     * @return the description of the options
+     */
+    String options() {
+        return "cfg"
+               + (generator.isFastFrames() ? " fast-frames" : "")
+               + (optimize ? " optimize" : "");
+    }
+
+    /**
+     * Writes the metrics of the last run of this pipeline as a json object.
+     *
+     * @param file file that the metrics to be written
+     * @throws IOException if an I/O error occurs while writing
+     *      <code>file</code>
+     */
+    void writeMetrics(Path file) throws IOException {
+        metrics.write(file,
+                      elapsedNanos,
+                      generated.get(),
+                      skipped.get(),
+                      unchanged.get());
+    }
+
+    /**
+     * Writes the dedup index of the last run of this pipeline. Each line of
+     * the index consists of the path of a duplicate class file and the path
+     * of the class file it duplicates, separated by a tab.
+     *
+     * @param file file that the dedup index to be written
+     * @throws IOException if an I/O error occurs while writing
+     *      <code>file</code>
+     */
+    void writeDedupIndex(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (String line : dedupIndex) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes the pack mapping of the last run of this pipeline. Each line of
+     * the mapping consists of the location of a json content, the path of
+     * the class file it is packed into, the method name and the method
+     * descriptor, separated by tabs.
+     *
+     * @param file file that the pack mapping to be written
+     * @throws IOException if an I/O error occurs while writing
+     *      <code>file</code>
+     */
+    void writePackMapping(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (String line : packMapping) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    long getGenerated() {
+        return generated.get();
+    }
+
+    long getSkipped() {
+        return skipped.get();
+    }
+
+    long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Walks <code>srcDir</code> and passes the source files in it to
+     * <code>generators</code>. Each directory is listed by a task of the
+     * fork/join pool of the run, so that directories are listed in parallel
+     * and every directory of a list shares the same pool.
+     *
+     * @param generators stage that generates class files
+     * @param writers stage that writes generated class files
+     * @param srcDir root source directory that contains json files
+     * @throws IOException if an I/O error occurs while reading the
+     *      attributes of <code>srcDir</code>, or the walk is interrupted
+     */
+    private void walk(ThreadPoolExecutor generators,
+                      ThreadPoolExecutor writers,
+                      Path srcDir) throws IOException {
+        BasicFileAttributes attr;
+
+        attr = Files.readAttributes(srcDir, BasicFileAttributes.class);
+
+        if (!attr.isDirectory()) {
+            dispatch(generators, writers, srcDir, attr);
+
+            return;
+        }
+
+        try {
+            walkers.submit(new DirectoryWalk(generators, writers, srcDir))
+                   .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException(
+                    "Interrupted while walking " + srcDir + ".");
+        }
+    }
+
+    /**
+     * Reads the paths of <code>list</code> one at a time and passes the
+     * source files to <code>generators</code>. A path that does not exist is
+     * skipped.
+     *
+     * @param generators stage that generates class files
+     * @param writers stage that writes generated class files
+     * @param list list of paths separated by newlines or NUL characters
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>list</code>, or the walk of a listed directory is
+     *      interrupted
+     */
+    private void readList(ThreadPoolExecutor generators,
+                          ThreadPoolExecutor writers,
+                          Reader list) throws IOException {
+        BufferedReader in;
+        StringBuilder entry;
+        int c;
+
+        in = new BufferedReader(list);
+        entry = new StringBuilder();
+
+        do {
+            Path path;
+            long started;
+
+            c = in.read();
+
+            if (c != -1 && c != '\n' && c != '\0') {
+                entry.append((char) c);
+
+                continue;
+            }
+
+            if (entry.length() > 0
+                    && entry.charAt(entry.length() - 1) == '\r') {
+                entry.setLength(entry.length() - 1);
+            }
+
+            if (entry.toString().isBlank()) {
+                entry.setLength(0);
+
+                continue;
+            }
+
+            started = System.nanoTime();
+            path = Path.of(entry.toString());
+
+            entry.setLength(0);
+
+            try {
+                BasicFileAttributes attr;
+
+                attr = Files.readAttributes(path, BasicFileAttributes.class);
+
+                if (attr.isDirectory()) {
+                    walk(generators, writers, path);
+
+                    continue;
+                }
+
+                metrics.record(GenerationMetrics.Stage.WALK,
+                               System.nanoTime() - started);
+                dispatch(generators, writers, path, attr);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (NoSuchFileException e) {
+                if (manifest != null) {
+                    manifest.remove(path);
+
+                    continue;
+                }
+
+                skip(path,
+                     0,
+                     GenerationMetrics.Stage.WALK,
+                     e,
+                     true);
+            } catch (IOException e) {
+                skip(path,
+                     0,
+                     GenerationMetrics.Stage.WALK,
+                     e,
+                     true);
+            }
+        } while (c != -1);
+    }
+
+    /**
+     * Passes <code>srcFile</code> to <code>generators</code>, or its records
+     * if it is a json lines file or a compact file.
+     *
+     * @param generators stage that generates class files
+     * @param writers stage that writes generated class files
+     * @param srcFile source file for generating class files
+     * @param attr attributes of <code>srcFile</code>
+     */
+    private void dispatch(ThreadPoolExecutor generators,
+                          ThreadPoolExecutor writers,
+                          Path srcFile,
+                          BasicFileAttributes attr) {
+        String name;
+
+        name = srcFile.getFileName().toString();
+
+        if (name.endsWith(".jsonl")) {
+            readRecords(generators, writers, srcFile, attr);
+        } else if (name.endsWith(CompactFile.EXTENSION)) {
+            readCompactRecords(generators, writers, srcFile, attr);
+        } else {
+            generators.execute(() -> generate(writers, srcFile, attr));
+        }
+    }
+
+    /**
+     * Passes each record of json lines file <code>srcFile</code> to
+     * <code>generators</code>. The records are read one at a time, so that
+     * the file is never fully loaded. Blank lines are ignored.
+     *
+     * @param generators stage that generates class files
+     * @param writers stage that writes generated class files
+     * @param srcFile json lines file for generating class files
+     * @param attr attributes of <code>srcFile</code>
+     */
+    private void readRecords(ThreadPoolExecutor generators,
+                             ThreadPoolExecutor writers,
+                             Path srcFile,
+                             BasicFileAttributes attr) {
+        try {
+            if (isUpToDate(srcFile, attr)) {
+                return;
+            }
+        } catch (IOException e) {
+            skip(srcFile,
+                 0,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 true);
+
+            return;
+        }
+
+        metrics.addBytesIn(attr.size());
+
+        try (BufferedReader in = Files.newBufferedReader(srcFile)) {
+            String record;
+            long line;
+
+            line = 0;
+
+            while ((record = in.readLine()) != null) {
+                final String finalRecord;
+                final long finalLine;
+
+                finalRecord = record;
+                finalLine = ++line;
+
+                if (!record.isBlank()) {
+                    generators.execute(
+                            () -> generate(
+                                    writers,
+                                    srcFile,
+                                    finalLine,
+                                    () -> new JsonReader(
+                                            new StringReader(finalRecord),
+                                            symbols)));
+                }
+            }
+        } catch (IOException e) {
+            skip(srcFile,
+                 0,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 true);
+        }
+    }
+
+    /**
+     * Passes each record of compact file <code>srcFile</code> to
+     * <code>generators</code>. The file is mapped into memory, and each
+     * record is decoded into the elements of a class without parsing.
+     *
+     * @param generators stage that generates class files
+     * @param writers stage that writes generated class files
+     * @param srcFile compact file for generating class files
+     * @param attr attributes of <code>srcFile</code>
+     * @see CompactFile
+     */
+    private void readCompactRecords(ThreadPoolExecutor generators,
+                                    ThreadPoolExecutor writers,
+                                    Path srcFile,
+                                    BasicFileAttributes attr) {
+        try {
+            CompactFile compactFile;
+            long record;
+
+            if (isUpToDate(srcFile, attr)) {
+                return;
+            }
+
+            metrics.addBytesIn(attr.size());
+
+            compactFile = new CompactFile(srcFile, symbols);
+            record = 0;
+
+            while (compactFile.hasNext()) {
+                final long finalRecord;
+                JsonReader reader;
+
+                reader = new JsonReader(compactFile.next());
+                finalRecord = ++record;
+
+                generators.execute(() -> generate(writers,
+                                                  srcFile,
+                                                  finalRecord,
+                                                  () -> reader));
+            }
+        } catch (IOException e) {
+            skip(srcFile,
+                 0,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 true);
+        }
+    }
+
+    /**
+     * Generates class file by using <code>srcFile</code> and passes it to
+     * <code>writers</code>. The file is skipped if it cannot be generated.
+     *
+     * @param writers stage that writes generated class file
+     * @param srcFile json file for generating class file
+     * @param attr attributes of <code>srcFile</code>
+     */
+    private void generate(ThreadPoolExecutor writers, Path srcFile,
+                          BasicFileAttributes attr) {
+        generate(writers,
+                 srcFile,
+                 0,
+                 () -> {
+                     if (!srcFile.getFileName()
+                                 .toString()
+                                 .endsWith(".json")) {
+                         throw new FileExtensionException(
+                                 "The file is not a json file.");
+                     }
+
+                     if (isUpToDate(srcFile, attr)) {
+                         return null;
+                     }
+
+                     metrics.addBytesIn(attr.size());
+
+                     try (InputStream in = Files.newInputStream(srcFile)) {
+                         return new JsonReader(in, symbols);
+                     }
+                 });
+    }
+
+    /**
+     * Generates class file by using the json content of <code>source</code>
+     * and passes it to <code>writers</code>. The content is skipped if it
+     * cannot be generated.
+     *
+     * @param writers stage that writes generated class file
+     * @param srcFile file that contains the json content
+     * @param line line number of the json content in <code>srcFile</code>,
+     *      record number of a compact file, or <code>0</code> if the content
+     *      is the whole file
+     * @param source source of the json content, which supplies
+     *      <code>null</code> if the content is up to date
+     */
+    private void generate(ThreadPoolExecutor writers, Path srcFile, long line,
+                          JsonSource source) {
+        ClassGeneratedEvent event;
+
+        event = new ClassGeneratedEvent();
+
+        event.begin();
+
+        try {
+            GeneratedClass generatedClass;
+            JsonReader reader;
+            long parsed;
+            int saved;
+            long started;
+            long validated;
+
+            started = System.nanoTime();
+            reader = source.read();
+
+            if (reader == null) {
+                return;
+            }
+
+            parsed = System.nanoTime();
+
+            metrics.record(GenerationMetrics.Stage.PARSE, parsed - started);
+            reader.validate();
+
+            validated = System.nanoTime();
+
+            metrics.record(GenerationMetrics.Stage.VALIDATE,
+                           validated - parsed);
+
+            if (validateOnly) {
+                generated.incrementAndGet();
+
+                return;
+            }
+
+            saved = optimize ? reader.optimize() : 0;
+
+            metrics.addBytecodeSaved(saved);
+
+            if (packer != null) {
+                ClassPacker.Pack pack;
+
+                pack = packer.add(reader, srcFile, line);
+
+                if (pack != null) {
+                    generatePack(writers, pack);
+                }
+
+                return;
+            }
+
+            generatedClass = generateClass(srcFile, line, reader);
+
+            metrics.record(GenerationMetrics.Stage.GENERATE,
+                           System.nanoTime() - validated);
+
+            if (generatedClass == null) {
+                return;
+            }
+
+            if (event.shouldCommit()) {
+                event.source = location(srcFile, line);
+                event.packagename = generatedClass.getPackagename();
+                event.classname = generatedClass.getClassname();
+                event.size = generatedClass.getBytes().length;
+                event.saved = saved;
+
+                event.commit();
+            }
+
+            writers.execute(() -> write(generatedClass));
+        } catch (JsonSyntaxException e) {
+            skip(srcFile,
+                 line,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 false);
+        } catch (JsonIOException e) {
+            skip(srcFile,
+                 line,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 true);
+        } catch (UnsupportedOpcodeException e) {
+            skip(srcFile,
+                 line,
+                 GenerationMetrics.Stage.VALIDATE,
+                 e,
+                 false);
+        } catch (IOException e) {
+            skip(srcFile,
+                 line,
+                 GenerationMetrics.Stage.PARSE,
+                 e,
+                 true);
+        } catch (RuntimeException e) {
+            skip(srcFile,
+                 line,
+                 GenerationMetrics.Stage.GENERATE,
+                 e,
+                 true);
+        }
+    }
+
+    /**
+     * Generates class by using <code>reader</code>.
+     *
+     * @param srcFile file that <code>reader</code> has read
+     * @param line line number of the json content in <code>srcFile</code>,
+     *      record number of a compact file, or <code>0</code> if the content
+     *      is the whole file
+     * @param reader reader of the json content
+     * @return the generated class, or <code>null</code> if the class is
+     *      recorded in the dedup index instead
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in
+     *      the json content
+     */
+    private GeneratedClass generateClass(Path srcFile, long line,
+                                         JsonReader reader)
+            throws UnsupportedOpcodeException {
+        ClassDeduplicator.Template template;
+        ClassInfo classInfo;
+        byte[] bytes;
+
+        if (deduplicator == null) {
+            return new GeneratedClass(srcFile,
+                                      line,
+                                      reader.readPackagename(),
+                                      reader.readClassname(),
+                                      generator.generateValidated(reader));
+        }
+
+        classInfo = reader.readClassInfo();
+        template = deduplicator.find(classInfo);
+
+        if (template == null) {
+            bytes = generator.generateValidated(reader);
+
+            deduplicator.add(classInfo, bytes);
+        } else {
+            deduplicated.incrementAndGet();
+
+            if (dedupIndex != null) {
+                dedupIndex.add(ClassSink.path(classInfo.getPackagename(),
+                                              classInfo.getClassname())
+                               + '\t'
+                               + ClassSink.path(template.getPackagename(),
+                                                template.getClassname()));
+
+                return null;
+            }
+
+            bytes = template.rename(classInfo.getPackagename(),
+                                    classInfo.getClassname());
+        }
+
+        return new GeneratedClass(srcFile,
+                                  line,
+                                  classInfo.getPackagename(),
+                                  classInfo.getClassname(),
+                                  bytes);
+    }
+
+    /**
+     * Generates the class file of <code>pack</code> and passes it to
+     * <code>writers</code>. Each json content of the pack is skipped at its
+     * own location if the pack cannot be generated, for example because the
+     * class or one of its methods is too large.
+     *
+     * @param writers stage that writes generated class file
+     * @param pack pack of json contents
+     */
+    private void generatePack(ThreadPoolExecutor writers,
+                              ClassPacker.Pack pack) {
+        GeneratedClass generatedClass;
+        long started;
+
+        started = System.nanoTime();
+
+        try {
+            generatedClass = new GeneratedClass(
+                    pack.getSource(0),
+                    pack.getLine(0),
+                    pack.getPackagename(),
+                    pack.getClassname(),
+                    pack.generate(generator.isFastFrames()));
+        } catch (UnsupportedOpcodeException e) {
+            skipPack(pack, e, false);
+
+            return;
+        } catch (RuntimeException e) {
+            skipPack(pack, e, true);
+
+            return;
+        }
+
+        metrics.record(GenerationMetrics.Stage.GENERATE,
+                       System.nanoTime() - started);
+        packMapping.addAll(pack.mapping());
+        writers.execute(() -> write(generatedClass));
+    }
+
+    /**
+     * Skips every json content of <code>pack</code> at its own location.
+     *
+     * @param pack pack that cannot be generated
+     * @param e exception thrown while generating the pack
+     * @param warning <code>true</code> if <code>e</code> is unexpected
+     */
+    private void skipPack(ClassPacker.Pack pack, Exception e,
+                          boolean warning) {
+        for (int i = 0; i < pack.size(); i++) {
+            skip(pack.getSource(i),
+                 pack.getLine(i),
+                 GenerationMetrics.Stage.GENERATE,
+                 e,
+                 warning);
+        }
+    }
+
+    /**
+     * Writes <code>generatedClass</code> to the sink of this pipeline. The
+     * class file is skipped if it cannot be written, or later if the sink
+     * fails to sync it.
+     *
+     * @param generatedClass class file to be written
+     */
+    private void write(GeneratedClass generatedClass) {
+        String path;
+        Path srcFile;
+
+        path = ClassSink.path(generatedClass.getPackagename(),
+                              generatedClass.getClassname());
+        srcFile = generatedClass.getSource();
+
+        if (syncing) {
+            unsynced.put(path,
+                         new Location(srcFile, generatedClass.getLine()));
+        }
+
+        try {
+            String output;
+            long started;
+
+            started = System.nanoTime();
+            output = sink.write(generatedClass.getPackagename(),
+                                generatedClass.getClassname(),
+                                generatedClass.getBytes());
+
+            metrics.record(GenerationMetrics.Stage.WRITE,
+                           System.nanoTime() - started);
+            metrics.addBytesOut(generatedClass.getBytes().length);
+
+            if (manifest != null) {
+                manifest.addOutput(srcFile, output);
+            }
+
+            generated.incrementAndGet();
+        } catch (FileAlreadyExistsException e) {
+            unsynced.remove(path);
+            skip(srcFile,
+                 generatedClass.getLine(),
+                 GenerationMetrics.Stage.WRITE,
+                 e,
+                 false);
+        } catch (IOException e) {
+            unsynced.remove(path);
+            skip(srcFile,
+                 generatedClass.getLine(),
+                 GenerationMetrics.Stage.WRITE,
+                 e,
+                 true);
+        }
+    }
+
+    /**
+     * Skips the class file of <code>path</code> if the sink failed to sync
+     * it, although it has been written and counted as generated.
+     *
+     * @param path path of a written class file relative to the sink
+     * @param failure error that occurred while syncing the class file, or
+     *      <code>null</code> if it has been synced
+     */
+    private void synced(String path, IOException failure) {
+        Location location;
+
+        location = unsynced.remove(path);
+
+        if (location == null || failure == null) {
+            return;
+        }
+
+        generated.decrementAndGet();
+        skip(location.srcFile,
+             location.line,
+             GenerationMetrics.Stage.WRITE,
+             failure,
+             true);
+    }
+
+    /**
+     * Checks if <code>srcFile</code> does not need to be generated in the
+     * incremental generation.
+     *
+     * @param srcFile source file to be checked
+     * @param attr attributes of <code>srcFile</code>
+     * @return <code>true</code> if <code>srcFile</code> is up to date,
+     *      <code>false</code> otherwise or if this pipeline does not generate
+     *      incrementally
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>srcFile</code>
+     */
+    private boolean isUpToDate(Path srcFile, BasicFileAttributes attr)
+            throws IOException {
+        if (manifest == null || !manifest.isUpToDate(srcFile, attr)) {
+            return false;
+        }
+
+        unchanged.incrementAndGet();
+
+        return true;
+    }
+
+    private static String location(Path srcFile, long line) {
+        return line == 0 ? srcFile.toString() : srcFile + ":" + line;
+    }
+
+    private void skip(Path srcFile, long line, GenerationMetrics.Stage stage,
+                      Exception cause, boolean warning) {
+        skipped.incrementAndGet();
+        metrics.skip(cause);
+
+        if (manifest != null) {
+            manifest.fail(srcFile);
+        }
+
+        errors.report(srcFile, line, stage, cause, warning);
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds;
+
+        seconds = Math.max(elapsedNanos, 1) / 1e9;
+
+        if (validateOnly) {
+            LOGGER.info(String.format("Validated %d files and rejected %d "
+                                          + "files in %.3f s (%.1f "
+                                          + "files/sec).",
+                                      generated.get(),
+                                      skipped.get(),
+                                      seconds,
+                                      (generated.get() + skipped.get())
+                                          / seconds));
+
+            return;
+        }
+
+        LOGGER.info(String.format("Generated %d class files, skipped %d "
+                                      + "files, and left %d unchanged files "
+                                      + "in %.3f s (%.1f files/sec).",
+                                  generated.get(),
+                                  skipped.get(),
+                                  unchanged.get(),
+                                  seconds,
+                                  (generated.get() + skipped.get()) / seconds));
+    }
+
+    /**
+     * Source file and line of a written class file that has not been synced
+     * yet.
+     */
+    private static class Location {
+        private long line;
+        private Path srcFile;
+
+        private Location(Path srcFile, long line) {
+            this.srcFile = srcFile;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Discovery of the source files of a run, which passes them to the
+     * generation stage.
+     */
+    private interface Discovery {
+        void discover(ThreadPoolExecutor generators,
+                      ThreadPoolExecutor writers) throws IOException;
+    }
+
+    /**
+     * Task that lists a directory, passes its files to the generation stage
+     * and walks its subdirectories with forked tasks. Like
+     * <code>Files.walkFileTree</code>, it does not follow symbolic links.
+     */
+    private class DirectoryWalk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private transient ThreadPoolExecutor generators;
+        private transient ThreadPoolExecutor writers;
+        private transient Path dir;
+
+        private DirectoryWalk(ThreadPoolExecutor generators,
+                              ThreadPoolExecutor writers,
+                              Path dir) {
+            this.generators = generators;
+            this.writers = writers;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryWalk> subdirs;
+            long visited;
+
+            subdirs = new ArrayList<>();
+            visited = System.nanoTime();
+
+            try (DirectoryStream<Path> entries
+                    = Files.newDirectoryStream(dir)) {
+                for (Path path : entries) {
+                    BasicFileAttributes attr;
+
+                    try {
+                        attr = Files.readAttributes(
+                                path,
+                                BasicFileAttributes.class,
+                                LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        skip(path,
+                             0,
+                             GenerationMetrics.Stage.WALK,
+                             e,
+                             true);
+
+                        continue;
+                    }
+
+                    if (attr.isDirectory()) {
+                        subdirs.add(new DirectoryWalk(generators,
+                                                      writers,
+                                                      path));
+
+                        continue;
+                    }
+
+                    metrics.record(GenerationMetrics.Stage.WALK,
+                                   System.nanoTime() - visited);
+                    dispatch(generators, writers, path, attr);
+
+                    visited = System.nanoTime();
+                }
+            } catch (IOException e) {
+                skip(dir,
+                     0,
+                     GenerationMetrics.Stage.WALK,
+                     e,
+                     true);
+            }
+
+            invokeAll(subdirs);
+        }
+    }
+
+    /**
+     * Source of a json content that is read by a generation worker.
+     */
+    private interface JsonSource {
+        JsonReader read() throws IOException;
+    }
+
+    /**
+     * Creates a stage whose submitters wait while its queue is full.
+     *
+     * @param workers number of threads of the stage
+     * @param capacity capacity of the queue of the stage
+     * @return the created stage
+     */
+    static ThreadPoolExecutor newStage(int workers, int capacity) {
+        ThreadPoolExecutor stage;
+
+        stage = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException(
+                                "The stage is already shut down.");
+                    }
+
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+
+        stage.prestartAllCoreThreads();
+
+        return stage;
+    }
+
+    static void awaitStage(ThreadPoolExecutor stage)
+            throws InterruptedIOException {
+        stage.shutdown();
+
+        try {
+            while (!stage.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.fine("Waiting for " + stage.getQueue().size()
+                            + " queued tasks.");
+            }
+        } catch (InterruptedException e) {
+            stage.shutdownNow();
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException(
+                    "Interrupted while waiting for the pipeline.");
+        }
+    }
+}
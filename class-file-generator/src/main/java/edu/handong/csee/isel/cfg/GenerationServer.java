@@ -0,0 +1,499 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A server that stays resident and generates class files for requests from
+ * local clients, so that clients do not pay the startup of a JVM for every
+ * generation.
+ * <br></br>
+ * The server listens on a port of the loopback address. A client sends one
+ * json object per line and receives one json object per line in the same
+ * order. A request is either
+ * <ul>
+ *   <li><code>{"class": {...}}</code>, whose value follows the json file
+ *       format, to receive <code>packagename</code>, <code>classname</code>
+ *       and the class file as base64 <code>bytes</code>, or</li>
+ *   <li><code>{"source": "...", "destination": "..."}</code> to generate the
+ *       class files of a source directory into an output directory on the
+ *       server and receive the numbers of <code>generated</code>,
+ *       <code>skipped</code> and <code>unchanged</code> files.</li>
+ * </ul>
+ * The server trusts every local user who can connect to the loopback port
+ * to generate class files, but not to read or write files of the user who
+ * runs the server. Directory requests are therefore answered with an error
+ * unless a root directory is set by {@link #setRoot(Path)}. Then the
+ * source and the destination are resolved against the root, and requests
+ * whose paths lead outside the root, also through symbolic links, are
+ * answered with an error. The root should only be writable by users who
+ * are trusted with the files under it, since links that are created under
+ * the root while a request is generated are not checked again.
+ * All requests are generated by the same {@link ClassGenerator}, so that
+ * they share its symbol cache.
+ * Every response has <code>status</code>, which is either <code>ok</code> or
+ * <code>error</code> with <code>message</code>.
+ * <br></br>
+ * Connections are served by a bounded pool. A connection that does not fit
+ * in the pool is answered with an error and closed. A request longer than
+ * {@value #MAX_LINE_LENGTH} characters is answered with an error without
+ * being kept in memory, and a connection that sends nothing for
+ * {@value #IDLE_TIMEOUT_MILLIS} milliseconds is closed.
+ * <br></br>
+ * The server stops when the serving thread is interrupted, the server socket
+ * is closed, or the JVM shuts down. Then it stops accepting connections,
+ * lets the open connections finish their requests for a grace period, and
+ * closes the connections that are still open.
+ */
+class GenerationServer {
+    private static final Logger LOGGER
+            = Logger.getLogger(GenerationServer.class.getName());
+    private static final int ACCEPT_TIMEOUT_MILLIS = 500;
+    private static final int IDLE_TIMEOUT_MILLIS = 60000;
+    private static final int MAX_LINE_LENGTH = 1 << 22;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 16;
+    private static final long SHUTDOWN_MILLIS = 5000;
+
+    private ClassGenerator generator;
+    private Set<Socket> open;
+    private int port;
+    private Path root;
+    private volatile boolean stopped;
+    private int threads;
+
+    /**
+     * Constructs a server that listens on <code>port</code>.
+     *
+     * @param port port of the loopback address to listen on, or
+     *      <code>0</code> for an ephemeral port
+     * @param threads number of connections served at the same time, and
+     *      number of generation workers of each directory request
+     */
+    GenerationServer(int port, int threads) {
+        this.port = port;
+        this.threads = threads;
+        generator = new ClassGenerator();
+        open = ConcurrentHashMap.newKeySet();
+    }
+
+    void setFastFrames(boolean fastFrames) {
+        generator.setFastFrames(fastFrames);
+    }
+
+    /**
+     * Enables directory requests whose source and destination are under
+     * <code>root</code>.
+     *
+     * @param root existing directory that the paths of directory requests
+     *      are resolved against
+     * @throws IOException if <code>root</code> does not exist or an I/O error
+     *      occurs while resolving its real path
+     */
+    void setRoot(Path root) throws IOException {
+        this.root = root.toRealPath();
+    }
+
+    /**
+     * Serves clients until the calling thread is interrupted or the JVM
+     * shuts down.
+     *
+     * @throws IOException if an I/O error occurs while opening the server
+     *      socket
+     */
+    void run() throws IOException {
+        try (ServerSocket serverSocket
+                = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            Thread hook;
+            Thread serving;
+
+            serving = Thread.currentThread();
+            hook = new Thread(() -> {
+                        // The serving thread sees the flag within one
+                        // accept timeout and closes the server socket when
+                        // it leaves the try-with-resources statement.
+                        stopped = true;
+
+                        try {
+                            serving.join(SHUTDOWN_MILLIS * 2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    },
+                    "cfg-server-shutdown");
+
+            Runtime.getRuntime().addShutdownHook(hook);
+
+            try {
+                serve(serverSocket);
+            } finally {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (IllegalStateException e) {
+                    // The JVM is shutting down and the hook is running.
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves clients that connect to <code>serverSocket</code>.
+     *
+     * @param serverSocket bound server socket
+     * @throws IOException if an I/O error occurs while accepting a connection
+     *      and <code>serverSocket</code> is still open
+     */
+    void serve(ServerSocket serverSocket) throws IOException {
+        ThreadPoolExecutor connections;
+
+        connections = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD));
+
+        LOGGER.info("Serving on " + serverSocket.getLocalSocketAddress());
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+
+        try {
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                Socket socket;
+
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                } catch (SocketException e) {
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+
+                    throw e;
+                }
+
+                try {
+                    connections.execute(() -> handle(socket));
+                } catch (RejectedExecutionException e) {
+                    reject(socket);
+                }
+            }
+        } finally {
+            shutdown(connections);
+        }
+    }
+
+    /**
+     * Stops <code>connections</code> after the open connections finish
+     * their requests, or closes the connections that are still open after
+     * the grace period.
+     *
+     * @param connections pool that serves connections
+     */
+    private void shutdown(ThreadPoolExecutor connections) {
+        LOGGER.info("Shutting down with " + open.size()
+                    + " open connections.");
+        connections.shutdown();
+
+        try {
+            if (!connections.awaitTermination(SHUTDOWN_MILLIS,
+                                              TimeUnit.MILLISECONDS)) {
+                for (Socket socket : open) {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        LOGGER.warning("Failed to close the connection of "
+                                       + socket.getRemoteSocketAddress()
+                                       + ". "
+                                       + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    /**
+     * Answers the requests of <code>socket</code> until the client closes
+     * its output or stays idle.
+     *
+     * @param socket connected socket
+     */
+    private void handle(Socket socket) {
+        open.add(socket);
+
+        try (socket;
+             BufferedReader in
+                     = new BufferedReader(
+                             new InputStreamReader(socket.getInputStream(),
+                                                   StandardCharsets.UTF_8));
+             BufferedWriter out
+                     = new BufferedWriter(
+                             new OutputStreamWriter(socket.getOutputStream(),
+                                                    StandardCharsets.UTF_8))) {
+            int length;
+            StringBuilder line;
+
+            line = new StringBuilder();
+
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+
+            while ((length = readLine(in, line, MAX_LINE_LENGTH)) >= 0) {
+                JsonObject response;
+
+                if (length > MAX_LINE_LENGTH) {
+                    response = error("The request is longer than "
+                                     + MAX_LINE_LENGTH
+                                     + " characters.");
+                } else if (line.toString().isBlank()) {
+                    continue;
+                } else {
+                    response = respond(line.toString());
+                }
+
+                out.write(response.toString());
+                out.newLine();
+                out.flush();
+            }
+        } catch (SocketTimeoutException e) {
+            LOGGER.info("Closed the idle connection of "
+                        + socket.getRemoteSocketAddress()
+                        + ".");
+        } catch (IOException e) {
+            LOGGER.warning("Lost the connection of "
+                           + socket.getRemoteSocketAddress()
+                           + ". "
+                           + e.getMessage());
+        } finally {
+            open.remove(socket);
+        }
+    }
+
+    /**
+     * Reads a line that ends with <code>\n</code> or <code>\r\n</code>
+     * from <code>in</code> into <code>line</code>. Only the first
+     * <code>maxLength</code> characters of a longer line are kept, and the
+     * rest is read and discarded.
+     *
+     * @param in reader of requests
+     * @param line builder that is cleared and receives the line
+     * @param maxLength maximum number of characters of a line to be kept
+     * @return the length of the whole line, which exceeds
+     *      <code>maxLength</code> if the line is too long, or <code>-1</code>
+     *      at the end of <code>in</code>
+     * @throws IOException if an I/O error occurs while reading
+     */
+    static int readLine(Reader in, StringBuilder line, int maxLength)
+            throws IOException {
+        int c;
+        int length;
+
+        length = 0;
+
+        line.setLength(0);
+
+        // One more character is kept, so that a carriage return right
+        // after maxLength characters is still removed.
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (length++ <= maxLength) {
+                line.append((char) c);
+            }
+        }
+
+        if (c == -1 && length == 0) {
+            return -1;
+        }
+
+        if (length == line.length()
+                && length > 0
+                && line.charAt(length - 1) == '\r') {
+            line.setLength(--length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Answers the request <code>line</code>.
+     *
+     * @param line a json object of the request
+     * @return a json object of the response
+     */
+    JsonObject respond(String line) {
+        JsonObject request;
+
+        try {
+            request = JsonParser.parseString(line).getAsJsonObject();
+
+            if (request.has("class")) {
+                return generate(request.get("class"));
+            } else if (request.has("source") && request.has("destination")) {
+                if (root == null) {
+                    return error("Directory requests are disabled. Start "
+                                 + "the server with a root directory.");
+                }
+
+                return generate(
+                        resolve(request.get("source").getAsString()),
+                        resolve(request.get("destination").getAsString()));
+            }
+
+            return error("The request has neither class nor source and "
+                         + "destination.");
+        } catch (JsonParseException | IllegalStateException
+                 | UnsupportedOperationException e) {
+            return error("Failed to parse the request. " + e.getMessage());
+        } catch (InvalidPathException e) {
+            return error("Invalid path. " + e.getMessage());
+        } catch (AccessDeniedException e) {
+            return error("Access denied. " + e.getMessage());
+        } catch (IOException e) {
+            return error("I/O error occured while generating class files. "
+                         + e.getMessage());
+        } catch (UnsupportedOpcodeException e) {
+            return error(e.getMessage());
+        } catch (RuntimeException e) {
+            return error("Failed to generate the class file. " + e);
+        }
+    }
+
+    private JsonObject generate(JsonElement content)
+            throws JsonIOException, UnsupportedOpcodeException {
+        JsonObject response;
+        JsonReader reader;
+
+        reader = new JsonReader(new StringReader(content.toString()),
+                                generator.getSymbols());
+        response = ok();
+
+        response.addProperty("packagename", reader.readPackagename());
+        response.addProperty("classname", reader.readClassname());
+        response.addProperty(
+                "bytes",
+                Base64.getEncoder().encodeToString(generator.generate(reader)));
+
+        return response;
+    }
+
+    private JsonObject generate(Path srcDir, Path dstDir) throws IOException {
+        GenerationPipeline pipeline;
+        JsonObject response;
+
+        try (ClassSink sink = new DirectoryClassSink(dstDir)) {
+            pipeline = new GenerationPipeline(sink, threads, generator);
+
+            pipeline.run(srcDir);
+        }
+
+        response = ok();
+
+        response.addProperty("generated", pipeline.getGenerated());
+        response.addProperty("skipped", pipeline.getSkipped());
+        response.addProperty("unchanged", pipeline.getUnchanged());
+
+        return response;
+    }
+
+    /**
+     * Resolves <code>path</code> of a directory request against the root.
+     *
+     * @param path path that is relative to the root
+     * @return the normalized path under the root
+     * @throws AccessDeniedException if the path leads outside the root
+     * @throws IOException if an I/O error occurs while resolving the real
+     *      path of the nearest existing directory
+     */
+    private Path resolve(String path) throws IOException {
+        Path existing;
+        Path resolved;
+
+        resolved = root.resolve(path).normalize();
+
+        if (!resolved.startsWith(root)) {
+            throw new AccessDeniedException(path, null, "Outside the root.");
+        }
+
+        // The real path of the nearest existing ancestor reveals symbolic
+        // links that lead outside the root.
+        existing = resolved;
+
+        while (!Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+
+        if (!existing.toRealPath().startsWith(root)) {
+            throw new AccessDeniedException(path, null, "Outside the root.");
+        }
+
+        return resolved;
+    }
+
+    private void reject(Socket socket) {
+        try (socket;
+             BufferedWriter out
+                     = new BufferedWriter(
+                             new OutputStreamWriter(socket.getOutputStream(),
+                                                    StandardCharsets.UTF_8))) {
+            out.write(error("The server is busy.").toString());
+            out.newLine();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to reject the connection of "
+                           + socket.getRemoteSocketAddress()
+                           + ". "
+                           + e.getMessage());
+        }
+    }
+
+    private static JsonObject ok() {
+        JsonObject response;
+
+        response = new JsonObject();
+
+        response.addProperty("status", "ok");
+
+        return response;
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject response;
+
+        response = new JsonObject();
+
+        response.addProperty("status", "error");
+        response.addProperty("message", message);
+
+        return response;
+    }
+}
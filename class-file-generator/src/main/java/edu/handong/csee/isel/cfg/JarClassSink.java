@@ -0,0 +1,108 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * <code>ClassSink</code> that streams all class files into a single jar 
+ * archive.
+ * <br></br>
+ * Class files are stored as entries whose names follow their package 
+ * directories. Entries are either deflated with a compression level, or 
+ * stored without compression when the level is <code>0</code>.
+ */
+class JarClassSink implements ClassSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private int level;
+    private JarOutputStream out;
+
+    /**
+     * Constructs a <code>JarClassSink</code> object and creates 
+     * <code>jarFile</code>. The parent directories of <code>jarFile</code> 
+     * are also created if they do not exist.
+     * 
+     * @param jarFile jar file that class files to be written
+     * @param level compression level from <code>0</code> to <code>9</code>, 
+     *      or <code>-1</code> for the default level
+     * @throws IOException if an I/O error occurs while creating 
+     *      <code>jarFile</code>
+     */
+    JarClassSink(Path jarFile, int level) throws IOException {
+        java.util.jar.Manifest manifest;
+        Path parent;
+
+        if (level < Deflater.DEFAULT_COMPRESSION 
+                || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                    "Invalid compression level " + level + ".");
+        }
+
+        this.level = level;
+        manifest = new java.util.jar.Manifest();
+        parent = jarFile.toAbsolutePath().getParent();
+
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, 
+                                         "1.0");
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        out = new JarOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(jarFile), 
+                                         BUFFER_SIZE), 
+                manifest);
+
+        if (level == Deflater.NO_COMPRESSION) {
+            out.setMethod(ZipEntry.STORED);
+        } else {
+            out.setLevel(level);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws java.util.zip.ZipException if the class file has already been 
+     *      written to this sink
+     */
+    @Override
+    public synchronized String write(String packagename, String classname, 
+                                     byte[] bytes) throws IOException {
+        ZipEntry entry;
+        String path;
+
+        path = ClassSink.path(packagename, classname);
+        entry = new ZipEntry(path);
+
+        if (level == Deflater.NO_COMPRESSION) {
+            CRC32 crc;
+
+            crc = new CRC32();
+
+            crc.update(bytes);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,17 +1,25 @@
 package edu.handong.csee.isel.cfg;
 
+import java.io.EOFException;
 import java.io.InputStreamReader;
 import java.io.InputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
 
 /**
  * A parser to make a <code>ClassWriter</code> visit a ClassFile structure, 
@@ -21,13 +29,25 @@ import org.objectweb.asm.Type;
  * methods of a given <code>ClassWriter</code> for a method and bytecode 
  * instructions encountered. The Json file should follow the desired format and 
  * specification described in README of the github repository.
+ * <br></br>
+ * The Json file content is read token by token, so that the elements are 
+ * kept as they are and the <code>bytecode</code> json array is read directly 
+ * into an <code>int</code> array without building a <code>ClassInfo</code>.
+ * The symbols of <code>constants</code> json array are interned through a
+ * <code>SymbolCache</code>, which readers of a run share.
  * 
  * @see https://github.com/ISEL-HGU/class-file-generator
  */
 public class JsonReader {
-    private static Gson gson = new Gson();
+    private static final int INITIAL_BYTECODE_CAPACITY = 64;
 
-    private ClassInfo info;
+    private int[] bytecode;
+    private String classname;
+    private Symbol[] constants;
+    private String methodname;
+    private String methodDesc;
+    private String packagename;
+    private int version;
 
     /**
      * Constructs a <code>JsonReader</code> object by reading 
@@ -41,8 +61,328 @@ public class JsonReader {
      */
     public JsonReader(InputStream inputStream) 
             throws JsonIOException, JsonSyntaxException {
-        info = gson.fromJson(new InputStreamReader(inputStream), 
-                             ClassInfo.class);
+        this(new InputStreamReader(inputStream));
+    }
+
+    /**
+     * Constructs a <code>JsonReader</code> object by reading
+     * <code>jsonFile</code>, whose symbols are interned by
+     * <code>symbols</code>.
+     *
+     * @param inputStream an input stream of json file to be read
+     * @param symbols cache of the symbols of the constants
+     * @throws JsonIOException if there was a problem reading from the Reader
+     * @throws JsonSyntaxException if the json file contains
+     *      malformed json element, or is not a valid representation for an
+     *      object of <code>ClassInfo</code>
+     */
+    JsonReader(InputStream inputStream, SymbolCache symbols)
+            throws JsonIOException, JsonSyntaxException {
+        this(new InputStreamReader(inputStream), symbols);
+    }
+
+    /**
+     * Constructs a <code>JsonReader</code> object by reading a json content
+     * from <code>reader</code>.
+     * 
+     * @param reader a reader of json content to be read
+     * @throws JsonIOException if there was a problem reading from the Reader
+     * @throws JsonSyntaxException if the json content contains 
+     *      malformed json element, or is not a valid representation for an 
+     *      object of <code>ClassInfo</code>
+     */
+    public JsonReader(Reader reader) 
+            throws JsonIOException, JsonSyntaxException {
+        this(reader, new SymbolCache());
+    }
+
+    /**
+     * Constructs a <code>JsonReader</code> object by reading a json content
+     * from <code>reader</code>, whose symbols are interned by
+     * <code>symbols</code>.
+     *
+     * @param reader a reader of json content to be read
+     * @param symbols cache of the symbols of the constants
+     * @throws JsonIOException if there was a problem reading from the Reader
+     * @throws JsonSyntaxException if the json content contains
+     *      malformed json element, or is not a valid representation for an
+     *      object of <code>ClassInfo</code>
+     */
+    JsonReader(Reader reader, SymbolCache symbols)
+            throws JsonIOException, JsonSyntaxException {
+        version = ClassInfo.DEFAULT_VERSION;
+        packagename = ClassInfo.DEFAULT_PACKAGENAME;
+        methodname = ClassInfo.DEFAULT_METHODNAME;
+        methodDesc = ClassInfo.DEFAULT_METHOD_DESC;
+
+        try {
+            read(new com.google.gson.stream.JsonReader(reader), symbols);
+        } catch (EOFException | MalformedJsonException 
+                 | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+
+        if (classname == null) {
+            classname = ClassInfo.defaultClassname();
+        }
+
+        if (bytecode == null) {
+            bytecode = ClassInfo.defaultBytecode();
+        }
+
+        if (constants == null) {
+            constants = ClassInfo.defaultConstants();
+        }
+    }
+
+    /**
+     * Constructs a <code>JsonReader</code> object from the elements of 
+     * <code>classInfo</code> instead of a json content. Null elements are 
+     * replaced by the default values as missing json elements are.
+     * 
+     * @param classInfo elements of the class to be generated
+     */
+    JsonReader(ClassInfo classInfo) {
+        version = classInfo.getVersion();
+        packagename = classInfo.getPackagename() != null
+                              ? classInfo.getPackagename()
+                              : ClassInfo.DEFAULT_PACKAGENAME;
+        classname = classInfo.getClassname() != null
+                            ? classInfo.getClassname()
+                            : ClassInfo.defaultClassname();
+        methodname = classInfo.getMethodname() != null
+                             ? classInfo.getMethodname()
+                             : ClassInfo.DEFAULT_METHODNAME;
+        methodDesc = classInfo.getMethodDesc() != null
+                             ? classInfo.getMethodDesc()
+                             : ClassInfo.DEFAULT_METHOD_DESC;
+        bytecode = classInfo.getBytecode() != null
+                           ? classInfo.getBytecode()
+                           : ClassInfo.defaultBytecode();
+        constants = classInfo.getConstants() != null
+                            ? classInfo.getConstants()
+                            : ClassInfo.defaultConstants();
+    }
+
+    /**
+     * Reads the elements of a json object from <code>in</code>. Elements that 
+     * are not part of the format and elements whose values are null are 
+     * ignored.
+     * 
+     * @param in a token stream of the json content
+     * @param symbols cache of the symbols of the constants
+     * @throws IOException if there was a problem reading from the stream, or 
+     *      the stream contains malformed json element
+     * @throws IllegalStateException if an element has an unexpected type
+     * @throws NumberFormatException if a number element is not an integer
+     */
+    private void read(com.google.gson.stream.JsonReader in,
+                      SymbolCache symbols) throws IOException {
+        in.setStrictness(Strictness.LENIENT);
+        in.beginObject();
+
+        while (in.hasNext()) {
+            String name;
+
+            name = in.nextName();
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+
+                continue;
+            }
+
+            switch (name) {
+                case "version":
+                    version = in.nextInt();
+                    break;
+                case "packagename":
+                    packagename = in.nextString();
+                    break;
+                case "classname":
+                    classname = in.nextString();
+                    break;
+                case "methodname":
+                    methodname = in.nextString();
+                    break;
+                case "methodDesc":
+                    methodDesc = in.nextString();
+                    break;
+                case "bytecode":
+                    bytecode = readBytecode(in);
+                    break;
+                case "constants":
+                    constants = readConstants(in, symbols);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        if (in.peek() != JsonToken.END_DOCUMENT) {
+            throw new MalformedJsonException(
+                    "The json content was not fully consumed.");
+        }
+    }
+
+    /**
+     * Reads <code>bytecode</code> json array from <code>in</code> into an 
+     * <code>int</code> array whose length is the number of the elements.
+     * 
+     * @param in a token stream positioned at the json array
+     * @return the read bytecode
+     * @throws IOException if there was a problem reading from the stream, or 
+     *      the stream contains malformed json element
+     */
+    private static int[] readBytecode(com.google.gson.stream.JsonReader in)
+            throws IOException {
+        int[] code;
+        int length;
+
+        code = new int[INITIAL_BYTECODE_CAPACITY];
+        length = 0;
+
+        in.beginArray();
+
+        while (in.hasNext()) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length << 1);
+            }
+
+            code[length++] = in.nextInt();
+        }
+
+        in.endArray();
+
+        return length == code.length ? code : Arrays.copyOf(code, length);
+    }
+
+    /**
+     * Reads <code>constants</code> json array from <code>in</code>. Each
+     * element is an object that has either one of <code>int</code>,
+     * <code>float</code>, <code>long</code>, <code>double</code>,
+     * <code>string</code> and <code>class</code>, or <code>owner</code>,
+     * <code>name</code> and <code>desc</code> of a member with optional
+     * <code>interface</code>.
+     *
+     * @param in a token stream positioned at the json array
+     * @param symbols cache that interns the read symbols
+     * @return the read constants
+     * @throws IOException if there was a problem reading from the stream, or
+     *      the stream contains malformed json element
+     * @throws IllegalStateException if an element is not a constant
+     */
+    private static Symbol[] readConstants(com.google.gson.stream.JsonReader in,
+                                          SymbolCache symbols)
+            throws IOException {
+        List<Symbol> constants;
+
+        constants = new ArrayList<>();
+
+        in.beginArray();
+
+        while (in.hasNext()) {
+            Symbol constant;
+            String desc;
+            boolean isInterface;
+            String name;
+            String owner;
+
+            constant = null;
+            owner = null;
+            name = null;
+            desc = null;
+            isInterface = false;
+
+            in.beginObject();
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "int":
+                        constant = symbols.internValue(in.nextInt());
+                        break;
+                    case "float":
+                        constant = symbols.internValue(
+                                Float.parseFloat(in.nextString()));
+                        break;
+                    case "long":
+                        constant = symbols.internValue(in.nextLong());
+                        break;
+                    case "double":
+                        constant = symbols.internValue(in.nextDouble());
+                        break;
+                    case "string":
+                        constant = symbols.internValue(in.nextString());
+                        break;
+                    case "class":
+                        constant = symbols.internClass(in.nextString());
+                        break;
+                    case "owner":
+                        owner = in.nextString();
+                        break;
+                    case "name":
+                        name = in.nextString();
+                        break;
+                    case "desc":
+                        desc = in.nextString();
+                        break;
+                    case "interface":
+                        isInterface = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+
+            in.endObject();
+
+            if (constant == null && owner != null && name != null
+                    && desc != null) {
+                constant = symbols.internMember(owner,
+                                                name,
+                                                desc,
+                                                isInterface);
+            } else if (constant == null || owner != null || name != null
+                           || desc != null) {
+                throw new IllegalStateException(
+                        "Constant " + constants.size() + " is neither a "
+                            + "value nor a member.");
+            }
+
+            constants.add(constant);
+        }
+
+        in.endArray();
+
+        return constants.toArray(new Symbol[0]);
+    }
+
+    /**
+     * Computes stack map frames and maximum sizes of the method of this 
+     * <code>JsonReader</code> without <code>ClassWriter.COMPUTE_FRAMES</code>.
+     * 
+     * @return the computed frames, or <code>null</code> if the method should 
+     *      be left to <code>ClassWriter.COMPUTE_FRAMES</code>
+     * @see MethodFrames#compute(String, String, int[], Symbol[])
+     */
+    MethodFrames computeFrames() {
+        return computeFrames(packagename.replace('.', '/') + '/' + classname);
+    }
+
+    /**
+     * Computes stack map frames and maximum sizes of the method of this 
+     * <code>JsonReader</code> as a method of class <code>owner</code>.
+     * 
+     * @param owner internal name of the class that declares the method
+     * @return the computed frames, or <code>null</code> if the method should 
+     *      be left to <code>ClassWriter.COMPUTE_FRAMES</code>
+     */
+    MethodFrames computeFrames(String owner) {
+        return MethodFrames.compute(owner, methodDesc, bytecode, constants);
     }
 
     /**
@@ -56,76 +396,194 @@ public class JsonReader {
      *      json file
      */
     public void accept(ClassWriter visitor) throws UnsupportedOpcodeException {
+        validate();
+        accept(visitor, null);
+    }
+
+    /**
+     * Optimizes the bytecode of this reader with {@link PeepholeOptimizer}.
+     * The bytecode must have been validated by {@link #validate()}.
+     *
+     * @return the number of elements removed from the bytecode
+     */
+    int optimize() {
+        int length;
+
+        length = bytecode.length;
+        bytecode = PeepholeOptimizer.optimize(bytecode);
+
+        return length - bytecode.length;
+    }
+
+    /**
+     * Validates the method descriptor and the bytecode of this
+     * <code>JsonReader</code> without visiting them.
+     *
+     * @throws UnsupportedOpcodeException if the method descriptor or the
+     *      bytecode is invalid
+     * @see BytecodeValidator#validate(String, int[], Symbol[])
+     */
+    void validate() throws UnsupportedOpcodeException {
+        BytecodeValidator.validate(methodDesc, bytecode, constants);
+    }
+
+    /**
+     * Makes <code>visitor</code> visit JVMS class file structure according to 
+     * json file passed to the constructor of this <code>JsonReader</code> 
+     * instance, together with stack map frames and maximum sizes computed by 
+     * {@link #computeFrames()}. The bytecode should have been validated by 
+     * {@link #validate()}.
+     * <br></br>
+     * When <code>frames</code> is given, <code>visitor</code> should neither 
+     * compute frames nor maximum sizes. Frames are not visited if the major 
+     * version is lower than 50, which does not have StackMapTable attribute.
+     * 
+     * @param visitor <code>ClassWriter</code> to visit JVMS class file 
+     *      structure.
+     * @param frames frames of the method of this <code>JsonReader</code>, or 
+     *      <code>null</code> if <code>visitor</code> computes them
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the 
+     *      json file
+     */
+    void accept(ClassWriter visitor, MethodFrames frames) 
+            throws UnsupportedOpcodeException {
+        ClassSkeleton.accept(visitor, 
+                             version, 
+                             packagename.replace('.', '/') + '/' + classname);
+        acceptMethod(visitor, methodname, frames);
+        visitor.visitEnd();
+    }
+
+    /**
+     * Makes <code>visitor</code> visit the method of this 
+     * <code>JsonReader</code> as a method named <code>name</code>, so that 
+     * methods of many <code>JsonReader</code>s can be visited in one class. 
+     * The bytecode should have been validated by {@link #validate()}.
+     * 
+     * @param visitor visitor of the class that declares the method
+     * @param name name of the method
+     * @param frames frames of the method, or <code>null</code> if 
+     *      <code>visitor</code> computes them
+     * @throws UnsupportedOpcodeException if unsupported opcode is used in the 
+     *      json file
+     */
+    void acceptMethod(ClassVisitor visitor, String name, MethodFrames frames) 
+            throws UnsupportedOpcodeException {
         Label[] labels;
         int[] code;
         MethodVisitor mv;       
+        Symbol symbol;
         
-        visitor.visit(info.getVersion(), 
-                      Opcodes.ACC_PUBLIC, 
-                      info.getPackagename()
-                          .replace('.', '/') 
-                          + '/' 
-                          + info.getClassname(), 
-                      null,
-                      Type.getInternalName(Object.class), 
-                      null);
         mv = visitor.visitMethod(Opcodes.ACC_PUBLIC, 
-                                 "<init>", 
-                                 "()V", 
-                                 null, 
-                                 null);
-        
-        mv.visitCode();
-        mv.visitVarInsn(Opcodes.ALOAD, 0);
-        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, 
-                           Type.getInternalName(Object.class), 
-                           "<init>", 
-                           "()V", 
-                           false);
-        mv.visitInsn(Opcodes.RETURN);
-        mv.visitMaxs(0, 0);
-        mv.visitEnd();
-        
-        mv = visitor.visitMethod(Opcodes.ACC_PUBLIC, 
-                                 info.getMethodname(), 
-                                 info.getMethodDesc(), 
+                                 name, 
+                                 methodDesc, 
                                  null, 
                                  null);
         
         mv.visitCode();
 
-        code = info.getBytecode();      
+        code = bytecode;      
         labels = new Label[code.length];
 
         for (int i = 0; i < labels.length; i++) {
-            if (SupportedOpcodes.isSupportedJumpOpcode(code[i])) {
+            OpcodeKind kind;
+
+            kind = SupportedOpcodes.kindOf(code[i]);
+
+            if (kind == OpcodeKind.JUMP) {
                 labels[(code[++i] << 8) + code[++i]] = new Label();
+            } else {
+                i += kind.getOperands();
             }
         }
 
         for (int i = 0; i < code.length; i++) {
             if (labels[i] != null) {
                 mv.visitLabel(labels[i]);
+
+                if (frames != null && version >= Opcodes.V1_6) {
+                    Object[] locals;
+                    Object[] stack;
+
+                    locals = frames.getLocals(i);
+                    stack = frames.getStack(i);
+
+                    mv.visitFrame(Opcodes.F_NEW, 
+                                  locals.length, 
+                                  locals, 
+                                  stack.length, 
+                                  stack);
+                }
             }
 
-            if (SupportedOpcodes.isSupportedNoArgOpcode(code[i])) {
-                mv.visitInsn(code[i]);
-            } else if (SupportedOpcodes.isSupportedUnaryOpcode(code[i])) {
-                mv.visitIntInsn(code[i], code[++i]);
-            } else if (SupportedOpcodes.isSupportedJumpOpcode(code[i])) {
-                mv.visitJumpInsn(code[i], labels[(code[++i] << 8) + code[++i]]);
-            } else if (SupportedOpcodes.isSupportedVarOpcode(code[i])) {
-                mv.visitVarInsn(code[i], code[++i]);
-            } else {
-                throw new UnsupportedOpcodeException(
-                        "Unsupported opcode " + code[i] + " is used.");
+            switch (SupportedOpcodes.kindOf(code[i])) {
+                case NO_ARG:
+                    mv.visitInsn(code[i]);
+                    break;
+                case UNARY:
+                    mv.visitIntInsn(code[i], code[++i]);
+                    break;
+                case JUMP:
+                    mv.visitJumpInsn(code[i], 
+                                     labels[(code[++i] << 8) + code[++i]]);
+                    break;
+                case VAR:
+                    mv.visitVarInsn(code[i], code[++i]);
+                    break;
+                case CONSTANT:
+                case WIDE_CONSTANT:
+                    mv.visitLdcInsn(constantAt(i).getValue());
+                    i += SupportedOpcodes.kindOf(code[i]).getOperands();
+                    break;
+                case FIELD:
+                    symbol = constantAt(i);
+
+                    mv.visitFieldInsn(code[i],
+                                      symbol.getOwner(),
+                                      symbol.getName(),
+                                      symbol.getDesc());
+                    i += OpcodeKind.FIELD.getOperands();
+                    break;
+                case METHOD:
+                case INTERFACE_METHOD:
+                    symbol = constantAt(i);
+
+                    mv.visitMethodInsn(code[i],
+                                       symbol.getOwner(),
+                                       symbol.getName(),
+                                       symbol.getDesc(),
+                                       symbol.getKind()
+                                               == Symbol.Kind.INTERFACE_METHOD);
+                    i += SupportedOpcodes.kindOf(code[i]).getOperands();
+                    break;
+                case TYPE:
+                    mv.visitTypeInsn(code[i], constantAt(i).getName());
+                    i += OpcodeKind.TYPE.getOperands();
+                    break;
+                default:
+                    throw new UnsupportedOpcodeException(
+                            "Unsupported opcode " + code[i] + " is used.",
+                            code[i],
+                            i);
             }
         }
 
-        mv.visitMaxs(0, 0);
+        if (frames != null) {
+            mv.visitMaxs(frames.getMaxStack(), frames.getMaxLocals());
+        } else {
+            mv.visitMaxs(0, 0);
+        }
+
         mv.visitEnd();
+    }
 
-        visitor.visitEnd();
+    /**
+     * Gets the constant that the instruction at <code>index</code> of the
+     * bytecode refers to. The bytecode should have been validated by
+     * {@link #validate()}.
+     */
+    private Symbol constantAt(int index) {
+        return constants[SupportedOpcodes.constantIndex(bytecode, index)];
     }
 
     /**
@@ -134,7 +592,7 @@ public class JsonReader {
      * @return the classname element
      */
     public String readClassname() {
-        return info.getClassname();
+        return classname;
     }
 
     /**
@@ -143,6 +601,22 @@ public class JsonReader {
      * @return the packagename element
      */
     public String readPackagename() {
-        return info.getPackagename();
+        return packagename;
+    }
+
+    /**
+     * Reads all elements of this <code>JsonReader</code> as a 
+     * <code>ClassInfo</code>.
+     * 
+     * @return the read elements
+     */
+    ClassInfo readClassInfo() {
+        return new ClassInfo(version, 
+                             packagename, 
+                             classname, 
+                             methodname, 
+                             methodDesc, 
+                             bytecode,
+                             constants);
     }
 }
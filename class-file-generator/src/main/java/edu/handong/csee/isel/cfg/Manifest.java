@@ -0,0 +1,441 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Manifest of an incremental generation that is kept in the destination
+ * directory.
+ * <br></br>
+ * The manifest maps each source file to the hash of its content and the
+ * generation options, and to the class files generated from it. A source file
+ * whose hash did not change since the previous generation does not need to be
+ * generated again, and class files whose source files disappeared can be
+ * deleted.
+ * <br></br>
+ * Each record is a line of tab separated fields, so tabs, line breaks and
+ * percent signs in the paths are percent-encoded.
+ */
+class Manifest {
+    static final String FILE_NAME = ".cfg-manifest";
+
+    private static final String HEADER = "# cfg-manifest 2 ";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ConcurrentHashMap<String, Entry> current;
+    private Path dstDir;
+    private String options;
+    private Map<String, Entry> previous;
+    private boolean previousOptionsMatch;
+    private Set<String> removed;
+
+    private Manifest(Path dstDir, String options) {
+        this.dstDir = dstDir;
+        this.options = options;
+        current = new ConcurrentHashMap<>();
+        previous = new HashMap<>();
+        removed = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Loads the manifest of the previous generation from <code>dstDir</code>.
+     * If there is no manifest, an empty manifest is returned.
+     *
+     * @param dstDir directory that class files to be generated
+     * @param options generation options that affect generated class files
+     * @return the loaded manifest
+     * @throws IOException if an I/O error occurs while reading the manifest
+     */
+    static Manifest load(Path dstDir, String options) throws IOException {
+        Manifest manifest;
+
+        manifest = new Manifest(dstDir, options);
+
+        try (BufferedReader in
+                = Files.newBufferedReader(dstDir.resolve(FILE_NAME))) {
+            String line;
+
+            line = in.readLine();
+            manifest.previousOptionsMatch
+                    = line != null && line.equals(HEADER + options);
+
+            while ((line = in.readLine()) != null) {
+                String[] fields;
+                Entry entry;
+
+                fields = line.split("\t");
+
+                if (fields.length < 4) {
+                    continue;
+                }
+
+                entry = new Entry(Long.parseLong(fields[1]),
+                                  Long.parseLong(fields[2]),
+                                  fields[3]);
+
+                for (int i = 4; i < fields.length; i++) {
+                    entry.outputs.add(decode(fields[i]));
+                }
+
+                manifest.previous.put(decode(fields[0]), entry);
+            }
+        } catch (NoSuchFileException e) {
+            manifest.previousOptionsMatch = false;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The manifest is corrupted.", e);
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Checks if <code>srcFile</code> and its generated class files are up to
+     * date.
+     * <br></br>
+     * The content of <code>srcFile</code> is only hashed when its size or
+     * modified time changed. If it is not up to date, <code>srcFile</code> is
+     * recorded with its new hash, and class files generated from it have to
+     * be recorded by {@link #addOutput(Path, String)}.
+     *
+     * @param srcFile source file to be checked
+     * @param attr attributes of <code>srcFile</code>
+     * @return <code>true</code> if <code>srcFile</code> is up to date,
+     *      <code>false</code> otherwise
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>srcFile</code>
+     */
+    boolean isUpToDate(Path srcFile, BasicFileAttributes attr)
+            throws IOException {
+        Entry entry;
+        Entry prevEntry;
+        String key;
+        long modified;
+
+        key = key(srcFile);
+        modified = attr.lastModifiedTime().toMillis();
+        prevEntry = previous.get(key);
+
+        if (prevEntry != null
+                && previousOptionsMatch
+                && prevEntry.size == attr.size()
+                && prevEntry.modified == modified
+                && outputsExist(prevEntry)) {
+            current.put(key, prevEntry);
+
+            return true;
+        }
+
+        entry = new Entry(attr.size(), modified, hash(srcFile));
+
+        if (prevEntry != null
+                && prevEntry.hash.equals(entry.hash)
+                && outputsExist(prevEntry)) {
+            entry.outputs.addAll(prevEntry.outputs);
+            current.put(key, entry);
+
+            return true;
+        }
+
+        current.put(key, entry);
+
+        return false;
+    }
+
+    /**
+     * Records that <code>output</code> is generated from
+     * <code>srcFile</code>.
+     *
+     * @param srcFile source file that has been checked by
+     *      {@link #isUpToDate(Path, BasicFileAttributes)}
+     * @param output path of generated class file relative to the 
+     *      destination directory
+     */
+    void addOutput(Path srcFile, String output) {
+        Entry entry;
+
+        entry = current.get(key(srcFile));
+
+        if (entry != null) {
+            entry.outputs.add(output);
+        }
+    }
+
+    /**
+     * Records that some content of <code>srcFile</code> could not be
+     * generated, so that it is not considered up to date by the next
+     * generation.
+     *
+     * @param srcFile source file that has been checked by
+     *      {@link #isUpToDate(Path, BasicFileAttributes)}
+     */
+    void fail(Path srcFile) {
+        Entry entry;
+
+        entry = current.get(key(srcFile));
+
+        if (entry != null) {
+            entry.failed = true;
+        }
+    }
+
+    /**
+     * Records that <code>srcFile</code> has been removed, so that its class
+     * files are deleted by {@link #prune()} even if the source files are
+     * listed rather than walked.
+     *
+     * @param srcFile source file that no longer exists
+     */
+    void remove(Path srcFile) {
+        removed.add(key(srcFile));
+    }
+
+    /**
+     * Deletes the class files of the previous generation that are not
+     * generated from any source file of this generation.
+     *
+     * @return the number of deleted class files
+     * @throws IOException if an I/O error occurs while deleting class files
+     */
+    int prune() throws IOException {
+        Set<String> outputs;
+        int deleted;
+
+        outputs = new HashSet<>();
+        deleted = 0;
+
+        for (Entry entry : current.values()) {
+            outputs.addAll(entry.outputs);
+        }
+
+        for (Entry entry : previous.values()) {
+            for (String output : entry.outputs) {
+                if (outputs.add(output)
+                        && Files.deleteIfExists(dstDir.resolve(output))) {
+                    deleted++;
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Keeps the records of the previous generation whose source files are not
+     * checked by this generation, so that a generation of some of the source
+     * files does not forget the others. It is used before {@link #prune()}
+     * when the source files are listed rather than walked, so that only the
+     * class files of removed or regenerated source files are deleted.
+     */
+    void retainUnchecked() {
+        for (Map.Entry<String, Entry> mapping : previous.entrySet()) {
+            if (!removed.contains(mapping.getKey())) {
+                current.putIfAbsent(mapping.getKey(), mapping.getValue());
+            }
+        }
+    }
+
+    /**
+     * Saves this manifest to the destination directory. Source files that
+     * could not be fully generated are left out.
+     *
+     * @throws IOException if an I/O error occurs while writing the manifest
+     */
+    void save() throws IOException {
+        Path tmpFile;
+
+        tmpFile = dstDir.resolve(FILE_NAME + ".tmp");
+
+        try (BufferedWriter out = Files.newBufferedWriter(tmpFile)) {
+            out.write(HEADER + options);
+            out.newLine();
+
+            for (Map.Entry<String, Entry> mapping : current.entrySet()) {
+                Entry entry;
+
+                entry = mapping.getValue();
+
+                if (entry.failed) {
+                    continue;
+                }
+
+                out.write(encode(mapping.getKey())
+                          + '\t' + entry.size
+                          + '\t' + entry.modified
+                          + '\t' + entry.hash);
+
+                for (String output : entry.outputs) {
+                    out.write('\t' + encode(output));
+                }
+
+                out.newLine();
+            }
+        }
+
+        Files.move(tmpFile,
+                   dstDir.resolve(FILE_NAME),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean outputsExist(Entry entry) {
+        for (String output : entry.outputs) {
+            if (!Files.exists(dstDir.resolve(output))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Hashes the generation options and the content of <code>srcFile</code>
+     * with SHA-256.
+     *
+     * @param srcFile source file to be hashed
+     * @return the hexadecimal hash
+     * @throws IOException if an I/O error occurs while reading
+     *      <code>srcFile</code>
+     */
+    private String hash(Path srcFile) throws IOException {
+        MessageDigest digest;
+        byte[] buffer;
+        byte[] hash;
+        char[] hex;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        buffer = new byte[8192];
+
+        try (InputStream in = Files.newInputStream(srcFile)) {
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        hash = digest.digest();
+        hex = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Percent-encodes the tabs, line breaks and percent signs of
+     * <code>path</code>, so that it can be a field of a record.
+     *
+     * @param path path to be encoded
+     * @return the encoded path
+     */
+    static String encode(String path) {
+        StringBuilder encoded;
+
+        encoded = new StringBuilder(path.length());
+
+        for (int i = 0; i < path.length(); i++) {
+            char c;
+
+            c = path.charAt(i);
+
+            if (c == '\t' || c == '\n' || c == '\r' || c == '%') {
+                encoded.append('%')
+                       .append(HEX_DIGITS[c >> 4])
+                       .append(HEX_DIGITS[c & 0xF]);
+            } else {
+                encoded.append(c);
+            }
+        }
+
+        return encoded.toString();
+    }
+
+    /**
+     * Decodes <code>field</code> encoded by {@link #encode(String)}.
+     *
+     * @param field field of a record
+     * @return the decoded path
+     * @throws IllegalArgumentException if <code>field</code> has a malformed
+     *      percent sign
+     */
+    static String decode(String field) {
+        StringBuilder decoded;
+
+        if (field.indexOf('%') == -1) {
+            return field;
+        }
+
+        decoded = new StringBuilder(field.length());
+
+        for (int i = 0; i < field.length(); i++) {
+            char c;
+
+            c = field.charAt(i);
+
+            if (c == '%') {
+                if (i + 2 >= field.length()) {
+                    throw new IllegalArgumentException(
+                            "Malformed field " + field + ".");
+                }
+
+                c = (char) Integer.parseInt(field.substring(i + 1, i + 3),
+                                            16);
+                i += 2;
+            }
+
+            decoded.append(c);
+        }
+
+        return decoded.toString();
+    }
+
+    private static String key(Path srcFile) {
+        return srcFile.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Source file record of a manifest.
+     */
+    private static class Entry {
+        private volatile boolean failed;
+        private String hash;
+        private long modified;
+        private Queue<String> outputs;
+        private long size;
+
+        private Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            outputs = new ConcurrentLinkedQueue<>();
+        }
+    }
+}
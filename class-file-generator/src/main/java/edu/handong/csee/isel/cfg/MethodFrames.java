@@ -0,0 +1,861 @@
+package edu.handong.csee.isel.cfg;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Stack map frames and maximum sizes of a method whose bytecode only uses
+ * supported opcodes.
+ * <br></br>
+ * The frames are computed by a data flow analysis that is specialized for
+ * <code>SupportedOpcodes</code>. The types of constants, fields and methods
+ * are taken from their symbols, whose descriptors are parsed once. The
+ * analysis never loads classes to merge types, so it gives up on merging
+ * different classes, and on an object that is not initialized yet at a jump
+ * target. Frames are kept only at jump targets, where the Java Virtual
+ * Machine Specification (JVMS) requires them.
+ *
+ * @see SupportedOpcodes
+ */
+class MethodFrames {
+    private static final Type CLASS = Type.getType(Class.class);
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final Type STRING = Type.getType(String.class);
+
+    private Object[][] locals;
+    private int maxLocals;
+    private int maxStack;
+    private Object[][] stacks;
+
+    private MethodFrames(int length) {
+        locals = new Object[length][];
+        stacks = new Object[length][];
+    }
+
+    /**
+     * Computes the stack map frames and maximum sizes of a method.
+     * <br></br>
+     * The computation gives up on a bytecode that is not supported by the
+     * analysis, such as a bytecode with unsupported opcodes, jump targets out
+     * of its instructions, unreachable instructions, or a merge of different
+     * class types. Such a bytecode should be left to
+     * <code>ClassWriter.COMPUTE_FRAMES</code>.
+     *
+     * @param owner internal name of the class that declares the method
+     * @param methodDesc descriptor of the method
+     * @param code bytecode of the method in the format of <code>bytecode</code>
+     *      json array
+     * @return the computed frames, or <code>null</code> if the computation
+     *      gave up
+     */
+    static MethodFrames compute(String owner, String methodDesc, int[] code) {
+        return compute(owner, methodDesc, code, ClassInfo.defaultConstants());
+    }
+
+    /**
+     * Computes the stack map frames and maximum sizes of a method whose
+     * bytecode refers to <code>constants</code>.
+     *
+     * @param owner internal name of the class that declares the method
+     * @param methodDesc descriptor of the method
+     * @param code bytecode of the method in the format of <code>bytecode</code>
+     *      json array
+     * @param constants constants of the bytecode
+     * @return the computed frames, or <code>null</code> if the computation
+     *      gave up
+     * @see #compute(String, String, int[])
+     */
+    static MethodFrames compute(String owner, String methodDesc, int[] code,
+                                Symbol[] constants) {
+        try {
+            return new Analyzer(owner, methodDesc, code, constants).analyze();
+        } catch (AnalysisException | IllegalArgumentException
+                 | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the local variables of the frame at <code>index</code> in the
+     * format of <code>MethodVisitor.visitFrame</code>.
+     *
+     * @param index index of an instruction in the bytecode
+     * @return the local variables, or <code>null</code> if there is no frame
+     *      at <code>index</code>
+     */
+    Object[] getLocals(int index) {
+        return locals[index];
+    }
+
+    /**
+     * Gets the operand stack of the frame at <code>index</code> in the format
+     * of <code>MethodVisitor.visitFrame</code>.
+     *
+     * @param index index of an instruction in the bytecode
+     * @return the operand stack, or <code>null</code> if there is no frame at
+     *      <code>index</code>
+     */
+    Object[] getStack(int index) {
+        return stacks[index];
+    }
+
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Exception that is raised when the analysis gives up.
+     */
+    private static class AnalysisException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private AnalysisException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Type of an object created by <code>new</code> at
+     * <code>offset</code>, which is not initialized yet.
+     */
+    private static class Uninitialized {
+        private int offset;
+        private String type;
+
+        private Uninitialized(int offset, String type) {
+            this.offset = offset;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Uninitialized
+                   && ((Uninitialized) obj).offset == offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return offset;
+        }
+    }
+
+    /**
+     * Data flow analysis over the instructions of a bytecode. Local variables
+     * and the operand stack are kept per slot, where the second slot of a
+     * long or a double is <code>Opcodes.TOP</code>.
+     */
+    private static class Analyzer {
+        private int[] code;
+        private Symbol[] constants;
+        private Object[][] entryLocals;
+        private Object[][] entryStacks;
+        private int[] entryStackSizes;
+        private Object[] initialLocals;
+        private boolean[] jumpTargets;
+        private int maxLocals;
+        private int maxStack;
+        private boolean[] reached;
+        private boolean[] scheduled;
+        private int[] worklist;
+        private int worklistSize;
+
+        private Analyzer(String owner, String methodDesc, int[] code,
+                         Symbol[] constants) {
+            Type[] argumentTypes;
+            int slot;
+
+            this.code = code;
+            this.constants = constants;
+            argumentTypes = Type.getArgumentTypes(methodDesc);
+            maxLocals = 1;
+
+            for (Type argumentType : argumentTypes) {
+                maxLocals += argumentType.getSize();
+            }
+
+            initialLocals = new Object[maxLocals];
+            initialLocals[0] = owner;
+            slot = 1;
+
+            for (Type argumentType : argumentTypes) {
+                initialLocals[slot++] = toFrameType(argumentType);
+
+                if (argumentType.getSize() == 2) {
+                    initialLocals[slot++] = Opcodes.TOP;
+                }
+            }
+
+            entryLocals = new Object[code.length][];
+            entryStacks = new Object[code.length][];
+            entryStackSizes = new int[code.length];
+            jumpTargets = new boolean[code.length];
+            reached = new boolean[code.length];
+            scheduled = new boolean[code.length];
+            worklist = new int[code.length];
+        }
+
+        private MethodFrames analyze() throws AnalysisException {
+            MethodFrames frames;
+            boolean[] starts;
+
+            starts = findInstructions();
+
+            merge(0, initialLocals, new Object[0], 0);
+
+            while (worklistSize > 0) {
+                int start;
+
+                start = worklist[--worklistSize];
+                scheduled[start] = false;
+
+                execute(start);
+            }
+
+            frames = new MethodFrames(code.length);
+            frames.maxLocals = maxLocals;
+            frames.maxStack = maxStack;
+
+            for (int i = 0; i < code.length; i++) {
+                if (starts[i] && !reached[i]) {
+                    throw new AnalysisException("Unreachable instruction.");
+                }
+
+                if (jumpTargets[i]) {
+                    frames.locals[i] = toFrameLocals(entryLocals[i]);
+                    frames.stacks[i] = toFrameStack(entryStacks[i],
+                                                    entryStackSizes[i]);
+                }
+            }
+
+            return frames;
+        }
+
+        /**
+         * Finds the starts of the instructions and the jump targets.
+         *
+         * @return whether each index is a start of an instruction
+         */
+        private boolean[] findInstructions() throws AnalysisException {
+            boolean[] starts;
+
+            starts = new boolean[code.length];
+
+            for (int i = 0; i < code.length; i++) {
+                OpcodeKind kind;
+
+                kind = SupportedOpcodes.kindOf(code[i]);
+                starts[i] = true;
+
+                if (kind == OpcodeKind.UNSUPPORTED) {
+                    throw new AnalysisException("Unsupported opcode.");
+                } else if (kind == OpcodeKind.JUMP) {
+                    jumpTargets[target(i)] = true;
+                }
+
+                i += kind.getOperands();
+            }
+
+            for (int i = 0; i < code.length; i++) {
+                if (jumpTargets[i] && !starts[i]) {
+                    throw new AnalysisException(
+                            "Jump target is not an instruction.");
+                }
+            }
+
+            return starts;
+        }
+
+        /**
+         * Simulates the instructions of the basic block that starts at
+         * <code>start</code>, and merges the frames at its ends into their
+         * successors.
+         */
+        private void execute(int start) throws AnalysisException {
+            Object[] locals;
+            Object[] stack;
+            int size;
+            int i;
+
+            locals = entryLocals[start].clone();
+            stack = Arrays.copyOf(entryStacks[start],
+                                  Math.max(maxStack, 1) + 2);
+            size = entryStackSizes[start];
+            i = start;
+
+            while (true) {
+                int opcode;
+
+                opcode = code[i];
+                reached[i] = true;
+
+                if (size + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+
+                switch (opcode) {
+                    case Opcodes.NOP:
+                        break;
+                    case Opcodes.ICONST_M1:
+                    case Opcodes.ICONST_0:
+                    case Opcodes.ICONST_1:
+                    case Opcodes.ICONST_2:
+                    case Opcodes.ICONST_3:
+                    case Opcodes.ICONST_4:
+                    case Opcodes.ICONST_5:
+                        stack[size++] = Opcodes.INTEGER;
+                        break;
+                    case Opcodes.FCONST_0:
+                    case Opcodes.FCONST_1:
+                    case Opcodes.FCONST_2:
+                        stack[size++] = Opcodes.FLOAT;
+                        break;
+                    case Opcodes.IALOAD:
+                    case Opcodes.IADD:
+                    case Opcodes.ISUB:
+                    case Opcodes.IMUL:
+                    case Opcodes.IDIV:
+                    case Opcodes.IREM:
+                        size = pop(size, 2);
+                        stack[size++] = Opcodes.INTEGER;
+                        break;
+                    case Opcodes.FALOAD:
+                    case Opcodes.FADD:
+                    case Opcodes.FSUB:
+                    case Opcodes.FMUL:
+                    case Opcodes.FDIV:
+                    case Opcodes.FREM:
+                        size = pop(size, 2);
+                        stack[size++] = Opcodes.FLOAT;
+                        break;
+                    case Opcodes.IASTORE:
+                    case Opcodes.FASTORE:
+                        size = pop(size, 3);
+                        break;
+                    case Opcodes.POP:
+                        size = pop(size, 1);
+                        break;
+                    case Opcodes.DUP:
+                        pop(size, 1);
+                        stack[size] = stack[size - 1];
+                        size++;
+                        break;
+                    case Opcodes.ARRAYLENGTH:
+                        size = pop(size, 1);
+                        stack[size++] = Opcodes.INTEGER;
+                        break;
+                    case Opcodes.NEWARRAY:
+                        size = pop(size, 1);
+                        stack[size++] = arrayType(code[++i]);
+                        break;
+                    case Opcodes.ILOAD:
+                        use(code[++i], 1);
+                        stack[size++] = Opcodes.INTEGER;
+                        break;
+                    case Opcodes.FLOAD:
+                        use(code[++i], 1);
+                        stack[size++] = Opcodes.FLOAT;
+                        break;
+                    case Opcodes.ALOAD:
+                        use(code[++i], 1);
+                        stack[size++] = code[i] < locals.length
+                                        ? locals[code[i]]
+                                        : Opcodes.TOP;
+                        break;
+                    case Opcodes.ISTORE:
+                    case Opcodes.FSTORE:
+                    case Opcodes.ASTORE:
+                        size = pop(size, 1);
+                        locals = store(locals, code[++i], stack[size]);
+                        break;
+                    case Opcodes.IFEQ:
+                    case Opcodes.IFNE:
+                    case Opcodes.IFLT:
+                    case Opcodes.IFGE:
+                    case Opcodes.IFGT:
+                    case Opcodes.IFLE:
+                        size = pop(size, 1);
+                        merge(target(i), locals, stack, size);
+                        i += 2;
+                        break;
+                    case Opcodes.GOTO:
+                        merge(target(i), locals, stack, size);
+                        return;
+                    case Opcodes.IRETURN:
+                    case Opcodes.FRETURN:
+                    case Opcodes.ARETURN:
+                        pop(size, 1);
+                        return;
+                    case Opcodes.RETURN:
+                        return;
+                    case Opcodes.LDC:
+                    case SupportedOpcodes.LDC_W:
+                    case SupportedOpcodes.LDC2_W:
+                        size = push(stack, size, ldcType(i));
+                        i += SupportedOpcodes.kindOf(opcode).getOperands();
+                        break;
+                    case Opcodes.GETSTATIC:
+                        size = push(stack,
+                                    size,
+                                    constant(i, Symbol.Kind.FIELD).getType());
+                        i += 2;
+                        break;
+                    case Opcodes.PUTSTATIC:
+                        size = pop(size,
+                                   constant(i, Symbol.Kind.FIELD).getType()
+                                                                 .getSize());
+                        i += 2;
+                        break;
+                    case Opcodes.GETFIELD:
+                        size = push(stack,
+                                    pop(size, 1),
+                                    constant(i, Symbol.Kind.FIELD).getType());
+                        i += 2;
+                        break;
+                    case Opcodes.PUTFIELD:
+                        size = pop(size,
+                                   constant(i, Symbol.Kind.FIELD).getType()
+                                                                 .getSize()
+                                       + 1);
+                        i += 2;
+                        break;
+                    case Opcodes.INVOKEVIRTUAL:
+                    case Opcodes.INVOKESPECIAL:
+                    case Opcodes.INVOKESTATIC:
+                    case Opcodes.INVOKEINTERFACE:
+                        size = invoke(locals, stack, size, i);
+                        i += SupportedOpcodes.kindOf(opcode).getOperands();
+                        break;
+                    case Opcodes.NEW:
+                        stack[size++] = new Uninitialized(
+                                i, constant(i, Symbol.Kind.CLASS).getName());
+                        i += 2;
+                        break;
+                    case Opcodes.ANEWARRAY:
+                        size = pop(size, 1);
+                        stack[size++] = "[" + constant(i, Symbol.Kind.CLASS)
+                                                      .getType()
+                                                      .getDescriptor();
+                        i += 2;
+                        break;
+                    case Opcodes.CHECKCAST:
+                        size = pop(size, 1);
+                        stack[size++] = constant(i, Symbol.Kind.CLASS)
+                                                .getName();
+                        i += 2;
+                        break;
+                    case Opcodes.INSTANCEOF:
+                        size = pop(size, 1);
+                        stack[size++] = Opcodes.INTEGER;
+                        i += 2;
+                        break;
+                    default:
+                        throw new AnalysisException("Unsupported opcode.");
+                }
+
+                maxStack = Math.max(maxStack, size);
+                i++;
+
+                if (i >= code.length) {
+                    throw new AnalysisException("Falling off the code.");
+                }
+
+                if (jumpTargets[i]) {
+                    merge(i, locals, stack, size);
+
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Merges a frame into the entry frame of the instruction at
+         * <code>index</code>, and schedules the instruction if its entry frame
+         * changed.
+         */
+        private void merge(int index, Object[] locals, Object[] stack,
+                           int size) throws AnalysisException {
+            Object[] mergedLocals;
+            Object[] mergedStack;
+            boolean changed;
+
+            for (int j = 0; j < Math.max(locals.length, size); j++) {
+                if ((j < locals.length && locals[j] instanceof Uninitialized)
+                        || (j < size && stack[j] instanceof Uninitialized)) {
+                    throw new AnalysisException(
+                            "Uninitialized object at a jump target.");
+                }
+            }
+
+            mergedLocals = entryLocals[index];
+
+            if (mergedLocals == null) {
+                entryLocals[index] = Arrays.copyOf(locals, maxLocals);
+                entryStacks[index] = Arrays.copyOf(stack, size);
+                entryStackSizes[index] = size;
+
+                for (int slot = locals.length; slot < maxLocals; slot++) {
+                    entryLocals[index][slot] = Opcodes.TOP;
+                }
+
+                schedule(index);
+
+                return;
+            }
+
+            if (entryStackSizes[index] != size) {
+                throw new AnalysisException("Inconsistent stack heights.");
+            }
+
+            mergedStack = entryStacks[index];
+            changed = false;
+
+            if (mergedLocals.length < maxLocals) {
+                mergedLocals = Arrays.copyOf(mergedLocals, maxLocals);
+
+                for (int slot = entryLocals[index].length;
+                        slot < maxLocals;
+                        slot++) {
+                    mergedLocals[slot] = Opcodes.TOP;
+                }
+
+                entryLocals[index] = mergedLocals;
+            }
+
+            for (int slot = 0; slot < mergedLocals.length; slot++) {
+                Object type;
+
+                type = mergeTypes(mergedLocals[slot],
+                                  slot < locals.length
+                                          ? locals[slot]
+                                          : Opcodes.TOP);
+
+                if (!type.equals(mergedLocals[slot])) {
+                    mergedLocals[slot] = type;
+                    changed = true;
+                }
+            }
+
+            for (int j = 0; j < size; j++) {
+                Object type;
+
+                type = mergeTypes(mergedStack[j], stack[j]);
+
+                if (!type.equals(mergedStack[j])) {
+                    mergedStack[j] = type;
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                schedule(index);
+            }
+        }
+
+        private void schedule(int index) {
+            if (!scheduled[index]) {
+                scheduled[index] = true;
+                worklist[worklistSize++] = index;
+            }
+        }
+
+        private Object mergeTypes(Object a, Object b)
+                throws AnalysisException {
+            if (a.equals(b)) {
+                return a;
+            }
+
+            if (a instanceof String && b instanceof String) {
+                if (((String) a).startsWith("[")
+                        && ((String) b).startsWith("[")
+                        && (isPrimitiveArray((String) a)
+                                || isPrimitiveArray((String) b))) {
+                    return OBJECT;
+                }
+
+                if (a.equals(OBJECT) || b.equals(OBJECT)) {
+                    return OBJECT;
+                }
+
+                throw new AnalysisException("Merging different classes.");
+            }
+
+            return Opcodes.TOP;
+        }
+
+        /**
+         * Simulates the invocation of the method that the instruction at
+         * <code>index</code> refers to. Invoking the initializer of an
+         * object that is not initialized yet initializes every copy of it.
+         *
+         * @return the size of the stack after the invocation
+         */
+        private int invoke(Object[] locals, Object[] stack, int size,
+                           int index) throws AnalysisException {
+            Symbol method;
+            Object receiver;
+
+            method = constant(index,
+                              Symbol.Kind.METHOD,
+                              Symbol.Kind.INTERFACE_METHOD);
+            size = pop(size, method.getArgumentSize());
+
+            if (code[index] == Opcodes.INVOKESTATIC) {
+                return push(stack, size, method.getType());
+            }
+
+            size = pop(size, 1);
+            receiver = stack[size];
+
+            if (receiver instanceof Uninitialized
+                    && method.getName().equals("<init>")) {
+                for (int slot = 0; slot < locals.length; slot++) {
+                    if (receiver.equals(locals[slot])) {
+                        locals[slot] = ((Uninitialized) receiver).type;
+                    }
+                }
+
+                for (int j = 0; j < size; j++) {
+                    if (receiver.equals(stack[j])) {
+                        stack[j] = ((Uninitialized) receiver).type;
+                    }
+                }
+            }
+
+            return push(stack, size, method.getType());
+        }
+
+        /**
+         * Pushes a value of <code>type</code> to <code>stack</code>, which
+         * takes two slots if it is a long or a double.
+         *
+         * @return the size of the stack after the push
+         */
+        private int push(Object[] stack, int size, Type type) {
+            if (type.getSort() == Type.VOID) {
+                return size;
+            }
+
+            stack[size++] = toFrameType(type);
+
+            if (type.getSize() == 2) {
+                stack[size++] = Opcodes.TOP;
+            }
+
+            return size;
+        }
+
+        /**
+         * Finds the type of the constant that <code>ldc</code> at
+         * <code>index</code> pushes.
+         */
+        private Type ldcType(int index) throws AnalysisException {
+            Symbol constant;
+
+            constant = constant(index,
+                                Symbol.Kind.INT,
+                                Symbol.Kind.FLOAT,
+                                Symbol.Kind.LONG,
+                                Symbol.Kind.DOUBLE,
+                                Symbol.Kind.STRING,
+                                Symbol.Kind.CLASS);
+
+            switch (constant.getKind()) {
+                case INT:
+                    return Type.INT_TYPE;
+                case FLOAT:
+                    return Type.FLOAT_TYPE;
+                case LONG:
+                    return Type.LONG_TYPE;
+                case DOUBLE:
+                    return Type.DOUBLE_TYPE;
+                case STRING:
+                    return STRING;
+                default:
+                    return CLASS;
+            }
+        }
+
+        /**
+         * Gets the constant that the instruction at <code>index</code>
+         * refers to, which has to be a well formed constant of one of
+         * <code>kinds</code>.
+         */
+        private Symbol constant(int index, Symbol.Kind... kinds)
+                throws AnalysisException {
+            Symbol constant;
+
+            constant = constants[SupportedOpcodes.constantIndex(code, index)];
+
+            for (Symbol.Kind kind : kinds) {
+                if (constant.isWellFormed() && constant.getKind() == kind) {
+                    return constant;
+                }
+            }
+
+            throw new AnalysisException("Unexpected constant.");
+        }
+
+        private int pop(int size, int count) throws AnalysisException {
+            if (size < count) {
+                throw new AnalysisException("Stack underflow.");
+            }
+
+            return size - count;
+        }
+
+        private Object[] store(Object[] locals, int slot, Object type) {
+            Object[] stored;
+
+            use(slot, 1);
+
+            stored = locals.length > slot
+                     ? locals
+                     : Arrays.copyOf(locals, maxLocals);
+
+            for (int j = locals.length; j < stored.length; j++) {
+                stored[j] = Opcodes.TOP;
+            }
+
+            if (slot > 0 && isWide(stored[slot - 1])) {
+                stored[slot - 1] = Opcodes.TOP;
+            }
+
+            if (slot + 1 < stored.length && isWide(stored[slot])) {
+                stored[slot + 1] = Opcodes.TOP;
+            }
+
+            stored[slot] = type;
+
+            return stored;
+        }
+
+        private void use(int slot, int size) {
+            if (slot < 0) {
+                throw new IllegalArgumentException("Negative local index.");
+            }
+
+            maxLocals = Math.max(maxLocals, slot + size);
+        }
+
+        private int target(int index) throws AnalysisException {
+            int target;
+
+            target = (code[index + 1] << 8) + code[index + 2];
+
+            if (target < 0 || target >= code.length) {
+                throw new AnalysisException("Jump target out of the code.");
+            }
+
+            return target;
+        }
+
+        private static boolean isWide(Object type) {
+            return Opcodes.LONG.equals(type) || Opcodes.DOUBLE.equals(type);
+        }
+
+        private static boolean isPrimitiveArray(String type) {
+            return type.length() == 2;
+        }
+
+        private static Object arrayType(int atype) throws AnalysisException {
+            switch (atype) {
+                case Opcodes.T_BOOLEAN:
+                    return "[Z";
+                case Opcodes.T_CHAR:
+                    return "[C";
+                case Opcodes.T_FLOAT:
+                    return "[F";
+                case Opcodes.T_DOUBLE:
+                    return "[D";
+                case Opcodes.T_BYTE:
+                    return "[B";
+                case Opcodes.T_SHORT:
+                    return "[S";
+                case Opcodes.T_INT:
+                    return "[I";
+                case Opcodes.T_LONG:
+                    return "[J";
+                default:
+                    throw new AnalysisException("Invalid array type.");
+            }
+        }
+
+        private static Object toFrameType(Type type) {
+            switch (type.getSort()) {
+                case Type.BOOLEAN:
+                case Type.CHAR:
+                case Type.BYTE:
+                case Type.SHORT:
+                case Type.INT:
+                    return Opcodes.INTEGER;
+                case Type.FLOAT:
+                    return Opcodes.FLOAT;
+                case Type.LONG:
+                    return Opcodes.LONG;
+                case Type.DOUBLE:
+                    return Opcodes.DOUBLE;
+                default:
+                    return type.getInternalName();
+            }
+        }
+
+        /**
+         * Converts the operand stack per slot to the format of
+         * <code>MethodVisitor.visitFrame</code>, where a long or a double
+         * takes a single element.
+         */
+        private static Object[] toFrameStack(Object[] slots, int size) {
+            Object[] frameStack;
+            int length;
+
+            frameStack = new Object[size];
+            length = 0;
+
+            for (int slot = 0; slot < size; slot++) {
+                frameStack[length++] = slots[slot];
+
+                if (isWide(slots[slot])) {
+                    slot++;
+                }
+            }
+
+            return Arrays.copyOf(frameStack, length);
+        }
+
+        /**
+         * Converts local variables per slot to the format of
+         * <code>MethodVisitor.visitFrame</code>, where a long or a double
+         * takes a single element and trailing tops are omitted.
+         */
+        private static Object[] toFrameLocals(Object[] slots) {
+            Object[] frameLocals;
+            int length;
+            int end;
+
+            end = slots.length;
+
+            while (end > 0 && Opcodes.TOP.equals(slots[end - 1])) {
+                end--;
+            }
+
+            frameLocals = new Object[end];
+            length = 0;
+
+            for (int slot = 0; slot < end; slot++) {
+                frameLocals[length++] = slots[slot];
+
+                if (isWide(slots[slot])) {
+                    slot++;
+                }
+            }
+
+            return Arrays.copyOf(frameLocals, length);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.handong.csee.isel.cfg;
+
+/**
+ * Kinds of Java Virtual Machine (JVM) opcodes, which decide how an opcode and 
+ * its operands are placed in <code>bytecode</code> json array.
+ * 
+ * @see SupportedOpcodes
+ */
+public enum OpcodeKind {
+    /** Supported opcode that has no argument. */
+    NO_ARG(0),
+    /** Supported opcode that has one argument. */
+    UNARY(1),
+    /** 
+     * Supported opcode that jumps to an other instruction, whose index is 
+     * given by two arguments. 
+     */
+    JUMP(2),
+    /** Supported opcode that loads or stores a local variable. */
+    VAR(1),
+    /**
+     * Supported opcode that pushes a constant of <code>constants</code> json
+     * array, whose index is given by one argument.
+     */
+    CONSTANT(1),
+    /**
+     * Supported opcode that pushes a constant of <code>constants</code> json
+     * array, whose index is given by two arguments.
+     */
+    WIDE_CONSTANT(2),
+    /**
+     * Supported opcode that accesses a field of <code>constants</code> json
+     * array, whose index is given by two arguments.
+     */
+    FIELD(2),
+    /**
+     * Supported opcode that invokes a method of <code>constants</code> json
+     * array, whose index is given by two arguments.
+     */
+    METHOD(2),
+    /**
+     * Supported opcode that invokes an interface method of
+     * <code>constants</code> json array, whose index is given by two
+     * arguments followed by the number of argument slots and a zero.
+     */
+    INTERFACE_METHOD(4),
+    /**
+     * Supported opcode that creates or checks an object of a class of
+     * <code>constants</code> json array, whose index is given by two
+     * arguments.
+     */
+    TYPE(2),
+    /** Opcode that is not supported. */
+    UNSUPPORTED(0);
+
+    private final int operands;
+
+    private OpcodeKind(int operands) {
+        this.operands = operands;
+    }
+
+    /**
+     * Gets the number of operands that follow an opcode of this kind in 
+     * <code>bytecode</code> json array.
+     * 
+     * @return the number of operands
+     */
+    public int getOperands() {
+        return operands;
+    }
+
+    /**
+     * Checks if an opcode of this kind refers to an element of
+     * <code>constants</code> json array.
+     *
+     * @return <code>true</code> if this kind uses constants
+     */
+    public boolean usesConstant() {
+        return this != NO_ARG
+               && this != UNARY
+               && this != JUMP
+               && this != VAR
+               && this != UNSUPPORTED;
+    }
+}
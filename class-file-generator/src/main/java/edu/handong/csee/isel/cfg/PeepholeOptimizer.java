@@ -0,0 +1,585 @@
+package edu.handong.csee.isel.cfg;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Peephole optimizer of bytecode that only uses supported opcodes.
+ * <br></br>
+ * The bytecode is decoded into a linked list of instructions whose jumps
+ * refer to their target instructions, and the following rewrites are
+ * repeated until none of them applies.
+ * <ul>
+ * <li>Jump threading: a jump to a <code>GOTO</code> jumps to the target of
+ * the <code>GOTO</code>, a <code>GOTO</code> to a return becomes the return,
+ * and a jump to the next instruction is removed or becomes a
+ * <code>POP</code>.</li>
+ * <li>Constant folding: arithmetic of two constants becomes a constant if
+ * the result has a constant opcode, and a conditional jump on a constant
+ * becomes a <code>GOTO</code> or is removed.</li>
+ * <li>Store and load elimination: a store directly followed by a load of
+ * the same local variable becomes a <code>DUP</code> followed by the store,
+ * and both are removed if the local variable is not loaded elsewhere. A
+ * store to a local variable that is never loaded becomes a
+ * <code>POP</code>.</li>
+ * <li>Dead code removal: <code>NOP</code>s, pushes followed by a
+ * <code>POP</code>, and instructions that are not reachable from the first
+ * instruction are removed.</li>
+ * </ul>
+ * Rewrites never span a jump target except at their first instruction, so
+ * the optimized bytecode behaves the same as the given bytecode, including
+ * the exceptions it throws. Instructions that refer to constants are kept
+ * as they are, since loading a constant, accessing a field or invoking a
+ * method may have side effects.
+ */
+class PeepholeOptimizer {
+    private static final int MAX_JUMP_HOPS = 16;
+    private static final int STORE_TO_LOAD = Opcodes.ISTORE - Opcodes.ILOAD;
+
+    private Instruction head;
+    private int[] loads;
+
+    private PeepholeOptimizer(int[] code) {
+        Instruction[] starts;
+        Instruction last;
+
+        starts = new Instruction[code.length];
+        head = new Instruction(-1);
+        last = head;
+
+        for (int i = 0; i < code.length; i++) {
+            Instruction instruction;
+            OpcodeKind kind;
+
+            instruction = new Instruction(code[i]);
+            kind = SupportedOpcodes.kindOf(code[i]);
+            starts[i] = instruction;
+
+            if (kind == OpcodeKind.UNARY || kind == OpcodeKind.VAR) {
+                instruction.operand = code[i + 1];
+            } else if (kind == OpcodeKind.JUMP) {
+                instruction.operand = (code[i + 1] << 8) + code[i + 2];
+            } else if (kind.usesConstant()) {
+                instruction.operands = Arrays.copyOfRange(
+                        code, i + 1, i + 1 + kind.getOperands());
+            }
+
+            last.link(instruction);
+
+            last = instruction;
+            i += kind.getOperands();
+        }
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            if (isJump(insn.opcode)) {
+                insn.target = starts[insn.operand];
+            }
+        }
+    }
+
+    /**
+     * Optimizes <code>code</code>.
+     *
+     * @param code bytecode that has been validated by
+     *      {@link BytecodeValidator}
+     * @return the optimized bytecode, which is never longer than
+     *      <code>code</code>
+     */
+    static int[] optimize(int[] code) {
+        PeepholeOptimizer optimizer;
+        boolean changed;
+
+        optimizer = new PeepholeOptimizer(code);
+
+        do {
+            changed = optimizer.threadJumps();
+            changed |= optimizer.simplify();
+            changed |= optimizer.removeUnreachable();
+        } while (changed);
+
+        return optimizer.encode();
+    }
+
+    private boolean threadJumps() {
+        boolean changed;
+
+        changed = false;
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            Instruction target;
+
+            if (!isJump(insn.opcode)) {
+                continue;
+            }
+
+            target = insn.target.resolve();
+
+            for (int hops = 0;
+                    hops < MAX_JUMP_HOPS
+                        && target.opcode == Opcodes.GOTO
+                        && target.target.resolve() != target;
+                    hops++) {
+                target = target.target.resolve();
+            }
+
+            if (insn.target != target) {
+                insn.target = target;
+                changed = true;
+            }
+
+            if (insn.opcode == Opcodes.GOTO && isReturn(target.opcode)) {
+                insn.opcode = target.opcode;
+                insn.target = null;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Applies the rewrites of neighboring instructions from the first
+     * instruction to the last.
+     *
+     * @return <code>true</code> if any instruction is rewritten
+     */
+    private boolean simplify() {
+        Instruction insn;
+        boolean changed;
+
+        countReferences();
+
+        changed = false;
+        insn = head.next;
+
+        while (insn != null) {
+            if (rewrite(insn)) {
+                changed = true;
+                insn = insn.prev != head && insn.prev.prev != head
+                               ? insn.prev.prev
+                               : head.next;
+
+                if (insn != null && insn.removed) {
+                    insn = head.next;
+                }
+            } else {
+                insn = insn.next;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Rewrites the instructions that start at <code>insn</code> if a rewrite
+     * applies to them.
+     *
+     * @param insn first instruction of a rewrite
+     * @return <code>true</code> if the instructions are rewritten
+     */
+    private boolean rewrite(Instruction insn) {
+        Instruction second;
+        Instruction third;
+
+        second = insn.next;
+        third = second != null ? second.next : null;
+
+        if (second == null) {
+            return false;
+        }
+
+        if (insn.opcode == Opcodes.NOP) {
+            remove(insn, second);
+
+            return true;
+        }
+
+        if (isJump(insn.opcode) && insn.target.resolve() == second) {
+            second.references--;
+
+            if (insn.opcode == Opcodes.GOTO) {
+                remove(insn, second);
+            } else {
+                insn.opcode = Opcodes.POP;
+                insn.target = null;
+            }
+
+            return true;
+        }
+
+        if (isStore(insn.opcode) && loads[insn.operand] == 0) {
+            insn.opcode = Opcodes.POP;
+
+            return true;
+        }
+
+        if (second.references > 0) {
+            return false;
+        }
+
+        if (isPush(insn.opcode) && second.opcode == Opcodes.POP
+                && third != null) {
+            if (isLoad(insn.opcode)) {
+                loads[insn.operand]--;
+            }
+
+            remove(insn, third);
+
+            return true;
+        }
+
+        if (isStore(insn.opcode) && second.opcode == insn.opcode - STORE_TO_LOAD
+                && second.operand == insn.operand) {
+            if (loads[insn.operand] == 1 && third != null) {
+                remove(insn, third);
+            } else {
+                second.opcode = insn.opcode;
+                insn.opcode = Opcodes.DUP;
+            }
+
+            loads[insn.operand]--;
+
+            return true;
+        }
+
+        if (isIntConstant(insn.opcode) && isCondition(second.opcode)
+                && third != null) {
+            if (holds(second.opcode, insn.opcode - Opcodes.ICONST_0)) {
+                insn.opcode = Opcodes.GOTO;
+                insn.target = second.target.resolve();
+
+                unlink(second);
+            } else {
+                remove(insn, third);
+            }
+
+            return true;
+        }
+
+        if (third == null || third.references > 0) {
+            return false;
+        }
+
+        return fold(insn, second, third);
+    }
+
+    /**
+     * Folds the arithmetic of two constants into a constant if the result
+     * has a constant opcode.
+     */
+    private boolean fold(Instruction first, Instruction second,
+                         Instruction third) {
+        int folded;
+
+        folded = -1;
+
+        if (isIntConstant(first.opcode) && isIntConstant(second.opcode)) {
+            Integer result;
+
+            result = foldInt(first.opcode - Opcodes.ICONST_0,
+                             second.opcode - Opcodes.ICONST_0,
+                             third.opcode);
+
+            if (result != null && result >= -1 && result <= 5) {
+                folded = Opcodes.ICONST_0 + result;
+            }
+        } else if (isFloatConstant(first.opcode)
+                       && isFloatConstant(second.opcode)) {
+            Float result;
+
+            result = foldFloat(first.opcode - Opcodes.FCONST_0,
+                               second.opcode - Opcodes.FCONST_0,
+                               third.opcode);
+
+            for (int i = 0; result != null && i <= 2; i++) {
+                if (Float.floatToRawIntBits(result)
+                        == Float.floatToRawIntBits(i)) {
+                    folded = Opcodes.FCONST_0 + i;
+                }
+            }
+        }
+
+        if (folded == -1) {
+            return false;
+        }
+
+        first.opcode = folded;
+
+        unlink(second);
+        unlink(third);
+
+        return true;
+    }
+
+    private boolean removeUnreachable() {
+        Deque<Instruction> worklist;
+        boolean changed;
+
+        worklist = new ArrayDeque<>();
+        changed = false;
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            insn.reachable = false;
+
+            if (isJump(insn.opcode)) {
+                insn.target = insn.target.resolve();
+            }
+        }
+
+        if (head.next != null) {
+            worklist.push(head.next);
+        }
+
+        while (!worklist.isEmpty()) {
+            Instruction insn;
+
+            insn = worklist.pop();
+
+            if (insn.reachable) {
+                continue;
+            }
+
+            insn.reachable = true;
+
+            if (isJump(insn.opcode)) {
+                worklist.push(insn.target);
+            }
+
+            if (insn.opcode != Opcodes.GOTO && !isReturn(insn.opcode)
+                    && insn.next != null) {
+                worklist.push(insn.next);
+            }
+        }
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            if (!insn.reachable) {
+                unlink(insn);
+
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private void countReferences() {
+        loads = new int[256];
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            insn.references = 0;
+        }
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            if (isJump(insn.opcode)) {
+                insn.target = insn.target.resolve();
+                insn.target.references++;
+            } else if (isLoad(insn.opcode)) {
+                loads[insn.operand]++;
+            }
+        }
+    }
+
+    /**
+     * Removes the instructions from <code>first</code> to the instruction
+     * before <code>end</code>, and makes jumps to <code>first</code> jump to
+     * <code>end</code>.
+     */
+    private void remove(Instruction first, Instruction end) {
+        end.references += first.references;
+
+        for (Instruction insn = first; insn != end; insn = insn.next) {
+            if (isJump(insn.opcode) && insn != first) {
+                insn.target.resolve().references--;
+            }
+
+            insn.forward = end;
+
+            unlink(insn);
+        }
+    }
+
+    private void unlink(Instruction insn) {
+        insn.removed = true;
+        insn.prev.next = insn.next;
+
+        if (insn.next != null) {
+            insn.next.prev = insn.prev;
+        }
+    }
+
+    private int[] encode() {
+        int[] code;
+        int offset;
+
+        offset = 0;
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            insn.offset = offset;
+            offset += SupportedOpcodes.kindOf(insn.opcode).getOperands() + 1;
+        }
+
+        code = new int[offset];
+        offset = 0;
+
+        for (Instruction insn = head.next; insn != null; insn = insn.next) {
+            code[offset++] = insn.opcode;
+
+            switch (SupportedOpcodes.kindOf(insn.opcode)) {
+            case UNARY:
+            case VAR:
+                code[offset++] = insn.operand;
+                break;
+            case JUMP:
+                code[offset++] = insn.target.resolve().offset >> 8;
+                code[offset++] = insn.target.resolve().offset & 0xFF;
+                break;
+            case NO_ARG:
+            case UNSUPPORTED:
+                break;
+            default:
+                for (int operand : insn.operands) {
+                    code[offset++] = operand;
+                }
+
+                break;
+            }
+        }
+
+        return code;
+    }
+
+    private static Integer foldInt(int x, int y, int opcode) {
+        switch (opcode) {
+        case Opcodes.IADD:
+            return x + y;
+        case Opcodes.ISUB:
+            return x - y;
+        case Opcodes.IMUL:
+            return x * y;
+        case Opcodes.IDIV:
+            return y != 0 ? x / y : null;
+        case Opcodes.IREM:
+            return y != 0 ? x % y : null;
+        default:
+            return null;
+        }
+    }
+
+    private static Float foldFloat(float x, float y, int opcode) {
+        switch (opcode) {
+        case Opcodes.FADD:
+            return x + y;
+        case Opcodes.FSUB:
+            return x - y;
+        case Opcodes.FMUL:
+            return x * y;
+        case Opcodes.FDIV:
+            return x / y;
+        case Opcodes.FREM:
+            return x % y;
+        default:
+            return null;
+        }
+    }
+
+    private static boolean holds(int opcode, int value) {
+        switch (opcode) {
+        case Opcodes.IFEQ:
+            return value == 0;
+        case Opcodes.IFNE:
+            return value != 0;
+        case Opcodes.IFLT:
+            return value < 0;
+        case Opcodes.IFGE:
+            return value >= 0;
+        case Opcodes.IFGT:
+            return value > 0;
+        default:
+            return value <= 0;
+        }
+    }
+
+    private static boolean isJump(int opcode) {
+        return SupportedOpcodes.kindOf(opcode) == OpcodeKind.JUMP;
+    }
+
+    private static boolean isCondition(int opcode) {
+        return opcode >= Opcodes.IFEQ && opcode <= Opcodes.IFLE;
+    }
+
+    private static boolean isReturn(int opcode) {
+        return opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN;
+    }
+
+    private static boolean isIntConstant(int opcode) {
+        return opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5;
+    }
+
+    private static boolean isFloatConstant(int opcode) {
+        return opcode >= Opcodes.FCONST_0 && opcode <= Opcodes.FCONST_2;
+    }
+
+    private static boolean isLoad(int opcode) {
+        return opcode == Opcodes.ILOAD
+               || opcode == Opcodes.FLOAD
+               || opcode == Opcodes.ALOAD;
+    }
+
+    private static boolean isStore(int opcode) {
+        return opcode == Opcodes.ISTORE
+               || opcode == Opcodes.FSTORE
+               || opcode == Opcodes.ASTORE;
+    }
+
+    private static boolean isPush(int opcode) {
+        return isIntConstant(opcode)
+               || isFloatConstant(opcode)
+               || isLoad(opcode)
+               || opcode == Opcodes.DUP;
+    }
+
+    /**
+     * Instruction of the bytecode being optimized.
+     */
+    private static class Instruction {
+        private Instruction forward;
+        private Instruction next;
+        private int offset;
+        private int opcode;
+        private int operand;
+        private int[] operands;
+        private Instruction prev;
+        private boolean reachable;
+        private int references;
+        private boolean removed;
+        private Instruction target;
+
+        private Instruction(int opcode) {
+            this.opcode = opcode;
+        }
+
+        private void link(Instruction insn) {
+            next = insn;
+            insn.prev = this;
+        }
+
+        /**
+         * Finds the instruction that replaces this instruction, which is
+         * this instruction itself unless it has been removed.
+         */
+        private Instruction resolve() {
+            Instruction insn;
+
+            insn = this;
+
+            while (insn.forward != null) {
+                insn = insn.forward;
+            }
+
+            return insn;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package edu.handong.csee.isel.cfg;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Watcher of a source directory that regenerates class files of the source
+ * files as they change, so that an edit of a json file is reflected in its
+ * class file without generating the whole directory again.
+ * <br></br>
+ * The watcher generates the whole directory once, and then waits for events
+ * of the directories under it. Events that arrive within a short quiet
+ * period of each other are coalesced into one run of the pipeline over the
+ * created, modified and deleted source files, and the manifest of the
+ * incremental generation deletes the class files of deleted source files.
+ * If events are lost or a directory is deleted, the whole directory is
+ * generated again, which only regenerates source files that changed.
+ *
+ * @see Manifest
+ */
+class SourceWatcher {
+    private static final Logger LOGGER
+            = Logger.getLogger(SourceWatcher.class.getName());
+    private static final long QUIET_MILLIS = 30;
+
+    private Map<WatchKey, Path> dirs;
+    private Path dstDir;
+    private GenerationPipeline pipeline;
+    private Path srcDir;
+    private WatchService watcher;
+
+    /**
+     * Constructs a <code>SourceWatcher</code> object.
+     *
+     * @param pipeline pipeline that generates class files to
+     *      <code>dstDir</code>
+     * @param srcDir root source directory to be watched
+     * @param dstDir output directory of <code>pipeline</code>, which keeps
+     *      the manifest
+     */
+    SourceWatcher(GenerationPipeline pipeline, Path srcDir, Path dstDir) {
+        this.pipeline = pipeline;
+        this.srcDir = srcDir;
+        this.dstDir = dstDir;
+        dirs = new HashMap<>();
+    }
+
+    /**
+     * Generates the source directory and regenerates its changed source
+     * files until the current thread is interrupted.
+     *
+     * @throws IOException if an I/O error occurs while watching the source
+     *      directory or accessing the manifest
+     */
+    void run() throws IOException {
+        try (WatchService watcher = srcDir.getFileSystem()
+                                          .newWatchService()) {
+            this.watcher = watcher;
+
+            register(srcDir);
+            generateAll();
+            LOGGER.info("Watching " + srcDir + " for changes.");
+
+            while (true) {
+                Set<Path> changed;
+                WatchKey key;
+                boolean rescan;
+                long started;
+
+                key = watcher.take();
+                changed = new LinkedHashSet<>();
+                rescan = false;
+
+                do {
+                    rescan |= collect(key, changed);
+                } while ((key = watcher.poll(QUIET_MILLIS,
+                                             TimeUnit.MILLISECONDS)) != null);
+
+                started = System.nanoTime();
+
+                if (rescan) {
+                    generateAll();
+                } else if (!changed.isEmpty()) {
+                    generate(changed);
+                } else {
+                    continue;
+                }
+
+                LOGGER.info(String.format(
+                        "Regenerated changes in %.1f ms.",
+                        (System.nanoTime() - started) / 1e6));
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.info("Stopped watching " + srcDir + ".");
+        }
+    }
+
+    /**
+     * Collects the source files of the events of <code>key</code> to
+     * <code>changed</code>, and watches created directories.
+     *
+     * @param key key of a watched directory that has events
+     * @param changed created, modified or deleted source files and created
+     *      directories
+     * @return <code>true</code> if the whole source directory has to be
+     *      generated again
+     * @throws IOException if an I/O error occurs while watching a created
+     *      directory
+     */
+    private boolean collect(WatchKey key, Set<Path> changed)
+            throws IOException {
+        Path dir;
+        boolean rescan;
+
+        dir = dirs.get(key);
+        rescan = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Path path;
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan = true;
+
+                continue;
+            }
+
+            if (dir == null) {
+                continue;
+            }
+
+            path = dir.resolve((Path) event.context());
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                register(path);
+                changed.add(path);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                               && dirs.containsValue(path)) {
+                rescan = true;
+            } else if (isSource(path)) {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            dirs.remove(key);
+        }
+
+        return rescan;
+    }
+
+    /**
+     * Watches <code>dir</code> and the directories under it.
+     *
+     * @param dir directory to be watched
+     * @throws IOException if an I/O error occurs while walking
+     *      <code>dir</code>
+     */
+    private void register(Path dir) throws IOException {
+        Files.walkFileTree(
+                dir,
+                new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(
+                                Path subdir, BasicFileAttributes attr)
+                                throws IOException {
+                            dirs.put(subdir.register(
+                                            watcher,
+                                            StandardWatchEventKinds
+                                                    .ENTRY_CREATE,
+                                            StandardWatchEventKinds
+                                                    .ENTRY_MODIFY,
+                                            StandardWatchEventKinds
+                                                    .ENTRY_DELETE),
+                                     subdir);
+
+                            return FileVisitResult.CONTINUE;
+                        }});
+    }
+
+    private void generateAll() throws IOException {
+        pipeline.setManifest(Manifest.load(dstDir, pipeline.options()));
+        pipeline.run(srcDir);
+    }
+
+    private void generate(Set<Path> changed) throws IOException {
+        StringBuilder list;
+
+        list = new StringBuilder();
+
+        for (Path path : changed) {
+            list.append(path).append('\0');
+        }
+
+        pipeline.setManifest(Manifest.load(dstDir, pipeline.options()));
+        pipeline.runFromList(new StringReader(list.toString()));
+    }
+
+    private static boolean isSource(Path path) {
+        String name;
+
+        name = path.getFileName().toString();
+
+        return name.endsWith(".json")
+               || name.endsWith(".jsonl")
+               || name.endsWith(CompactFile.EXTENSION);
+    }
+}
@@ -1,12 +1,28 @@
 package edu.handong.csee.isel.cfg;
 
+import java.util.Arrays;
+
 import org.objectweb.asm.Opcodes;
 
 /**
- * The supported Java Virtual Machine (JVM) opcodes. The supported JVM opcodes 
- * only include opcodes that does not use JVM constant pool.  
+ * The supported Java Virtual Machine (JVM) opcodes. Opcodes that use JVM
+ * constant pool are supported only if they load a constant, access a field,
+ * invoke a method, or create or check an object of a class, whose operands
+ * refer to symbolic constants of <code>constants</code> json array instead of
+ * the constant pool.
+ * <br></br>
+ * Opcodes are classified by a table of all opcodes, so that the kind of an 
+ * opcode is found by a single lookup.
  */
 public class SupportedOpcodes {
+    /**
+     * Opcodes of the wide forms of <code>ldc</code>, which
+     * <code>Opcodes</code> does not define since ASM chooses the form of
+     * <code>ldc</code> by itself.
+     */
+    static final int LDC_W = 19;
+    static final int LDC2_W = 20;
+
     private static int[] noArgOpcodes 
             = { Opcodes.NOP, Opcodes.ICONST_M1, Opcodes.ICONST_0, 
                 Opcodes.ICONST_1, Opcodes.ICONST_2, Opcodes.ICONST_3, 
@@ -25,8 +41,82 @@ public class SupportedOpcodes {
                 Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE, 
                 Opcodes.GOTO };
     private static int[] varOpcodes 
-            = { Opcodes.ILOAD, Opcodes.FALOAD, Opcodes.ALOAD, 
+            = { Opcodes.ILOAD, Opcodes.FLOAD, Opcodes.ALOAD, 
                 Opcodes.ISTORE, Opcodes.FSTORE, Opcodes.ASTORE };
+    private static int[] constantOpcodes = { Opcodes.LDC };
+    private static int[] wideConstantOpcodes
+            = { LDC_W, LDC2_W };
+    private static int[] fieldOpcodes
+            = { Opcodes.GETSTATIC, Opcodes.PUTSTATIC, Opcodes.GETFIELD,
+                Opcodes.PUTFIELD };
+    private static int[] methodOpcodes
+            = { Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL,
+                Opcodes.INVOKESTATIC };
+    private static int[] interfaceMethodOpcodes = { Opcodes.INVOKEINTERFACE };
+    private static int[] typeOpcodes
+            = { Opcodes.NEW, Opcodes.ANEWARRAY, Opcodes.CHECKCAST,
+                Opcodes.INSTANCEOF };
+    private static OpcodeKind[] kinds = new OpcodeKind[256];
+
+    static {
+        Arrays.fill(kinds, OpcodeKind.UNSUPPORTED);
+        
+        for (int opcode : noArgOpcodes) {
+            kinds[opcode] = OpcodeKind.NO_ARG;
+        }
+
+        for (int opcode : unaryOpcodes) {
+            kinds[opcode] = OpcodeKind.UNARY;
+        }
+
+        for (int opcode : jumpOpcodes) {
+            kinds[opcode] = OpcodeKind.JUMP;
+        }
+
+        for (int opcode : varOpcodes) {
+            kinds[opcode] = OpcodeKind.VAR;
+        }
+
+        for (int opcode : constantOpcodes) {
+            kinds[opcode] = OpcodeKind.CONSTANT;
+        }
+
+        for (int opcode : wideConstantOpcodes) {
+            kinds[opcode] = OpcodeKind.WIDE_CONSTANT;
+        }
+
+        for (int opcode : fieldOpcodes) {
+            kinds[opcode] = OpcodeKind.FIELD;
+        }
+
+        for (int opcode : methodOpcodes) {
+            kinds[opcode] = OpcodeKind.METHOD;
+        }
+
+        for (int opcode : interfaceMethodOpcodes) {
+            kinds[opcode] = OpcodeKind.INTERFACE_METHOD;
+        }
+
+        for (int opcode : typeOpcodes) {
+            kinds[opcode] = OpcodeKind.TYPE;
+        }
+    }
+
+    /**
+     * Classifies <code>opcode</code> by looking up a table of all opcodes.
+     * 
+     * @param opcode opcode to be classified
+     * @return the kind of <code>opcode</code>, which is 
+     *      {@link OpcodeKind#UNSUPPORTED} if <code>opcode</code> is not a 
+     *      supported opcode or is out of the range of opcodes
+     */
+    public static OpcodeKind kindOf(int opcode) {
+        if (opcode < 0 || opcode >= kinds.length) {
+            return OpcodeKind.UNSUPPORTED;
+        }
+
+        return kinds[opcode];
+    }
     
     /**
      * Checks if <code>opcode</code> is a supported no argument opcode.
@@ -39,13 +129,7 @@ public class SupportedOpcodes {
      * @see https://github.com/ISEL-HGU/class-file-generator
      */
     public static boolean isSupportedNoArgOpcode(int opcode) {
-        for (int noArgOpcode : noArgOpcodes) {
-            if (opcode == noArgOpcode) {
-                return true;
-            }
-        }
-
-        return false;
+        return kindOf(opcode) == OpcodeKind.NO_ARG;
     }
 
     /**
@@ -60,13 +144,7 @@ public class SupportedOpcodes {
      * @see https://github.com/ISEL-HGU/class-file-generator
      */
     public static boolean isSupportedUnaryOpcode(int opcode) {
-        for (int unaryOpcode : unaryOpcodes) {
-            if (opcode == unaryOpcode) {
-                return true;
-            }
-        }
-
-        return false;
+        return kindOf(opcode) == OpcodeKind.UNARY;
     }
 
     /**
@@ -80,13 +158,7 @@ public class SupportedOpcodes {
      * @see https://github.com/ISEL-HGU/class-file-generator
      */
     public static boolean isSupportedJumpOpcode(int opcode) {
-        for (int jumpOpcode : jumpOpcodes) {
-            if (opcode == jumpOpcode) {
-                return true;
-            }
-        }
-
-        return false;
+        return kindOf(opcode) == OpcodeKind.JUMP;
     }
     
     /**
@@ -100,12 +172,37 @@ public class SupportedOpcodes {
      * @see https://github.com/ISEL-HGU/class-file-generator
      */
     public static boolean isSupportedVarOpcode(int opcode) {
-        for (int varOpcode : varOpcodes) {
-            if (opcode == varOpcode) {
-                return true;
-            }
+        return kindOf(opcode) == OpcodeKind.VAR;
+    }
+
+    /**
+     * Checks if <code>opcode</code> is a supported opcode that refers to an
+     * element of <code>constants</code> json array.
+     * <br></br>
+     * To see the full list of supported constant opcodes, check README of the
+     * github repository.
+     * @param opcode opcode to be checked
+     * @return <code>true</code> if <code>opcode</code> is a supported constant
+     *      opcode, <code>false</code> otherwise
+     * @see https://github.com/ISEL-HGU/class-file-generator
+     */
+    public static boolean isSupportedConstantOpcode(int opcode) {
+        return kindOf(opcode).usesConstant();
+    }
+
+    /**
+     * Reads the index of the constant that the instruction at
+     * <code>index</code> refers to.
+     *
+     * @param code bytecode in the format of <code>bytecode</code> json array
+     * @param index index of an instruction whose opcode uses a constant
+     * @return the index of the constant in <code>constants</code> json array
+     */
+    static int constantIndex(int[] code, int index) {
+        if (kindOf(code[index]) == OpcodeKind.CONSTANT) {
+            return code[index + 1];
         }
 
-        return false;
+        return (code[index + 1] << 8) + code[index + 2];
     }
 }
@@ -0,0 +1,499 @@
+package edu.handong.csee.isel.cfg;
+
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Symbolic constant of <code>constants</code> json array, which instructions
+ * refer to instead of an entry of the constant pool.
+ * <br></br>
+ * A symbol is either a value that <code>ldc</code> pushes, which is an
+ * <code>int</code>, a <code>float</code>, a <code>long</code>, a
+ * <code>double</code>, a string or a class, or a member, which is the triple
+ * of the internal name of its owner class, its name and its descriptor.
+ * Symbols are immutable and equal if their values are equal. The names and
+ * the descriptor of a symbol are checked and parsed once when the symbol is
+ * created, so that a symbol shared by {@link SymbolCache} is never parsed
+ * again for the classes that refer to it.
+ *
+ * @see SymbolCache
+ */
+public final class Symbol {
+
+    /**
+     * Kinds of symbols, whose tags are the tags of the constant pool entries
+     * of the symbols in the Java Virtual Machine Specification (JVMS).
+     */
+    public enum Kind {
+        INT(3),
+        FLOAT(4),
+        LONG(5),
+        DOUBLE(6),
+        CLASS(7),
+        STRING(8),
+        FIELD(9),
+        METHOD(10),
+        INTERFACE_METHOD(11);
+
+        private final int tag;
+
+        private Kind(int tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * Gets the tag of the constant pool entry of this kind.
+         *
+         * @return the tag
+         */
+        public int getTag() {
+            return tag;
+        }
+
+        /**
+         * Finds the kind whose tag is <code>tag</code>.
+         *
+         * @param tag tag of a constant pool entry
+         * @return the kind, or <code>null</code> if no kind has
+         *      <code>tag</code>
+         */
+        static Kind ofTag(int tag) {
+            for (Kind kind : values()) {
+                if (kind.tag == tag) {
+                    return kind;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private int argumentSize;
+    private Type[] argumentTypes;
+    private String desc;
+    private int hash;
+    private Kind kind;
+    private String name;
+    private String owner;
+    private Type type;
+    private Object value;
+    private boolean wellFormed;
+
+    /**
+     * Constructs a <code>Symbol</code> object that is not parsed yet.
+     *
+     * @param kind kind of the symbol
+     * @param value value of a symbol that is neither a class nor a member
+     * @param owner internal name of the owner class of a member
+     * @param name name of a member, or internal name of a class
+     * @param desc descriptor of a member
+     */
+    Symbol(Kind kind, Object value, String owner, String name, String desc) {
+        this.kind = kind;
+        this.value = value;
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+        hash = Objects.hash(kind, value, owner, name, desc);
+    }
+
+    /**
+     * Creates the symbol of a value that <code>ldc</code> pushes.
+     *
+     * @param value an <code>Integer</code>, a <code>Float</code>, a
+     *      <code>Long</code>, a <code>Double</code> or a <code>String</code>
+     * @return the symbol of <code>value</code>
+     * @throws IllegalArgumentException if <code>value</code> is none of the
+     *      types above
+     */
+    public static Symbol of(Object value) {
+        return new Symbol(kindOf(value), value, null, null, null).parse();
+    }
+
+    /**
+     * Creates the symbol of a class.
+     *
+     * @param name internal name of the class, or descriptor of an array
+     *      class
+     * @return the symbol of the class
+     */
+    public static Symbol ofClass(String name) {
+        return new Symbol(Kind.CLASS, null, null, name, null).parse();
+    }
+
+    /**
+     * Creates the symbol of a field.
+     *
+     * @param owner internal name of the class that declares the field
+     * @param name name of the field
+     * @param desc descriptor of the field
+     * @return the symbol of the field
+     */
+    public static Symbol ofField(String owner, String name, String desc) {
+        return new Symbol(Kind.FIELD, null, owner, name, desc).parse();
+    }
+
+    /**
+     * Creates the symbol of a method.
+     *
+     * @param owner internal name of the class that declares the method
+     * @param name name of the method
+     * @param desc descriptor of the method
+     * @param isInterface <code>true</code> if <code>owner</code> is an
+     *      interface
+     * @return the symbol of the method
+     */
+    public static Symbol ofMethod(String owner, String name, String desc,
+                                  boolean isInterface) {
+        return new Symbol(isInterface ? Kind.INTERFACE_METHOD : Kind.METHOD,
+                          null,
+                          owner,
+                          name,
+                          desc).parse();
+    }
+
+    /**
+     * Finds the kind of the symbol of <code>value</code>.
+     *
+     * @param value value that <code>ldc</code> pushes
+     * @return the kind of the symbol
+     * @throws IllegalArgumentException if <code>ldc</code> cannot push
+     *      <code>value</code> as a symbol
+     */
+    static Kind kindOf(Object value) {
+        if (value instanceof Integer) {
+            return Kind.INT;
+        } else if (value instanceof Float) {
+            return Kind.FLOAT;
+        } else if (value instanceof Long) {
+            return Kind.LONG;
+        } else if (value instanceof Double) {
+            return Kind.DOUBLE;
+        } else if (value instanceof String) {
+            return Kind.STRING;
+        }
+
+        throw new IllegalArgumentException("The value " + value
+                                           + " cannot be a symbol.");
+    }
+
+    /**
+     * Finds the kind of the symbol of a member.
+     *
+     * @param desc descriptor of the member
+     * @param isInterface <code>true</code> if the owner of a method is an
+     *      interface, which is ignored for a field
+     * @return the kind of the symbol
+     */
+    static Kind memberKind(String desc, boolean isInterface) {
+        if (!desc.startsWith("(")) {
+            return Kind.FIELD;
+        }
+
+        return isInterface ? Kind.INTERFACE_METHOD : Kind.METHOD;
+    }
+
+    /**
+     * Creates the parsed copy of this symbol whose strings are replaced by
+     * <code>interner</code>.
+     *
+     * @param interner function that returns the shared instance of a string
+     * @return the parsed copy
+     */
+    Symbol intern(UnaryOperator<String> interner) {
+        return new Symbol(kind,
+                          value instanceof String
+                                  ? interner.apply((String) value)
+                                  : value,
+                          owner != null ? interner.apply(owner) : null,
+                          name != null ? interner.apply(name) : null,
+                          desc != null ? interner.apply(desc) : null).parse();
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the value that <code>ldc</code> pushes for this symbol in the
+     * format of <code>MethodVisitor.visitLdcInsn</code>.
+     *
+     * @return the value, which is a <code>Type</code> for a class, or
+     *      <code>null</code> for a member
+     */
+    public Object getValue() {
+        return kind == Kind.CLASS ? type : value;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the name of this symbol.
+     *
+     * @return the name of a member, the internal name of a class, or
+     *      <code>null</code> for a value
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    /**
+     * Gets the type of this symbol.
+     *
+     * @return the type of a class or a field, the return type of a method,
+     *      or <code>null</code> if this symbol is a value or not well formed
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the argument types of the method of this symbol.
+     *
+     * @return the argument types, or <code>null</code> if this symbol is not
+     *      a well formed method
+     */
+    Type[] getArgumentTypes() {
+        return argumentTypes;
+    }
+
+    /**
+     * Gets the number of local variable slots of the arguments of the method
+     * of this symbol, without the receiver.
+     *
+     * @return the number of slots
+     */
+    int getArgumentSize() {
+        return argumentSize;
+    }
+
+    /**
+     * Checks if the names and the descriptor of this symbol follow the JVMS.
+     *
+     * @return <code>true</code> if this symbol is well formed
+     */
+    boolean isWellFormed() {
+        return wellFormed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Symbol symbol;
+
+        if (!(obj instanceof Symbol)) {
+            return false;
+        }
+
+        symbol = (Symbol) obj;
+
+        return hash == symbol.hash
+               && kind == symbol.kind
+               && Objects.equals(value, symbol.value)
+               && Objects.equals(owner, symbol.owner)
+               && Objects.equals(name, symbol.name)
+               && Objects.equals(desc, symbol.desc);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case CLASS:
+            return "class " + name;
+        case STRING:
+            return "string \"" + value + "\"";
+        case FIELD:
+        case METHOD:
+        case INTERFACE_METHOD:
+            return owner + "." + name + ":" + desc;
+        default:
+            return kind.name().toLowerCase() + " " + value;
+        }
+    }
+
+    /**
+     * Checks the names and the descriptor of this symbol, and parses the
+     * types of a well formed symbol.
+     *
+     * @return this symbol
+     */
+    private Symbol parse() {
+        switch (kind) {
+        case CLASS:
+            wellFormed = isClassName(name);
+            break;
+        case FIELD:
+            wellFormed = isClassName(owner)
+                         && isMemberName(name, false)
+                         && fieldEnd(desc, 0) == desc.length();
+            break;
+        case METHOD:
+        case INTERFACE_METHOD:
+            wellFormed = isClassName(owner)
+                         && isMemberName(name, true)
+                         && isMethodDescriptor(desc);
+            break;
+        default:
+            wellFormed = value != null;
+        }
+
+        if (!wellFormed) {
+            return this;
+        }
+
+        if (kind == Kind.CLASS) {
+            type = Type.getObjectType(name);
+        } else if (kind == Kind.FIELD) {
+            type = Type.getType(desc);
+        } else if (kind == Kind.METHOD || kind == Kind.INTERFACE_METHOD) {
+            type = Type.getReturnType(desc);
+            argumentTypes = Type.getArgumentTypes(desc);
+
+            for (Type argumentType : argumentTypes) {
+                argumentSize += argumentType.getSize();
+            }
+        }
+
+        return this;
+    }
+
+    private static boolean isClassName(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+
+        if (name.charAt(0) == '[') {
+            return fieldEnd(name, 0) == name.length();
+        }
+
+        return name.indexOf('.') == -1
+               && name.indexOf(';') == -1
+               && name.indexOf('[') == -1
+               && !name.startsWith("/")
+               && !name.endsWith("/")
+               && !name.contains("//");
+    }
+
+    private static boolean isMemberName(String name, boolean method) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+
+        if (method && (name.equals("<init>") || name.equals("<clinit>"))) {
+            return true;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            switch (name.charAt(i)) {
+            case '.':
+            case ';':
+            case '[':
+            case '/':
+                return false;
+            case '<':
+            case '>':
+                if (method) {
+                    return false;
+                }
+
+                break;
+            default:
+                break;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if <code>desc</code> is a method descriptor of the JVMS.
+     *
+     * @param desc descriptor to be checked
+     * @return <code>true</code> if <code>desc</code> is a method descriptor
+     */
+    static boolean isMethodDescriptor(String desc) {
+        int i;
+
+        if (desc == null || !desc.startsWith("(")) {
+            return false;
+        }
+
+        i = 1;
+
+        while (i < desc.length() && desc.charAt(i) != ')') {
+            i = fieldEnd(desc, i);
+
+            if (i == -1) {
+                return false;
+            }
+        }
+
+        if (++i >= desc.length()) {
+            return false;
+        }
+
+        return desc.charAt(i) == 'V' ? i + 1 == desc.length()
+                                     : fieldEnd(desc, i) == desc.length();
+    }
+
+    /**
+     * Finds the end of the field descriptor that starts at
+     * <code>start</code> of <code>desc</code>.
+     *
+     * @return the index after the field descriptor, or <code>-1</code> if
+     *      there is no field descriptor at <code>start</code>
+     */
+    private static int fieldEnd(String desc, int start) {
+        int end;
+        int i;
+
+        if (desc == null) {
+            return -1;
+        }
+
+        i = start;
+
+        while (i < desc.length() && desc.charAt(i) == '[') {
+            i++;
+        }
+
+        if (i >= desc.length() || i - start > 255) {
+            return -1;
+        }
+
+        switch (desc.charAt(i)) {
+        case 'B':
+        case 'C':
+        case 'D':
+        case 'F':
+        case 'I':
+        case 'J':
+        case 'S':
+        case 'Z':
+            return i + 1;
+        case 'L':
+            end = desc.indexOf(';', i);
+
+            if (end == -1 || desc.charAt(i + 1) == '['
+                    || !isClassName(desc.substring(i + 1, end))) {
+                return -1;
+            }
+
+            return end + 1;
+        default:
+            return -1;
+        }
+    }
+}
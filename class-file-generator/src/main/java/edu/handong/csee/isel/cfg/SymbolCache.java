@@ -0,0 +1,155 @@
+package edu.handong.csee.isel.cfg;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent cache of the symbols of constants, which is shared by the
+ * readers of a run so that the strings, the descriptors and the members
+ * referred to by many classes are created and parsed once.
+ * <br></br>
+ * A symbol is looked up by a probe that is not parsed. Only a symbol that is
+ * not cached yet is parsed, and its strings are interned as well, so that
+ * symbols of the same owner class or descriptor share their strings. The
+ * cache keeps a bounded number of symbols and strings. Once it is full,
+ * symbols that are not cached are parsed for each use instead of being
+ * kept, so that a run over many distinct constants does not hold them all.
+ *
+ * @see Symbol
+ */
+class SymbolCache {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private int capacity;
+    private LongAdder hits;
+    private Map<String, String> strings;
+    private Map<Symbol, Symbol> symbols;
+
+    /**
+     * Constructs a <code>SymbolCache</code> object that keeps at most
+     * {@link #DEFAULT_CAPACITY} symbols.
+     */
+    SymbolCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a <code>SymbolCache</code> object that keeps at most
+     * <code>capacity</code> symbols and as many strings.
+     *
+     * @param capacity maximum number of cached symbols
+     */
+    SymbolCache(int capacity) {
+        this.capacity = capacity;
+        hits = new LongAdder();
+        strings = new ConcurrentHashMap<>();
+        symbols = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Interns the symbol of a value that <code>ldc</code> pushes.
+     *
+     * @param value an <code>Integer</code>, a <code>Float</code>, a
+     *      <code>Long</code>, a <code>Double</code> or a <code>String</code>
+     * @return the shared symbol of <code>value</code>
+     * @throws IllegalArgumentException if <code>value</code> is none of the
+     *      types above
+     */
+    Symbol internValue(Object value) {
+        return intern(new Symbol(Symbol.kindOf(value),
+                                 value,
+                                 null,
+                                 null,
+                                 null));
+    }
+
+    /**
+     * Interns the symbol of a class.
+     *
+     * @param name internal name of the class, or descriptor of an array
+     *      class
+     * @return the shared symbol of the class
+     */
+    Symbol internClass(String name) {
+        return intern(new Symbol(Symbol.Kind.CLASS, null, null, name, null));
+    }
+
+    /**
+     * Interns the symbol of a field or a method.
+     *
+     * @param owner internal name of the class that declares the member
+     * @param name name of the member
+     * @param desc descriptor of the member
+     * @param isInterface <code>true</code> if the member is a method of an
+     *      interface
+     * @return the shared symbol of the member
+     */
+    Symbol internMember(String owner, String name, String desc,
+                        boolean isInterface) {
+        return intern(new Symbol(Symbol.memberKind(desc, isInterface),
+                                 null,
+                                 owner,
+                                 name,
+                                 desc));
+    }
+
+    /**
+     * Gets the number of lookups that found a cached symbol.
+     *
+     * @return the number of hits
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of cached symbols.
+     *
+     * @return the number of symbols
+     */
+    int size() {
+        return symbols.size();
+    }
+
+    private Symbol intern(Symbol probe) {
+        Symbol existing;
+        Symbol symbol;
+
+        symbol = symbols.get(probe);
+
+        if (symbol != null) {
+            hits.increment();
+
+            return symbol;
+        }
+
+        if (symbols.size() >= capacity) {
+            return probe.intern(UnaryOperator.identity());
+        }
+
+        symbol = probe.intern(this::intern);
+        existing = symbols.putIfAbsent(symbol, symbol);
+
+        return existing != null ? existing : symbol;
+    }
+
+    private String intern(String string) {
+        String existing;
+
+        existing = strings.get(string);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        if (strings.size() >= capacity) {
+            return string;
+        }
+
+        existing = strings.putIfAbsent(string, string);
+
+        return existing != null ? existing : string;
+    }
+}
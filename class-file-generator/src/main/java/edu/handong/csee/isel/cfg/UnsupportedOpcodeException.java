@@ -10,7 +10,35 @@ package edu.handong.csee.isel.cfg;
  * @see JsonReader
  */
 public class UnsupportedOpcodeException extends Exception {
+    private int offset;
+    private int opcode;
+
     public UnsupportedOpcodeException(String message) {
+        this(message, -1, -1);
+    }
+
+    /**
+     * Constructs an <code>UnsupportedOpcodeException</code> object that
+     * tells where the invalid element of the bytecode is.
+     *
+     * @param message detail message
+     * @param opcode opcode of the invalid instruction, or <code>-1</code> if
+     *      it is not known
+     * @param offset index of the invalid element in the bytecode, or
+     *      <code>-1</code> if it is not known
+     */
+    public UnsupportedOpcodeException(String message, int opcode,
+                                      int offset) {
         super(message);
+        this.opcode = opcode;
+        this.offset = offset;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getOpcode() {
+        return opcode;
     }
 }
@@ -0,0 +1,114 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class BytecodeValidatorTest {
+
+    @Test
+    public void testValidate() {
+        int[][] invalCodes;
+
+        assertDoesNotThrow(() -> BytecodeValidator.validate(
+                new int[] { Opcodes.ILOAD, 1,
+                            Opcodes.IFLE, 0, 9,
+                            Opcodes.ICONST_1,
+                            Opcodes.GOTO, 0, 10,
+                            Opcodes.ICONST_0,
+                            Opcodes.IRETURN }));
+        assertDoesNotThrow(() -> BytecodeValidator.validate(new int[0]));
+
+        invalCodes = new int[][] {
+                { Opcodes.LDC, 1 },
+                { Opcodes.ICONST_0, Opcodes.ISTORE },
+                { Opcodes.ILOAD, 256, Opcodes.IRETURN },
+                { Opcodes.ILOAD, -1, Opcodes.IRETURN },
+                { Opcodes.ICONST_1, Opcodes.NEWARRAY, 3, Opcodes.ARETURN },
+                { Opcodes.GOTO, 0, 100 },
+                { Opcodes.GOTO, 0, 1, Opcodes.RETURN },
+                { Opcodes.ILOAD, 1, Opcodes.IFEQ, 0, 1, Opcodes.RETURN } };
+
+        for (int[] invalCode : invalCodes) {
+            assertThrows(UnsupportedOpcodeException.class,
+                         () -> BytecodeValidator.validate(invalCode),
+                         "Failed to reject the invalid bytecode.");
+        }
+    }
+
+    @Test
+    public void testValidateConstants() {
+        Symbol[] constants;
+        int[][] invalCodes;
+
+        constants = new Symbol[] {
+                Symbol.ofClass("java/lang/StringBuilder"),
+                Symbol.ofMethod("java/lang/StringBuilder",
+                                "<init>",
+                                "()V",
+                                false),
+                Symbol.of(7L),
+                Symbol.ofMethod("java/lang/CharSequence",
+                                "length",
+                                "()I",
+                                true),
+                Symbol.ofField("java/lang/Integer", "MAX_VALUE", "I"),
+                Symbol.ofClass("[I"),
+                Symbol.ofField("java/lang/Integer", "MAX_VALUE", "L[I;") };
+
+        assertDoesNotThrow(() -> BytecodeValidator.validate(
+                new int[] { Opcodes.NEW, 0, 0,
+                            Opcodes.DUP,
+                            Opcodes.INVOKESPECIAL, 0, 1,
+                            Opcodes.INVOKEINTERFACE, 0, 3, 1, 0,
+                            Opcodes.GETSTATIC, 0, 4,
+                            Opcodes.ANEWARRAY, 0, 5,
+                            Opcodes.ARETURN },
+                constants));
+
+        invalCodes = new int[][] {
+                { Opcodes.LDC, 7, Opcodes.ARETURN },
+                { Opcodes.LDC, 4, Opcodes.ARETURN },
+                { Opcodes.LDC, 2, Opcodes.ARETURN },
+                { SupportedOpcodes.LDC2_W, 0, 0, Opcodes.ARETURN },
+                { Opcodes.ALOAD, 0, Opcodes.INVOKEVIRTUAL, 0, 1,
+                  Opcodes.RETURN },
+                { Opcodes.ALOAD, 0, Opcodes.INVOKEVIRTUAL, 0, 3,
+                  Opcodes.RETURN },
+                { Opcodes.ALOAD, 0, Opcodes.INVOKEINTERFACE, 0, 3, 2, 0,
+                  Opcodes.RETURN },
+                { Opcodes.NEW, 0, 5, Opcodes.ARETURN },
+                { Opcodes.GETSTATIC, 0, 6, Opcodes.ARETURN },
+                { Opcodes.INVOKEINTERFACE, 0, 3, 1 } };
+
+        for (int[] invalCode : invalCodes) {
+            assertThrows(UnsupportedOpcodeException.class,
+                         () -> BytecodeValidator.validate(invalCode,
+                                                          constants),
+                         "Failed to reject the invalid bytecode.");
+        }
+    }
+
+    @Test
+    public void testValidateMethodDesc() {
+        assertDoesNotThrow(() -> BytecodeValidator.validate(
+                "([ILjava/lang/String;J)V",
+                new int[] { Opcodes.RETURN },
+                ClassInfo.defaultConstants()));
+
+        for (String invalDesc : new String[] { "abc", "(I", "(I)", "()VV",
+                                               "(V)V", "(Ljava/lang)V",
+                                               null }) {
+            assertThrows(UnsupportedOpcodeException.class,
+                         () -> BytecodeValidator.validate(
+                                 invalDesc,
+                                 new int[] { Opcodes.RETURN },
+                                 ClassInfo.defaultConstants()),
+                         "Failed to reject the method descriptor "
+                             + invalDesc + ".");
+        }
+    }
+}
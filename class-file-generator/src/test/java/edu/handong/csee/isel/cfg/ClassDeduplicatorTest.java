@@ -0,0 +1,112 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+public class ClassDeduplicatorTest {
+    private static final int[] BYTECODE
+            = new int[] { 4, 54, 2, 21, 2, 25, 1, 190, 100, 156, 0, 108, 3, 54,
+                          3, 3, 54, 4, 21, 4, 25, 1, 190, 21, 2, 100, 100, 156,
+                          0, 91, 25, 1, 21, 4, 46, 25, 1, 21, 4, 4, 96, 46, 100,
+                          158, 0, 82, 25, 1, 21, 4, 46, 54, 5, 25, 1, 21, 4, 25,
+                          1, 21, 4, 4, 96, 46, 79, 25, 1, 21, 4, 4, 96, 21, 5,
+                          79, 21, 3, 154, 0, 82, 4, 54, 3, 21, 4, 4, 96, 54, 4,
+                          167, 0, 18, 21, 3, 154, 0, 99, 25, 1, 176, 21, 2, 4,
+                          96, 54, 2, 167, 0, 3, 25, 1, 176 };
+
+    @Test
+    public void testRename() {
+        ClassGenerator generator;
+
+        generator = new ClassGenerator();
+
+        for (boolean fastFrames : new boolean[] { false, true }) {
+            ClassDeduplicator deduplicator;
+            ClassInfo original;
+            ClassInfo duplicate;
+
+            deduplicator = new ClassDeduplicator(1);
+            original = new ClassInfo(55, "gen", "Sort", "sort", "([I)[I",
+                                     BYTECODE);
+            duplicate = new ClassInfo(55, "edu.handong.gen", "LongerSortName",
+                                      "sort", "([I)[I", BYTECODE.clone());
+
+            generator.setFastFrames(fastFrames);
+
+            try {
+                ClassDeduplicator.Template template;
+
+                assertNull(deduplicator.find(duplicate));
+
+                deduplicator.add(original, generator.generate(original));
+
+                template = deduplicator.find(duplicate);
+
+                assertNotNull(template);
+                assertArrayEquals(generator.generate(duplicate),
+                                  template.rename(duplicate.getPackagename(),
+                                                  duplicate.getClassname()));
+                assertNull(deduplicator.find(
+                        new ClassInfo(55, "gen", "Other", "other", "([I)[I",
+                                      BYTECODE)));
+            } catch (UnsupportedOpcodeException e) {
+                fail("Failed to generate the class file.", e);
+            }
+        }
+    }
+
+    @Test
+    public void testSelfReference() {
+        ClassGenerator generator;
+        int[] bytecode;
+
+        generator = new ClassGenerator();
+        bytecode = new int[] { 25, 1, 21, 2, 153, 0, 7, 176 };
+
+        for (boolean fastFrames : new boolean[] { false, true }) {
+            ClassDeduplicator deduplicator;
+            ClassInfo duplicate;
+            ClassInfo original;
+
+            deduplicator = new ClassDeduplicator(2);
+
+            generator.setFastFrames(fastFrames);
+
+            try {
+                ClassDeduplicator.Template template;
+
+                original = new ClassInfo(55, "gen", "Sort", "sort",
+                                         "(Lgen/Sort;I)Lgen/Sort;", bytecode);
+                duplicate = new ClassInfo(55, "gen", "Bar", "sort",
+                                          "(Lgen/Sort;I)Lgen/Sort;", bytecode);
+
+                deduplicator.add(original, generator.generate(original));
+
+                assertNull(deduplicator.find(duplicate),
+                           "A class that refers to itself is renamed.");
+
+                original = new ClassInfo(55, "gen", "Sort", "sort",
+                                         "(Lgen/SortA;I)Lgen/SortA;",
+                                         bytecode);
+                duplicate = new ClassInfo(55, "gen", "Bar", "sort",
+                                          "(Lgen/SortA;I)Lgen/SortA;",
+                                          bytecode);
+
+                deduplicator.add(original, generator.generate(original));
+
+                template = deduplicator.find(duplicate);
+
+                assertNotNull(template);
+                assertArrayEquals(generator.generate(duplicate),
+                                  template.rename(duplicate.getPackagename(),
+                                                  duplicate.getClassname()));
+            } catch (UnsupportedOpcodeException e) {
+                fail("Failed to generate the class file.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class ClassExtractorTest {
+
+    @Test
+    public void testExtract() {
+        ClassGenerator generator;
+
+        generator = new ClassGenerator();
+
+        try (DirectoryStream<Path> validFiles = Files.newDirectoryStream(
+                Path.of("src/test/resources/valid-files"))) {
+            for (Path validFile : validFiles) {
+                byte[] bytes;
+                String content;
+
+                try (InputStream in = Files.newInputStream(validFile)) {
+                    bytes = generator.generate(new JsonReader(in));
+                }
+
+                content = ClassExtractor.toJson(ClassExtractor.extract(bytes));
+
+                assertArrayEquals(bytes,
+                                  generator.generate(new StringReader(content)),
+                                  "Failed to extract " + validFile + ".");
+            }
+
+            try (InputStream in = ClassInfo.class.getResourceAsStream(
+                    "ClassInfo.class")) {
+                byte[] bytes;
+
+                bytes = in.readAllBytes();
+
+                assertThrows(UnsupportedOpcodeException.class,
+                             () -> ClassExtractor.extract(bytes),
+                             "Failed to reject the class file.");
+            }
+        } catch (IOException e) {
+            fail("I/O error occured while reading the valid files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate or extract the class file.", e);
+        }
+    }
+
+    @Test
+    public void testExtractConstants() {
+        ClassGenerator generator;
+        ClassInfo classInfo;
+
+        generator = new ClassGenerator();
+        classInfo = new ClassInfo(
+                55,
+                "edu.handong.csee.isel.cfg.gen",
+                "Length",
+                "length",
+                "(Ljava/lang/Object;)I",
+                new int[] { Opcodes.ALOAD, 1,
+                            Opcodes.INSTANCEOF, 0, 0,
+                            Opcodes.IFEQ, 0, 15,
+                            Opcodes.ALOAD, 1,
+                            Opcodes.CHECKCAST, 0, 0,
+                            Opcodes.ARRAYLENGTH,
+                            Opcodes.IRETURN,
+                            Opcodes.LDC, 1,
+                            Opcodes.POP,
+                            Opcodes.GETSTATIC, 0, 2,
+                            Opcodes.IRETURN },
+                new Symbol[] { Symbol.ofClass("[I"),
+                               Symbol.of(1.5f),
+                               Symbol.ofField("java/lang/Integer",
+                                              "MAX_VALUE",
+                                              "I") });
+
+        try {
+            ClassInfo extracted;
+            byte[] bytes;
+
+            bytes = generator.generate(classInfo);
+            extracted = ClassExtractor.extract(bytes);
+
+            assertEquals(classInfo, extracted);
+            assertArrayEquals(bytes,
+                              generator.generate(new StringReader(
+                                      ClassExtractor.toJson(extracted))));
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate or extract the class file.", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class ClassGeneratorTest {
+
+    @Test
+    public void testGenerate() {
+        ClassGenerator generator;
+        ClassInfo classInfo;
+        String json;
+
+        generator = new ClassGenerator();
+        classInfo = new ClassInfo(55,
+                                  "edu.handong.csee.isel.cfg.gen",
+                                  "Sub",
+                                  "sub",
+                                  "(II)I",
+                                  new int[] { 21, 1, 21, 2, 100, 172 });
+        json = "{ \"version\": 55, "
+               + "\"packagename\": \"edu.handong.csee.isel.cfg.gen\", "
+               + "\"classname\": \"Sub\", "
+               + "\"methodname\": \"sub\", "
+               + "\"methodDesc\": \"(II)I\", "
+               + "\"bytecode\": [ 21, 1, 21, 2, 100, 172 ] }";
+
+        try {
+            ByteBuffer buffer;
+            byte[] bytes;
+
+            bytes = generator.generate(classInfo);
+            buffer = generator.generateBuffer(classInfo);
+
+            assertArrayEquals(bytes,
+                              generator.generate(new StringReader(json)));
+            assertEquals(ByteBuffer.wrap(bytes), buffer);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        }
+
+        assertThrows(UnsupportedOpcodeException.class,
+                     () -> { generator.generate(
+                                     new ClassInfo(55,
+                                                   "gen",
+                                                   "Ldc",
+                                                   "ldc",
+                                                   "()V",
+                                                   new int[] { Opcodes.LDC,
+                                                               1 })); });
+    }
+
+    @Test
+    public void testDefine() {
+        ClassGenerator generator;
+        ClassInfo classInfo;
+
+        generator = new ClassGenerator();
+        classInfo = new ClassInfo(55,
+                                  "edu.handong.csee.isel.cfg",
+                                  "DefinedAdd",
+                                  "add",
+                                  "(II)I",
+                                  new int[] { 21, 1, 21, 2, 96, 172 });
+
+        generator.setFastFrames(true);
+
+        try {
+            Class<?> clazz;
+
+            clazz = generator.define(MethodHandles.lookup(), classInfo);
+
+            assertEquals(3,
+                         clazz.getMethod("add", int.class, int.class)
+                              .invoke(clazz.getConstructor().newInstance(),
+                                      1,
+                                      2));
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } catch (IllegalAccessException e) {
+            fail("Failed to define the generated class.", e);
+        } catch (InstantiationException e) {
+            fail("Failed to instantiate the generated class.", e);
+        } catch (InvocationTargetException e) {
+            fail("Method of the generated class threw an exception.", e);
+        } catch (NoSuchMethodException e) {
+            fail("Failed to find the method of the generated class.", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ClassPackerTest {
+
+    @Test
+    public void testPack() {
+        for (boolean fastFrames : new boolean[] { false, true }) {
+            ClassPacker packer;
+            ClassPacker.Pack pack;
+            List<ClassPacker.Pack> rest;
+            Path srcFile;
+
+            packer = new ClassPacker(2);
+            srcFile = Path.of("batch.jsonl");
+
+            assertNull(add(packer, reader("add", new int[] { 21, 1, 21, 2,
+                                                            96, 172 }),
+                                  srcFile,
+                                  1));
+            assertNull(add(packer,
+                    new JsonReader(new ClassInfo(55, "gen", "Other", "add",
+                                                 "(II)I", new int[] { 172 })),
+                    srcFile,
+                    2));
+
+            pack = add(packer, reader("add", new int[] { 21, 1, 21, 2, 100,
+                                                        172 }),
+                              srcFile,
+                              3);
+
+            assertNotNull(pack);
+            assertEquals("batch.jsonl:3\tedu/handong/csee/isel/cfg/"
+                             + pack.getClassname()
+                             + ".class\tadd$1\t(II)I",
+                         pack.mapping().get(1));
+
+            try {
+                Class<?> clazz;
+                Object instance;
+
+                clazz = ClassGenerator.define(MethodHandles.lookup(),
+                                              pack.generate(fastFrames));
+                instance = clazz.getConstructor().newInstance();
+
+                assertEquals(5,
+                             clazz.getMethod("add", int.class, int.class)
+                                  .invoke(instance, 2, 3));
+                assertEquals(-1,
+                             clazz.getMethod("add$1", int.class, int.class)
+                                  .invoke(instance, 2, 3));
+            } catch (UnsupportedOpcodeException e) {
+                fail("Failed to generate the pack.", e);
+            } catch (IllegalAccessException e) {
+                fail("Failed to define the pack.", e);
+            } catch (InstantiationException e) {
+                fail("Failed to instantiate the pack.", e);
+            } catch (InvocationTargetException e) {
+                fail("Method of the pack threw an exception.", e);
+            } catch (NoSuchMethodException e) {
+                fail("Failed to find the method of the pack.", e);
+            }
+
+            rest = packer.flush();
+
+            assertEquals(1, rest.size());
+            assertEquals("gen", rest.get(0).getPackagename());
+            assertEquals(0, packer.flush().size());
+        }
+    }
+
+    @Test
+    public void testPackEntries() {
+        ClassInfo classInfo;
+        ClassPacker packer;
+        ClassPacker.Pack pack;
+        Symbol[] constants;
+        Path srcFile;
+
+        constants = new Symbol[10000];
+        srcFile = Path.of("batch.jsonl");
+
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = Symbol.ofField("gen/Owner", "f" + i, "I");
+        }
+
+        classInfo = new ClassInfo(55, "gen", "Unused", "run",
+                                  "(Ljava/lang/String;)V", new int[] { 177 },
+                                  constants);
+        packer = new ClassPacker(16);
+
+        assertEquals(60004, ClassPacker.entries(classInfo));
+        assertNull(add(packer, new JsonReader(classInfo), srcFile, 1));
+
+        pack = add(packer, new JsonReader(classInfo), srcFile, 2);
+
+        assertNotNull(pack);
+        assertEquals(1, pack.size());
+        assertEquals(1, pack.getLine(0));
+        assertEquals(1, packer.flush().get(0).size());
+    }
+
+    @Test
+    public void testPackConstructor() {
+        ClassPacker packer;
+
+        packer = new ClassPacker(2);
+
+        for (String methodname : new String[] { "<init>", "<clinit>" }) {
+            assertThrows(UnsupportedOpcodeException.class,
+                         () -> packer.add(reader(methodname,
+                                                 new int[] { 177 }),
+                                          Path.of("init.json"),
+                                          0));
+        }
+
+        assertEquals(0, packer.flush().size());
+    }
+
+    private static ClassPacker.Pack add(ClassPacker packer, JsonReader reader,
+                                        Path srcFile, long line) {
+        try {
+            return packer.add(reader, srcFile, line);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to pack the json content.", e);
+
+            return null;
+        }
+    }
+
+    private static JsonReader reader(String methodname, int[] bytecode) {
+        return new JsonReader(new ClassInfo(55, "edu.handong.csee.isel.cfg",
+                                            "Unused", methodname, "(II)I",
+                                            bytecode));
+    }
+}
@@ -0,0 +1,175 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class ClassSkeletonTest {
+
+    @Test
+    public void testAccept() {
+        try (DirectoryStream<Path> validFiles = Files.newDirectoryStream(
+                Path.of("src/test/resources/valid-files"))) {
+            for (Path validFile : validFiles) {
+                byte[] expected;
+                JsonReader reader;
+                byte[] skeleton;
+
+                try (InputStream in = Files.newInputStream(validFile)) {
+                    reader = new JsonReader(in);
+                }
+
+                reader.validate();
+
+                skeleton = withSkeleton(reader);
+                expected = withoutSkeleton(reader);
+
+                assertArrayEquals(normalize(expected), normalize(skeleton));
+                assertEquals(invoke(expected), invoke(skeleton));
+            }
+        } catch (IOException e) {
+            fail("Failed to read the valid files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        }
+    }
+
+    @Test
+    public void testCommonSuperClass() {
+        JsonReader reader;
+
+        // Both branches push a class that is not on the class path, so that
+        // their frames can only be merged into java/lang/Object.
+        reader = new JsonReader(
+                new ClassInfo(55, "gen", "Choose", "choose",
+                              "(ZLgen/A;Lgen/B;)Ljava/lang/Object;",
+                              new int[] { 21, 1, 153, 0, 10, 25, 2, 167, 0,
+                                          12, 25, 3, 176 }));
+
+        assertThrows(TypeNotPresentException.class,
+                     () -> withoutSkeleton(reader));
+
+        // The class is verified when it is instantiated, which does not
+        // need gen/A and gen/B since they are only assigned to Object.
+        try {
+            Class<?> clazz;
+
+            clazz = new SingleClassLoader().define(withSkeleton(reader));
+
+            assertNotNull(clazz.getConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            fail("Failed to instantiate the generated class.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        }
+    }
+
+    private static byte[] withSkeleton(JsonReader reader)
+            throws UnsupportedOpcodeException {
+        ClassWriter writer;
+
+        writer = ClassSkeleton.newClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        reader.accept(writer, null);
+
+        return writer.toByteArray();
+    }
+
+    private static byte[] withoutSkeleton(JsonReader reader)
+            throws UnsupportedOpcodeException {
+        ClassInfo classInfo;
+        MethodVisitor mv;
+        ClassWriter writer;
+
+        classInfo = reader.readClassInfo();
+        writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        writer.visit(classInfo.getVersion(),
+                     Opcodes.ACC_PUBLIC,
+                     classInfo.getPackagename().replace('.', '/') + '/'
+                             + classInfo.getClassname(),
+                     null,
+                     "java/lang/Object",
+                     null);
+
+        mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null,
+                                null);
+
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                           "java/lang/Object",
+                           "<init>",
+                           "()V",
+                           false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+        reader.acceptMethod(writer, classInfo.getMethodname(), null);
+        writer.visitEnd();
+
+        return writer.toByteArray();
+    }
+
+    // Class files that only differ in the order of their constant pools
+    // become the same when they are rewritten by a new ClassWriter.
+    private static byte[] normalize(byte[] bytes) {
+        ClassWriter writer;
+
+        writer = new ClassWriter(0);
+
+        new ClassReader(bytes).accept(writer, 0);
+
+        return writer.toByteArray();
+    }
+
+    private static String invoke(byte[] bytes) {
+        try {
+            Class<?> clazz;
+            Method method;
+
+            clazz = new SingleClassLoader().define(bytes);
+            method = clazz.getDeclaredMethods()[0];
+
+            return Arrays.deepToString(new Object[] {
+                    method.invoke(clazz.getConstructor().newInstance(),
+                                  ExecutionHarness.arguments(
+                                          method.getParameterTypes())) });
+        } catch (InvocationTargetException e) {
+            return e.getCause().toString();
+        } catch (ReflectiveOperationException e) {
+            fail("Failed to run the generated class.", e);
+
+            return null;
+        }
+    }
+
+    private static class SingleClassLoader extends ClassLoader {
+
+        private SingleClassLoader() {
+            super(ClassLoader.getPlatformClassLoader());
+        }
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.Test;
+
+public class ClassSynthesizerTest {
+
+    @Test
+    public void testSynthesize() {
+        ClassSynthesizer synthesizer;
+
+        synthesizer = synthesizer(7, "(II)I");
+
+        assertEquals(synthesizer.synthesize(3),
+                     synthesizer(7, "(II)I").synthesize(3));
+        assertNotEquals(synthesizer.synthesize(3), synthesizer.synthesize(4));
+        assertEquals("Synth3", synthesizer.synthesize(3).getClassname());
+    }
+
+    @Test
+    public void testRun() {
+        String[] descs = { "(II)I", "(F[I)F", "([F)[F", "(JZ)V", "()[I" };
+
+        for (String desc : descs) {
+            ClassSynthesizer synthesizer;
+
+            synthesizer = synthesizer(desc.length(), desc);
+
+            for (long i = 0; i < 50; i++) {
+                ClassInfo classInfo;
+
+                classInfo = synthesizer.synthesize(i);
+
+                try {
+                    BytecodeValidator.validate(classInfo.getBytecode());
+                    assertNotNull(new JsonReader(classInfo).computeFrames());
+
+                    for (boolean fastFrames : new boolean[] { false, true }) {
+                        ClassGenerator generator;
+                        Class<?> clazz;
+                        Method method;
+
+                        generator = new ClassGenerator();
+
+                        generator.setFastFrames(fastFrames);
+
+                        clazz = ClassGenerator.define(
+                                MethodHandles.lookup(),
+                                generator.generate(classInfo));
+                        method = findRun(clazz);
+
+                        method.invoke(clazz.getConstructor().newInstance(),
+                                      ExecutionHarness.arguments(
+                                              method.getParameterTypes()));
+                    }
+                } catch (UnsupportedOpcodeException e) {
+                    fail("Synthesized unsupported bytecode.", e);
+                } catch (IllegalAccessException e) {
+                    fail("Failed to define the synthesized class.", e);
+                } catch (InstantiationException e) {
+                    fail("Failed to instantiate the synthesized class.", e);
+                } catch (InvocationTargetException e) {
+                    fail("Synthesized method threw an exception.", e);
+                } catch (NoSuchMethodException e) {
+                    fail("Failed to find the constructor.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedReturnType() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> synthesizer(0, "()Ljava/lang/Object;"));
+    }
+
+    private static ClassSynthesizer synthesizer(long seed, String desc) {
+        ClassSynthesizer synthesizer;
+
+        synthesizer = new ClassSynthesizer(seed,
+                                           "edu.handong.csee.isel.cfg",
+                                           desc);
+
+        synthesizer.setLength(256);
+        synthesizer.setBranchDensity(0.3);
+        synthesizer.setLoopDensity(0.2);
+
+        return synthesizer;
+    }
+
+    private static Method findRun(Class<?> clazz)
+            throws NoSuchMethodException {
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().equals("run")) {
+                return method;
+            }
+        }
+
+        throw new NoSuchMethodException("run");
+    }
+}
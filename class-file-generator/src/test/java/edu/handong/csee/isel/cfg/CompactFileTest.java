@@ -0,0 +1,129 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class CompactFileTest {
+
+    @Test
+    public void testConvert() {
+        Path dstDir = null;
+
+        try {
+            CompactConverter converter;
+            ClassGenerator generator;
+            CompactFile compactFile;
+            Path srcFile;
+
+            dstDir = Files.createTempDirectory("cfg-compact");
+            converter = new CompactConverter();
+            generator = new ClassGenerator();
+            srcFile = Path.of("src/test/resources/valid-files/bubblesort.json");
+
+            converter.convert(Path.of("src/test/resources"), dstDir);
+
+            assertEquals(4, converter.getConverted());
+            assertEquals(3, converter.getSkipped());
+
+            compactFile = new CompactFile(
+                    dstDir.resolve("valid-files/bubblesort.cfgb"));
+
+            try (InputStream in = Files.newInputStream(srcFile)) {
+                assertArrayEquals(
+                        generator.generate(new JsonReader(in)),
+                        generator.generate(
+                                new JsonReader(compactFile.next())));
+            }
+
+            assertFalse(compactFile.hasNext());
+            assertFalse(Files.exists(
+                    dstDir.resolve("inval-files/parse/unsupported_opcode"
+                                   + ".cfgb")));
+            assertThrows(IOException.class,
+                         () -> new CompactFile(srcFile),
+                         "Failed to reject the json file.");
+        } catch (IOException e) {
+            fail("I/O error occured while converting json files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConstants() {
+        Path file = null;
+
+        try {
+            ClassInfo classInfo;
+            CompactFile compactFile;
+
+            file = Files.createTempFile("cfg-compact", CompactFile.EXTENSION);
+            classInfo = new ClassInfo(
+                    55,
+                    "gen",
+                    "Constants",
+                    "constants",
+                    "()V",
+                    new int[] { Opcodes.RETURN },
+                    new Symbol[] { Symbol.of(-1),
+                                   Symbol.of(Float.NaN),
+                                   Symbol.of(Long.MIN_VALUE),
+                                   Symbol.of(0.1),
+                                   Symbol.of("\u00e9t\u00e9"),
+                                   Symbol.ofClass("[Ljava/lang/String;"),
+                                   Symbol.ofField("java/lang/System",
+                                                  "out",
+                                                  "Ljava/io/PrintStream;"),
+                                   Symbol.ofMethod("java/lang/Math",
+                                                   "max",
+                                                   "(II)I",
+                                                   false),
+                                   Symbol.ofMethod("java/util/List",
+                                                   "size",
+                                                   "()I",
+                                                   true) });
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                CompactFile.writeHeader(out);
+                CompactFile.write(out, classInfo);
+            }
+
+            compactFile = new CompactFile(file);
+
+            assertEquals(classInfo, compactFile.next());
+            assertFalse(compactFile.hasNext());
+        } catch (IOException e) {
+            fail("I/O error occured while writing the compact file.", e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+}
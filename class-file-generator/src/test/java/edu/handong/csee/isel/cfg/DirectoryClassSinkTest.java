@@ -0,0 +1,116 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class DirectoryClassSinkTest {
+
+    @Test
+    public void testWrite() {
+        Path dstDir = null;
+
+        try {
+            dstDir = Files.createTempDirectory("cfg-sink");
+
+            try (DirectoryClassSink sink = new DirectoryClassSink(dstDir)) {
+                sink.setSyncBatch(2);
+
+                for (int i = 0; i < 5; i++) {
+                    assertEquals("gen/sub/C" + i + ".class",
+                                 sink.write("gen.sub",
+                                            "C" + i,
+                                            new byte[] { (byte) i, 1, 2 }));
+                }
+
+                sink.write("gen/sub", "C0", new byte[] { 9 });
+            }
+
+            assertArrayEquals(new byte[] { 9 },
+                              Files.readAllBytes(
+                                      dstDir.resolve("gen/sub/C0.class")));
+            assertArrayEquals(new byte[] { 4, 1, 2 },
+                              Files.readAllBytes(
+                                      dstDir.resolve("gen/sub/C4.class")));
+        } catch (IOException e) {
+            fail("I/O error occured while writing class files.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSyncFailure() {
+        Path dstDir = null;
+
+        try {
+            Map<String, IOException> synced;
+
+            dstDir = Files.createTempDirectory("cfg-sink");
+            synced = new HashMap<>();
+
+            try (DirectoryClassSink sink = new DirectoryClassSink(dstDir)) {
+                assertFalse(sink.setSyncListener(synced::put));
+
+                sink.setSyncBatch(2);
+
+                assertTrue(sink.setSyncListener(synced::put));
+
+                sink.write("gen", "C0", new byte[] { 0 });
+                Files.delete(dstDir.resolve("gen/C0.class"));
+                sink.write("gen", "C1", new byte[] { 1 });
+
+                assertEquals(2, synced.size());
+                assertInstanceOf(NoSuchFileException.class,
+                                 synced.get("gen/C0.class"));
+                assertNull(synced.get("gen/C1.class"));
+
+                sink.write("gen", "C2", new byte[] { 2 });
+                sink.flush();
+
+                assertTrue(synced.containsKey("gen/C2.class"));
+                assertNull(synced.get("gen/C2.class"));
+
+                sink.setSyncListener(null);
+                sink.write("gen", "C3", new byte[] { 3 });
+                Files.delete(dstDir.resolve("gen/C3.class"));
+
+                assertThrows(NoSuchFileException.class, sink::flush);
+            }
+        } catch (IOException e) {
+            fail("I/O error occured while writing class files.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.Test;
+
+public class ErrorSinkTest {
+
+    @Test
+    public void testReport() {
+        Path file = null;
+
+        try {
+            List<String> lines;
+            JsonObject record;
+
+            file = Files.createTempFile("cfg-errors", ".jsonl");
+
+            try (ErrorSink errors = new ErrorSink(file)) {
+                for (int i = 1; i <= 100; i++) {
+                    errors.report(Path.of("batch.jsonl"),
+                                  i,
+                                  GenerationMetrics.Stage.VALIDATE,
+                                  new UnsupportedOpcodeException(
+                                          "Unsupported opcode 1 is used "
+                                              + "at 3.",
+                                          1,
+                                          3),
+                                  false);
+                }
+
+                errors.report(Path.of("broken.json"),
+                              0,
+                              GenerationMetrics.Stage.PARSE,
+                              new IOException("Broken."),
+                              true);
+                errors.summarize();
+            }
+
+            lines = Files.readAllLines(file);
+
+            assertEquals(101, lines.size());
+
+            record = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+
+            assertEquals("batch.jsonl:1", record.get("location").getAsString());
+            assertEquals("validate", record.get("stage").getAsString());
+            assertEquals(1, record.get("opcode").getAsInt());
+            assertEquals(3, record.get("offset").getAsInt());
+
+            record = JsonParser.parseString(lines.get(100))
+                               .getAsJsonObject();
+
+            assertEquals("broken.json", record.get("location").getAsString());
+            assertEquals("java.io.IOException",
+                         record.get("exception").getAsString());
+            assertFalse(record.has("offset"));
+        } catch (IOException e) {
+            fail("I/O error occured while writing the failures.", e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+
+    @Test
+    public void testDrop() {
+        Path file = null;
+
+        try {
+            long dropped;
+
+            file = Files.createTempFile("cfg-errors", ".jsonl");
+
+            try (ErrorSink errors = new ErrorSink(file, 4)) {
+                for (int i = 1; i <= 1000; i++) {
+                    errors.report(Path.of("batch.jsonl"),
+                                  i,
+                                  GenerationMetrics.Stage.PARSE,
+                                  new IOException("Broken."),
+                                  false);
+                }
+
+                dropped = errors.getDropped();
+            }
+
+            assertEquals(1000, Files.readAllLines(file).size() + dropped);
+        } catch (IOException e) {
+            fail("I/O error occured while writing the failures.", e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+}
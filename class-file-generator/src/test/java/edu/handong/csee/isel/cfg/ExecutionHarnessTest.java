@@ -0,0 +1,188 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class ExecutionHarnessTest {
+
+    @Test
+    public void testRun() {
+        Path dstDir = null;
+
+        try {
+            ClassGenerator generator;
+            ExecutionHarness harness;
+
+            dstDir = Files.createTempDirectory("cfg-harness");
+            generator = new ClassGenerator();
+            harness = new ExecutionHarness(2, 100);
+
+            try (DirectoryClassSink sink = new DirectoryClassSink(dstDir);
+                 DirectoryStream<Path> validFiles = Files.newDirectoryStream(
+                         Path.of("src/test/resources/valid-files"))) {
+                for (Path validFile : validFiles) {
+                    try (InputStream in = Files.newInputStream(validFile)) {
+                        JsonReader reader;
+
+                        reader = new JsonReader(in);
+
+                        sink.write(reader.readPackagename(),
+                                   reader.readClassname(),
+                                   generator.generate(reader));
+                    }
+                }
+
+                sink.write("gen", "Loop", generator.generate(
+                        new ClassInfo(55, "gen", "Loop", "loop", "()V",
+                                      new int[] { Opcodes.GOTO, 0, 0 })));
+                sink.write("gen", "Divide", generator.generate(
+                        new ClassInfo(55, "gen", "Divide", "divide", "()I",
+                                      new int[] { Opcodes.ICONST_1,
+                                                  Opcodes.ICONST_0,
+                                                  Opcodes.IDIV,
+                                                  Opcodes.IRETURN })));
+                sink.write("gen", "Broken", new byte[] { 1, 2, 3 });
+            }
+
+            assertFalse(harness.run(dstDir, dstDir.resolve("report.jsonl")));
+            assertEquals(4,
+                         harness.getCount(ExecutionHarness.Outcome.RETURNED));
+            assertEquals(1, harness.getCount(ExecutionHarness.Outcome.THREW));
+            assertEquals(1,
+                         harness.getCount(ExecutionHarness.Outcome.TIMED_OUT));
+            assertEquals(1,
+                         harness.getCount(ExecutionHarness.Outcome.MALFORMED));
+            assertEquals(7,
+                         Files.readAllLines(dstDir.resolve("report.jsonl"))
+                              .size());
+            assertFalse(harness.run(dstDir, dstDir.resolve("report.jsonl")));
+            assertEquals(4,
+                         harness.getCount(ExecutionHarness.Outcome.RETURNED));
+            assertEquals(1,
+                         harness.getCount(ExecutionHarness.Outcome.TIMED_OUT));
+        } catch (IOException e) {
+            fail("I/O error occured while running the class files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunDuplicates() {
+        Path dstDir = null;
+
+        try {
+            ClassGenerator generator;
+            ExecutionHarness harness;
+
+            dstDir = Files.createTempDirectory("cfg-harness");
+            generator = new ClassGenerator();
+            harness = new ExecutionHarness(1, 1000);
+
+            for (String copy : new String[] { "a", "b" }) {
+                try (DirectoryClassSink sink
+                        = new DirectoryClassSink(dstDir.resolve(copy))) {
+                    sink.write("gen", "Add", generator.generate(
+                            new ClassInfo(55, "gen", "Add", "add", "(II)I",
+                                          new int[] { 21, 1, 21, 2, 96,
+                                                      172 })));
+                }
+            }
+
+            assertTrue(harness.run(dstDir, dstDir.resolve("report.jsonl")));
+            assertEquals(2,
+                         harness.getCount(ExecutionHarness.Outcome.RETURNED));
+        } catch (IOException e) {
+            fail("I/O error occured while running the class files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunAbandoned() {
+        Path dstDir = null;
+
+        try {
+            ClassGenerator generator;
+            ExecutionHarness harness;
+
+            dstDir = Files.createTempDirectory("cfg-harness");
+            generator = new ClassGenerator();
+            harness = new ExecutionHarness(1, 100, 1);
+
+            try (DirectoryClassSink sink = new DirectoryClassSink(dstDir)) {
+                for (String classname : new String[] { "Loop", "Spin" }) {
+                    sink.write("gen", classname, generator.generate(
+                            new ClassInfo(55, "gen", classname, "loop", "()V",
+                                          new int[] { Opcodes.GOTO, 0, 0 })));
+                }
+            }
+
+            assertFalse(harness.run(dstDir, dstDir.resolve("report.jsonl")));
+            assertEquals(1,
+                         harness.getCount(ExecutionHarness.Outcome.TIMED_OUT));
+            assertEquals(1,
+                         harness.getCount(ExecutionHarness.Outcome.NOT_RUN));
+        } catch (IOException e) {
+            fail("I/O error occured while running the class files.", e);
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testArguments() {
+        Object[] args;
+
+        args = ExecutionHarness.arguments(
+                new Class<?>[] { int.class, int[].class, String.class });
+
+        assertEquals(2, args[0]);
+        assertArrayEquals(new int[] { 8, 7, 6, 5, 4, 3, 2, 1 },
+                          (int[]) args[1]);
+        assertEquals(null, args[2]);
+    }
+}
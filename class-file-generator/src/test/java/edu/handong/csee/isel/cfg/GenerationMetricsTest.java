@@ -0,0 +1,79 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.jupiter.api.Test;
+
+public class GenerationMetricsTest {
+
+    @Test
+    public void testWrite() {
+        GenerationMetrics metrics;
+        Path file = null;
+
+        metrics = new GenerationMetrics();
+
+        for (long nanos : new long[] { 0, 1, 2, 3, 100, 1000 }) {
+            metrics.record(GenerationMetrics.Stage.PARSE, nanos);
+        }
+
+        metrics.addBytesIn(10);
+        metrics.addBytesOut(20);
+        metrics.skip(new JsonSyntaxException("malformed"));
+        metrics.skip(new JsonSyntaxException("malformed"));
+        metrics.skip(new UnsupportedOpcodeException("unsupported"));
+
+        try {
+            JsonObject actual;
+            JsonObject parse;
+
+            file = Files.createTempFile("cfg-metrics", ".json");
+
+            metrics.write(file, 5, 4, 3, 2);
+
+            try (Reader in = Files.newBufferedReader(file)) {
+                actual = JsonParser.parseReader(in).getAsJsonObject();
+            }
+
+            parse = actual.getAsJsonObject("stages")
+                          .getAsJsonObject("parse");
+
+            assertEquals(5, actual.get("elapsedNanos").getAsLong());
+            assertEquals(10, actual.get("bytesIn").getAsLong());
+            assertEquals(20, actual.get("bytesOut").getAsLong());
+            assertEquals(2,
+                         actual.getAsJsonObject("skippedBy")
+                               .get("JsonSyntaxException")
+                               .getAsLong());
+            assertEquals(6, parse.get("count").getAsLong());
+            assertEquals(1106, parse.get("totalNanos").getAsLong());
+            assertEquals(2, parse.get("p50Nanos").getAsLong());
+            assertEquals(1000, parse.get("p99Nanos").getAsLong());
+            assertEquals(2,
+                         parse.getAsJsonObject("buckets")
+                              .get("1")
+                              .getAsLong());
+            assertEquals(0,
+                         actual.getAsJsonObject("stages")
+                               .getAsJsonObject("walk")
+                               .get("count")
+                               .getAsLong());
+        } catch (IOException e) {
+            fail("I/O error occured while writing the metrics.", e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class GenerationPipelineTest {
+    private static final String RESOURCES = "src/test/resources/";
+
+    @Test
+    public void testRun() {
+        GenerationPipeline pipeline;
+
+        pipeline = new GenerationPipeline(null, 2);
+
+        pipeline.setValidateOnly(true);
+
+        try {
+            pipeline.run(Path.of(RESOURCES + "valid-files"));
+        } catch (IOException e) {
+            fail("I/O error occured while walking the source directory.", e);
+        }
+
+        assertEquals(4, pipeline.getGenerated());
+        assertEquals(0, pipeline.getSkipped());
+    }
+
+    @Test
+    public void testRunFromList() {
+        GenerationPipeline pipeline;
+
+        pipeline = new GenerationPipeline(null, 2);
+
+        pipeline.setValidateOnly(true);
+
+        try {
+            pipeline.runFromList(
+                    new StringReader(RESOURCES + "valid-files/add.json\n"
+                                     + "\n"
+                                     + RESOURCES + "inval-files/parse\0"
+                                     + RESOURCES + "missing.json\r\n"
+                                     + RESOURCES + "valid-files/sub.json"));
+        } catch (IOException e) {
+            fail("I/O error occured while reading the list.", e);
+        }
+
+        assertEquals(2, pipeline.getGenerated());
+        assertEquals(2, pipeline.getSkipped());
+    }
+
+    @Test
+    public void testRunMalformed() {
+        Path root = null;
+
+        try {
+            GenerationPipeline pipeline;
+            Path srcDir;
+
+            root = Files.createTempDirectory("cfg-malformed");
+            srcDir = Files.createDirectory(root.resolve("src"));
+
+            Files.copy(Path.of(RESOURCES + "valid-files/add.json"),
+                       srcDir.resolve("add.json"));
+            Files.writeString(srcDir.resolve("desc.json"),
+                              "{ \"methodDesc\": \"abc\", "
+                              + "\"bytecode\": [ 177 ] }");
+
+            try (DirectoryClassSink sink
+                    = new DirectoryClassSink(root.resolve("dst"))) {
+                pipeline = new GenerationPipeline(sink, 2);
+
+                pipeline.run(srcDir);
+            }
+
+            assertEquals(1, pipeline.getGenerated());
+            assertEquals(1, pipeline.getSkipped());
+        } catch (IOException e) {
+            fail("I/O error occured while generating class files.", e);
+        } finally {
+            if (root != null) {
+                try (Stream<Path> paths = Files.walk(root)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the temporary directory.", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.Test;
+
+public class GenerationServerTest {
+
+    @Test
+    public void testRespond() {
+        GenerationServer server;
+        JsonObject response;
+        String content;
+
+        server = new GenerationServer(0, 1);
+        content = "{ \"packagename\": \"gen\", "
+                  + "\"classname\": \"Sub\", "
+                  + "\"methodname\": \"sub\", "
+                  + "\"methodDesc\": \"(II)I\", "
+                  + "\"bytecode\": [ 21, 1, 21, 2, 100, 172 ] }";
+        response = server.respond("{ \"class\": " + content + " }");
+
+        assertEquals("ok", response.get("status").getAsString());
+        assertEquals("Sub", response.get("classname").getAsString());
+
+        try {
+            assertArrayEquals(
+                    new ClassGenerator().generate(
+                            new StringReader(content)),
+                    Base64.getDecoder()
+                          .decode(response.get("bytes").getAsString()));
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        }
+
+        for (String request : new String[] { "{ \"class\": { "
+                                                     + "\"bytecode\": [ 18 ] "
+                                                     + "} }",
+                                             "{ \"source\": \"src\" }",
+                                             "[ 1, 2 ]",
+                                             "{ \"class\": " }) {
+            assertEquals("error",
+                         server.respond(request).get("status").getAsString(),
+                         "Failed to answer the invalid request "
+                             + request
+                             + " with an error.");
+        }
+    }
+
+    @Test
+    public void testRespondDirectory() {
+        Path outside = null;
+        Path root = null;
+
+        try {
+            JsonObject response;
+            GenerationServer server;
+
+            outside = Files.createTempDirectory("cfg-outside");
+            root = Files.createTempDirectory("cfg-root");
+            server = new GenerationServer(0, 2);
+
+            Files.createDirectory(root.resolve("src"));
+            Files.copy(Path.of("src/test/resources/valid-files/add.json"),
+                       root.resolve("src/add.json"));
+            Files.createSymbolicLink(root.resolve("link"), outside);
+
+            assertEquals("error",
+                         server.respond(request("src", "dst"))
+                               .get("status")
+                               .getAsString(),
+                         "Answered a directory request without a root.");
+
+            server.setRoot(root);
+
+            for (String dstDir : new String[] { "../dst",
+                                                outside.toString(),
+                                                "link/dst",
+                                                "dst/../../dst" }) {
+                assertEquals("error",
+                             server.respond(request("src", dstDir))
+                                   .get("status")
+                                   .getAsString(),
+                             "Answered the request to write to " + dstDir);
+            }
+
+            response = server.respond(request("src", "dst/sub/.."));
+
+            assertEquals("ok", response.get("status").getAsString());
+            assertEquals(1, response.get("generated").getAsLong());
+            assertTrue(Files.exists(root.resolve(
+                    "dst/edu/handong/csee/isel/cfg/gen/Add.class")));
+
+            try (Stream<Path> paths = Files.list(outside)) {
+                assertEquals(0, paths.count());
+            }
+        } catch (IOException e) {
+            fail("I/O error occured while preparing the directories.", e);
+        } finally {
+            delete(root);
+            delete(outside);
+        }
+    }
+
+    @Test
+    public void testReadLine() {
+        try {
+            StringReader in;
+            StringBuilder line;
+
+            in = new StringReader("abc\r\n\nabcd\r\nabcdef\nab");
+            line = new StringBuilder();
+
+            assertEquals(3, GenerationServer.readLine(in, line, 3));
+            assertEquals("abc", line.toString());
+            assertEquals(0, GenerationServer.readLine(in, line, 3));
+            assertEquals("", line.toString());
+            assertEquals(5, GenerationServer.readLine(in, line, 3));
+            assertEquals(6, GenerationServer.readLine(in, line, 3));
+            assertEquals(2, GenerationServer.readLine(in, line, 3));
+            assertEquals("ab", line.toString());
+            assertEquals(-1, GenerationServer.readLine(in, line, 3));
+        } catch (IOException e) {
+            fail("I/O error occured while reading the lines.", e);
+        }
+    }
+
+    @Test
+    public void testServe() {
+        for (boolean interrupt : new boolean[] { false, true }) {
+            try (ServerSocket serverSocket
+                    = new ServerSocket(0,
+                                       0,
+                                       InetAddress.getLoopbackAddress())) {
+                GenerationServer server;
+                Thread serving;
+
+                server = new GenerationServer(0, 1);
+                serving = new Thread(() -> {
+                    try {
+                        server.serve(serverSocket);
+                    } catch (IOException e) {
+                        fail("I/O error occured while serving.", e);
+                    }
+                });
+
+                serving.start();
+
+                try (Socket socket = new Socket(
+                             InetAddress.getLoopbackAddress(),
+                             serverSocket.getLocalPort());
+                     BufferedReader in = new BufferedReader(
+                             new InputStreamReader(socket.getInputStream(),
+                                                   StandardCharsets.UTF_8));
+                     Writer out = new OutputStreamWriter(
+                             socket.getOutputStream(),
+                             StandardCharsets.UTF_8)) {
+                    out.write("[ 1 ]\n");
+                    out.flush();
+
+                    assertEquals("error",
+                                 JsonParser.parseString(in.readLine())
+                                           .getAsJsonObject()
+                                           .get("status")
+                                           .getAsString());
+                }
+
+                if (interrupt) {
+                    serving.interrupt();
+                } else {
+                    serverSocket.close();
+                }
+
+                serving.join(10000);
+
+                assertFalse(serving.isAlive());
+            } catch (IOException e) {
+                fail("I/O error occured while connecting to the server.", e);
+            } catch (InterruptedException e) {
+                fail("Interrupted while waiting for the server.", e);
+            }
+        }
+    }
+
+    private static String request(String srcDir, String dstDir) {
+        JsonObject request;
+
+        request = new JsonObject();
+
+        request.addProperty("source", srcDir);
+        request.addProperty("destination", dstDir);
+
+        return request.toString();
+    }
+
+    private static void delete(Path root) {
+        if (root == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder())
+                 .forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            fail("Failed to delete the temporary directory.", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+public class JarClassSinkTest {
+
+    @Test
+    public void testWrite() {
+        Path dstDir = null;
+
+        try {
+            dstDir = Files.createTempDirectory("cfg-jar");
+
+            for (int level : new int[] { 0, 1, 9, -1 }) {
+                Path jarFile;
+
+                jarFile = dstDir.resolve("out/level" + level + ".jar");
+
+                try (JarClassSink sink = new JarClassSink(jarFile, level)) {
+                    for (int i = 0; i < 3; i++) {
+                        assertEquals("gen/sub/C" + i + ".class",
+                                     sink.write("gen.sub",
+                                                "C" + i,
+                                                bytes(i)));
+                    }
+
+                    assertThrows(ZipException.class,
+                                 () -> sink.write("gen.sub", "C0", bytes(0)));
+                }
+
+                try (JarFile jar = new JarFile(jarFile.toFile())) {
+                    assertNotNull(jar.getManifest());
+
+                    for (int i = 0; i < 3; i++) {
+                        CRC32 crc;
+                        JarEntry entry;
+
+                        crc = new CRC32();
+                        entry = jar.getJarEntry("gen/sub/C" + i + ".class");
+
+                        crc.update(bytes(i));
+
+                        assertNotNull(entry);
+                        assertEquals(level == 0
+                                             ? ZipEntry.STORED
+                                             : ZipEntry.DEFLATED,
+                                     entry.getMethod());
+                        assertEquals(crc.getValue(), entry.getCrc());
+
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            assertArrayEquals(bytes(i), in.readAllBytes());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            fail("I/O error occured while writing the jar file.", e);
+        } finally {
+            if (dstDir != null) {
+                try (Stream<Path> paths = Files.walk(dstDir)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the output directory.", e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidLevel() {
+        for (int level : new int[] { -2, 10 }) {
+            assertThrows(IllegalArgumentException.class,
+                         () -> new JarClassSink(Path.of("unused.jar"),
+                                                level));
+        }
+    }
+
+    private static byte[] bytes(int n) {
+        byte[] bytes;
+
+        bytes = new byte[256];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 4 + n);
+        }
+
+        return bytes;
+    }
+}
@@ -7,7 +7,6 @@ import static org.junit.jupiter.api.Assertions.fail;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -44,19 +43,13 @@ public class JsonReaderTest {
     @Test
     public void testConstructor() {
         Object[] validFilePaths = null;
-        Field field = null;
 
         try {
             validFilePaths = Files.list(validFilesDir).sorted().toArray();
-            field = JsonReader.class.getDeclaredField("info");
         } catch (IOException e) {
             fail("Failed to open the valid files directory.", e);
-        } catch (NoSuchFieldException e) {
-            fail("Failed to get the field.", e);
         }
 
-        field.setAccessible(true);
-
         ClassInfo[] actualVals;
         ClassInfo[] expectedVals;
 
@@ -107,9 +100,7 @@ public class JsonReaderTest {
         for (int i = 0; i < actualVals.length; i++) { 
             try (InputStream in 
                     = Files.newInputStream((Path) validFilePaths[i])) {
-                actualVals[i] = (ClassInfo) field.get(new JsonReader(in));  
-            } catch (IllegalAccessException e) {
-                fail("Failed to access the field.", e);
+                actualVals[i] = new JsonReader(in).readClassInfo();  
             } catch (IOException e) {
                 fail("I/O error occured while reading the valid json file.", e);
             } catch (JsonIOException | JsonSyntaxException e) {
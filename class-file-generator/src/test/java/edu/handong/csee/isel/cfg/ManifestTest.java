@@ -0,0 +1,167 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class ManifestTest {
+    private static final String OPTIONS = "fast-frames";
+    private static final String OUTPUT = "gen/Add.class";
+
+    @Test
+    public void testIsUpToDate() {
+        Path root = null;
+
+        try {
+            Manifest manifest;
+            Path dstDir;
+            Path srcFile;
+            FileTime modified;
+
+            root = Files.createTempDirectory("cfg-manifest");
+            dstDir = Files.createDirectory(root.resolve("dst"));
+            srcFile = Files.writeString(root.resolve("add.json"), "{ }");
+            modified = Files.getLastModifiedTime(srcFile);
+
+            Files.createDirectories(dstDir.resolve(OUTPUT).getParent());
+            Files.write(dstDir.resolve(OUTPUT), new byte[] { 1 });
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            assertFalse(manifest.isUpToDate(srcFile, attr(srcFile)));
+
+            manifest.addOutput(srcFile, OUTPUT);
+            manifest.save();
+
+            assertTrue(Files.exists(dstDir.resolve(Manifest.FILE_NAME)));
+            assertFalse(Files.exists(
+                    dstDir.resolve(Manifest.FILE_NAME + ".tmp")));
+
+            // The size and the modified time are the same, so the changed
+            // content is not hashed.
+            Files.writeString(srcFile, "{ ]");
+            Files.setLastModifiedTime(srcFile, modified);
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            assertTrue(manifest.isUpToDate(srcFile, attr(srcFile)));
+
+            // The modified time changed, so the content is hashed and
+            // compared.
+            Files.writeString(srcFile, "{ }");
+            Files.setLastModifiedTime(
+                    srcFile, FileTime.fromMillis(modified.toMillis() + 2000));
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            assertTrue(manifest.isUpToDate(srcFile, attr(srcFile)));
+
+            manifest.save();
+            Files.writeString(srcFile, "{  }");
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            assertFalse(manifest.isUpToDate(srcFile, attr(srcFile)));
+
+            Files.writeString(srcFile, "{ }");
+            Files.setLastModifiedTime(
+                    srcFile, FileTime.fromMillis(modified.toMillis() + 2000));
+
+            manifest = Manifest.load(dstDir, "");
+
+            assertFalse(manifest.isUpToDate(srcFile, attr(srcFile)));
+        } catch (IOException e) {
+            fail("I/O error occured while checking the source file.", e);
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    public void testPrune() {
+        Path root = null;
+
+        try {
+            Manifest manifest;
+            Path dstDir;
+            Path srcFile;
+
+            root = Files.createTempDirectory("cfg-manifest");
+            dstDir = Files.createDirectory(root.resolve("dst"));
+            srcFile = Files.writeString(root.resolve("add\tsub\n.json"),
+                                        "{ }");
+
+            Files.createDirectories(dstDir.resolve(OUTPUT).getParent());
+            Files.write(dstDir.resolve(OUTPUT), new byte[] { 1 });
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            manifest.isUpToDate(srcFile, attr(srcFile));
+            manifest.addOutput(srcFile, OUTPUT);
+            manifest.save();
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            assertTrue(manifest.isUpToDate(srcFile, attr(srcFile)));
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            manifest.retainUnchecked();
+
+            assertEquals(0, manifest.prune());
+
+            manifest.save();
+
+            manifest = Manifest.load(dstDir, OPTIONS);
+
+            manifest.remove(srcFile);
+            manifest.retainUnchecked();
+
+            assertEquals(1, manifest.prune());
+            assertFalse(Files.exists(dstDir.resolve(OUTPUT)));
+        } catch (IOException e) {
+            fail("I/O error occured while pruning the class files.", e);
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    public void testEncode() {
+        String path;
+
+        path = "a\tb\nc\rd%25e";
+
+        assertEquals("a%09b%0ac%0dd%2525e", Manifest.encode(path));
+        assertEquals(path, Manifest.decode(Manifest.encode(path)));
+        assertEquals("gen/Add.class", Manifest.decode("gen/Add.class"));
+    }
+
+    private static BasicFileAttributes attr(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private static void delete(Path root) {
+        if (root == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder())
+                 .forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            fail("Failed to delete the temporary directory.", e);
+        }
+    }
+}
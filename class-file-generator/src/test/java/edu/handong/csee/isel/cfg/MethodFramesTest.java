@@ -0,0 +1,264 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class MethodFramesTest {
+    private static Path validFilesDir
+            = Path.of("src/test/resources", "valid-files");
+
+    @Test
+    public void testCompute() {
+        Object[] validFilePaths = null;
+
+        try {
+            validFilePaths = Files.list(validFilesDir).sorted().toArray();
+        } catch (IOException e) {
+            fail("Failed to open the valid files directory.", e);
+        }
+
+        Class<?>[][] methodParamTypes;
+        Object[][] methodArgs;
+        Object[] actualReturns;
+        Object[] expectedReturns;
+        String[] methodnames;
+
+        methodnames = new String[] { "add", "bubblesort", "smallest", "sub" };
+        methodParamTypes
+                = new Class[][] { { int.class, int.class },
+                                  { int[].class },
+                                  { int[].class },
+                                  { int.class, int.class } };
+        methodArgs
+                = new Object[][] { { 1, 2 },
+                                   { new int[] { 3, 1, 2, 5, 4 } },
+                                   { new int[] { 1, 2, 3 } },
+                                   { 1, 2 } };
+        expectedReturns = new Object[] { 3, new int[] { 1, 2, 3, 4, 5 }, 1, -1 };
+        actualReturns = new Object[expectedReturns.length];
+
+        for (int i = 0; i < actualReturns.length; i++) {
+            JsonReader reader = null;
+            MethodFrames frames;
+            ClassWriter writer;
+
+            try (InputStream in
+                    = Files.newInputStream((Path) validFilePaths[i])) {
+                reader = new JsonReader(in);
+            } catch (IOException e) {
+                fail("I/O error occured while reading the valid json file.", e);
+            } catch (JsonIOException | JsonSyntaxException e) {
+                fail("Failed to read the json file.", e);
+            }
+
+            frames = reader.computeFrames();
+            writer = new ClassWriter(0);
+
+            assertNotNull(frames,
+                          "Failed to compute frames of "
+                              + validFilePaths[i]
+                              + ".");
+
+            try {
+                reader.accept(writer, frames);
+            } catch (UnsupportedOpcodeException e) {
+                fail("Failed to parse the json file "
+                        + validFilePaths[i]
+                        + ".",
+                     e);
+            }
+
+            try {
+                Class<?> clazz;
+
+                clazz = new ByteArrayClassLoader().define(writer.toByteArray());
+                actualReturns[i]
+                        = clazz.getMethod(methodnames[i], methodParamTypes[i])
+                               .invoke(clazz.getConstructor().newInstance(),
+                                       methodArgs[i]);
+            } catch (VerifyError e) {
+                fail("Computed frames of "
+                        + validFilePaths[i]
+                        + " failed to be verified.",
+                     e);
+            } catch (IllegalAccessException e) {
+                fail("Failed to access the method of the generated class.", e);
+            } catch (InstantiationException e) {
+                fail("Failed to instantiate the generated class.", e);
+            } catch (InvocationTargetException e) {
+                fail("Method of the generated class threw an exception.", e);
+            } catch (NoSuchMethodException e) {
+                fail("Failed to find the method of the generated class.", e);
+            }
+        }
+
+        assertArrayEquals(expectedReturns, actualReturns);
+    }
+
+    @Test
+    public void testComputeBranches() {
+        MethodFrames frames;
+
+        frames = MethodFrames.compute("gen/Loop",
+                                      "(I)I",
+                                      new int[] { Opcodes.ILOAD, 1,
+                                                  Opcodes.IRETURN,
+                                                  Opcodes.ICONST_0,
+                                                  Opcodes.IRETURN });
+
+        assertNull(frames, "Unreachable code is not left to ASM.");
+
+        frames = MethodFrames.compute("gen/Loop",
+                                      "(I)V",
+                                      new int[] { Opcodes.ILOAD, 1,
+                                                  Opcodes.POP });
+
+        assertNull(frames, "Falling off the end is not left to ASM.");
+
+        frames = MethodFrames.compute("gen/Loop",
+                                      "(I)I",
+                                      new int[] { Opcodes.ILOAD, 1,
+                                                  Opcodes.IFLE, 0, 9,
+                                                  Opcodes.ICONST_1,
+                                                  Opcodes.GOTO, 0, 10,
+                                                  Opcodes.ICONST_0,
+                                                  Opcodes.IRETURN });
+
+        assertNotNull(frames);
+        assertArrayEquals(new Object[] { "gen/Loop", Opcodes.INTEGER },
+                          frames.getLocals(10));
+        assertArrayEquals(new Object[] { Opcodes.INTEGER },
+                          frames.getStack(10));
+        assertArrayEquals(new Object[0], frames.getStack(9));
+        assertEquals(1, frames.getMaxStack());
+        assertEquals(2, frames.getMaxLocals());
+    }
+
+    @Test
+    public void testComputeConstants() {
+        Symbol[] constants;
+        MethodFrames frames;
+        int[] code;
+
+        constants = new Symbol[] {
+                Symbol.ofClass("java/lang/StringBuilder"),
+                Symbol.of("n="),
+                Symbol.ofMethod("java/lang/StringBuilder",
+                                "<init>",
+                                "(Ljava/lang/String;)V",
+                                false),
+                Symbol.ofMethod("java/lang/StringBuilder",
+                                "append",
+                                "(I)Ljava/lang/StringBuilder;",
+                                false),
+                Symbol.of(7L),
+                Symbol.ofMethod("java/lang/StringBuilder",
+                                "append",
+                                "(J)Ljava/lang/StringBuilder;",
+                                false),
+                Symbol.ofMethod("java/lang/Object",
+                                "toString",
+                                "()Ljava/lang/String;",
+                                false),
+                Symbol.ofClass("java/lang/CharSequence"),
+                Symbol.ofMethod("java/lang/CharSequence",
+                                "toString",
+                                "()Ljava/lang/String;",
+                                true) };
+        code = new int[] { Opcodes.NEW, 0, 0,
+                           Opcodes.DUP,
+                           Opcodes.LDC, 1,
+                           Opcodes.INVOKESPECIAL, 0, 2,
+                           Opcodes.ILOAD, 1,
+                           Opcodes.IFLE, 0, 22,
+                           Opcodes.ILOAD, 1,
+                           Opcodes.INVOKEVIRTUAL, 0, 3,
+                           Opcodes.GOTO, 0, 28,
+                           SupportedOpcodes.LDC2_W, 0, 4,
+                           Opcodes.INVOKEVIRTUAL, 0, 5,
+                           Opcodes.INVOKEVIRTUAL, 0, 6,
+                           Opcodes.CHECKCAST, 0, 7,
+                           Opcodes.INVOKEINTERFACE, 0, 8, 1, 0,
+                           Opcodes.ARETURN };
+        frames = MethodFrames.compute("gen/Concat",
+                                      "(I)Ljava/lang/String;",
+                                      code,
+                                      constants);
+
+        assertNotNull(frames);
+        assertArrayEquals(new Object[] { "java/lang/StringBuilder" },
+                          frames.getStack(22));
+        assertArrayEquals(new Object[] { "java/lang/StringBuilder" },
+                          frames.getStack(28));
+        assertEquals(3, frames.getMaxStack());
+
+        try {
+            ClassWriter writer;
+            JsonReader reader;
+            Class<?> clazz;
+
+            reader = new JsonReader(new ClassInfo(55,
+                                                  "gen",
+                                                  "Concat",
+                                                  "concat",
+                                                  "(I)Ljava/lang/String;",
+                                                  code,
+                                                  constants));
+            writer = new ClassWriter(0);
+
+            reader.accept(writer, reader.computeFrames());
+
+            clazz = new ByteArrayClassLoader().define(writer.toByteArray());
+
+            assertEquals("n=5",
+                         clazz.getMethod("concat", int.class)
+                              .invoke(clazz.getConstructor().newInstance(),
+                                      5));
+            assertEquals("n=7",
+                         clazz.getMethod("concat", int.class)
+                              .invoke(clazz.getConstructor().newInstance(),
+                                      0));
+        } catch (UnsupportedOpcodeException e) {
+            fail("Failed to generate the class file.", e);
+        } catch (ReflectiveOperationException e) {
+            fail("Failed to run the method of the generated class.", e);
+        }
+
+        frames = MethodFrames.compute("gen/Concat",
+                                      "()Ljava/lang/Object;",
+                                      new int[] { Opcodes.NEW, 0, 0,
+                                                  Opcodes.GOTO, 0, 6,
+                                                  Opcodes.ARETURN },
+                                      constants);
+
+        assertNull(frames, "Uninitialized objects are not left to ASM.");
+    }
+
+    /**
+     * Class loader that defines a generated class apart from the test
+     * classpath, so that the class is verified with its own frames.
+     */
+    private static class ByteArrayClassLoader extends ClassLoader {
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+}
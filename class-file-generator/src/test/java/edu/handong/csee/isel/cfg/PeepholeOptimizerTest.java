@@ -0,0 +1,100 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.Test;
+
+public class PeepholeOptimizerTest {
+
+    @Test
+    public void testOptimize() {
+        // ICONST_1 ICONST_2 IADD ISTORE 3 ILOAD 3 NOP GOTO 14 ICONST_0
+        // IRETURN NOP GOTO 17 IRETURN
+        int[] code = { 4, 5, 96, 54, 3, 21, 3, 0, 167, 0, 14, 3, 172, 0,
+                       167, 0, 17, 172 };
+
+        assertArrayEquals(new int[] { 6, 172 },
+                          PeepholeOptimizer.optimize(code));
+
+        // ICONST_0 IFNE 6 ILOAD 1 IRETURN ICONST_1 IRETURN
+        assertArrayEquals(new int[] { 21, 1, 172 },
+                          PeepholeOptimizer.optimize(
+                                  new int[] { 3, 154, 0, 6, 21, 1, 172, 4,
+                                              172 }));
+
+        // ILOAD 1 ISTORE 2 ILOAD 2 ILOAD 2 IADD IRETURN
+        assertArrayEquals(new int[] { 21, 1, 89, 96, 172 },
+                          PeepholeOptimizer.optimize(
+                                  new int[] { 21, 1, 54, 2, 21, 2, 21, 2,
+                                              96, 172 }));
+    }
+
+    @Test
+    public void testSemantics() {
+        ClassSynthesizer synthesizer;
+
+        synthesizer = new ClassSynthesizer(11,
+                                           "edu.handong.csee.isel.cfg",
+                                           "(II)I");
+
+        synthesizer.setLength(128);
+        synthesizer.setBranchDensity(0.3);
+        synthesizer.setLoopDensity(0.2);
+
+        for (long i = 0; i < 50; i++) {
+            ClassInfo classInfo;
+            ClassInfo optimized;
+            int[] code;
+
+            classInfo = synthesizer.synthesize(i);
+            code = PeepholeOptimizer.optimize(classInfo.getBytecode());
+            optimized = new ClassInfo(classInfo.getVersion(),
+                                      classInfo.getPackagename(),
+                                      classInfo.getClassname(),
+                                      classInfo.getMethodname(),
+                                      classInfo.getMethodDesc(),
+                                      code);
+
+            assertTrue(code.length <= classInfo.getBytecode().length);
+
+            try {
+                BytecodeValidator.validate(code);
+
+                for (int x = -2; x <= 2; x++) {
+                    assertEquals(run(classInfo, x), run(optimized, x));
+                }
+            } catch (UnsupportedOpcodeException e) {
+                fail("Optimized bytecode is invalid.", e);
+            }
+        }
+    }
+
+    private static Object run(ClassInfo classInfo, int x)
+            throws UnsupportedOpcodeException {
+        try {
+            Class<?> clazz;
+            Method method;
+
+            clazz = ClassGenerator.define(
+                    MethodHandles.lookup(),
+                    new ClassGenerator().generate(classInfo));
+            method = clazz.getMethod("run", int.class, int.class);
+
+            return method.invoke(clazz.getConstructor().newInstance(),
+                                 x,
+                                 x * 3);
+        } catch (IllegalAccessException | InstantiationException
+                 | InvocationTargetException | NoSuchMethodException e) {
+            fail("Failed to run the class.", e);
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class SourceWatcherTest {
+    private static final String RESOURCES = "src/test/resources/";
+    private static final String GEN = "edu/handong/csee/isel/cfg/gen/";
+
+    @Test
+    public void testRun() {
+        AtomicReference<IOException> error;
+        Path root = null;
+        Thread thread = null;
+
+        error = new AtomicReference<>();
+
+        try {
+            Path dstDir;
+            Path srcDir;
+
+            root = Files.createTempDirectory("cfg-watch");
+            srcDir = Files.createDirectory(root.resolve("src"));
+            dstDir = root.resolve("dst");
+
+            Files.copy(Path.of(RESOURCES + "valid-files/add.json"),
+                       srcDir.resolve("add.json"));
+
+            try (DirectoryClassSink sink = new DirectoryClassSink(dstDir)) {
+                SourceWatcher watcher;
+
+                watcher = new SourceWatcher(new GenerationPipeline(sink, 1),
+                                            srcDir,
+                                            dstDir);
+                thread = new Thread(() -> {
+                    try {
+                        watcher.run();
+                    } catch (IOException e) {
+                        error.set(e);
+                    }
+                });
+
+                thread.start();
+                waitFor(() -> Files.exists(dstDir.resolve(GEN + "Add.class")));
+
+                Files.createDirectory(srcDir.resolve("more"));
+                Files.copy(Path.of(RESOURCES + "valid-files/sub.json"),
+                           srcDir.resolve("more/sub.json"));
+                waitFor(() -> Files.exists(dstDir.resolve(GEN + "Sub.class")));
+
+                Files.writeString(srcDir.resolve("add.json"),
+                                  Files.readString(srcDir.resolve("add.json"))
+                                       .replace("\"Add\"", "\"Add2\""));
+                waitFor(() -> Files.exists(dstDir.resolve(GEN + "Add2.class"))
+                              && !Files.exists(
+                                      dstDir.resolve(GEN + "Add.class")));
+
+                Files.delete(srcDir.resolve("more/sub.json"));
+                waitFor(() -> !Files.exists(
+                                      dstDir.resolve(GEN + "Sub.class")));
+
+                thread.interrupt();
+                thread.join();
+            }
+
+            assertNull(error.get());
+        } catch (IOException e) {
+            fail("I/O error occured while watching the source directory.", e);
+        } catch (InterruptedException e) {
+            fail("Interrupted while waiting for the watcher.", e);
+        } finally {
+            if (thread != null) {
+                thread.interrupt();
+            }
+
+            if (root != null) {
+                try (Stream<Path> paths = Files.walk(root)) {
+                    paths.sorted(Comparator.reverseOrder())
+                         .forEach(path -> path.toFile().delete());
+                } catch (IOException e) {
+                    fail("Failed to delete the temporary directory.", e);
+                }
+            }
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        long deadline;
+
+        deadline = System.currentTimeMillis() + 10000;
+
+        while (!condition.getAsBoolean()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(condition.getAsBoolean());
+    }
+}
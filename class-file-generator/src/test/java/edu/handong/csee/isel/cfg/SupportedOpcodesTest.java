@@ -0,0 +1,79 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import org.objectweb.asm.Opcodes;
+
+public class SupportedOpcodesTest {
+
+    @Test
+    public void testKindOf() {
+        OpcodeKind[] actualKinds;
+        OpcodeKind[] expectedKinds;
+        int[] opcodes;
+
+        opcodes = new int[] { Opcodes.IADD, Opcodes.FALOAD, Opcodes.NEWARRAY,
+                              Opcodes.GOTO, Opcodes.FLOAD, Opcodes.ASTORE,
+                              Opcodes.LDC, Opcodes.INVOKEINTERFACE,
+                              Opcodes.IINC, -1, 256, Integer.MIN_VALUE,
+                              Integer.MAX_VALUE };
+        expectedKinds
+                = new OpcodeKind[] { OpcodeKind.NO_ARG, OpcodeKind.NO_ARG,
+                                     OpcodeKind.UNARY, OpcodeKind.JUMP,
+                                     OpcodeKind.VAR, OpcodeKind.VAR,
+                                     OpcodeKind.CONSTANT,
+                                     OpcodeKind.INTERFACE_METHOD,
+                                     OpcodeKind.UNSUPPORTED,
+                                     OpcodeKind.UNSUPPORTED,
+                                     OpcodeKind.UNSUPPORTED,
+                                     OpcodeKind.UNSUPPORTED,
+                                     OpcodeKind.UNSUPPORTED };
+        actualKinds = new OpcodeKind[opcodes.length];
+
+        for (int i = 0; i < opcodes.length; i++) {
+            actualKinds[i] = SupportedOpcodes.kindOf(opcodes[i]);
+        }
+
+        assertArrayEquals(expectedKinds, actualKinds);
+    }
+
+    @Test
+    public void testIsSupported() {
+        for (int opcode = -1; opcode <= 256; opcode++) {
+            int supportedKinds;
+
+            supportedKinds = 0;
+
+            if (SupportedOpcodes.isSupportedNoArgOpcode(opcode)) {
+                supportedKinds++;
+            }
+
+            if (SupportedOpcodes.isSupportedUnaryOpcode(opcode)) {
+                supportedKinds++;
+            }
+
+            if (SupportedOpcodes.isSupportedJumpOpcode(opcode)) {
+                supportedKinds++;
+            }
+
+            if (SupportedOpcodes.isSupportedVarOpcode(opcode)) {
+                supportedKinds++;
+            }
+
+            if (SupportedOpcodes.isSupportedConstantOpcode(opcode)) {
+                supportedKinds++;
+            }
+
+            assertTrue(supportedKinds <= 1,
+                       "Opcode " + opcode + " is classified more than once.");
+            assertEquals(SupportedOpcodes.kindOf(opcode)
+                                 != OpcodeKind.UNSUPPORTED,
+                         supportedKinds == 1,
+                         "Opcode " + opcode + " is classified inconsistently.");
+        }
+    }
+}
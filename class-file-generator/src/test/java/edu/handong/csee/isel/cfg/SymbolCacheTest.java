@@ -0,0 +1,90 @@
+package edu.handong.csee.isel.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class SymbolCacheTest {
+
+    @Test
+    public void testIntern() {
+        SymbolCache symbols;
+        Symbol isEmpty;
+        Symbol length;
+
+        symbols = new SymbolCache();
+        length = symbols.internMember("java/lang/String",
+                                      "length",
+                                      "()I",
+                                      false);
+        isEmpty = symbols.internMember(new String("java/lang/String"),
+                                       "isEmpty",
+                                       new String("()Z"),
+                                       false);
+
+        assertSame(length,
+                   symbols.internMember(new String("java/lang/String"),
+                                        "length",
+                                        "()I",
+                                        false));
+        assertSame(length.getOwner(), isEmpty.getOwner());
+        assertSame(symbols.internValue(1.5f), symbols.internValue(1.5f));
+        assertEquals(Symbol.Kind.METHOD, length.getKind());
+        assertEquals(0, length.getArgumentSize());
+        assertEquals(2, symbols.getHits());
+        assertTrue(symbols.internClass("[I").isWellFormed());
+        assertFalse(symbols.internClass("java.lang.String").isWellFormed());
+        assertFalse(symbols.internMember("java/lang/String",
+                                         "length",
+                                         "(I",
+                                         false)
+                           .isWellFormed());
+    }
+
+    @Test
+    public void testCapacity() {
+        SymbolCache symbols;
+        Symbol string;
+
+        symbols = new SymbolCache(1);
+
+        symbols.internValue(1);
+
+        string = symbols.internValue("a");
+
+        assertEquals(1, symbols.size());
+        assertEquals(string, symbols.internValue("a"));
+        assertNotSame(string, symbols.internValue("a"));
+    }
+
+    @Test
+    public void testConcurrentIntern() {
+        SymbolCache symbols;
+        Set<Symbol> interned;
+
+        symbols = new SymbolCache();
+        interned = IntStream.range(0, 10000)
+                            .parallel()
+                            .mapToObj(i -> symbols.internMember(
+                                    "java/lang/Math",
+                                    "max",
+                                    "(II)I",
+                                    false))
+                            .collect(Collectors.toCollection(
+                                    () -> Collections.newSetFromMap(
+                                            new IdentityHashMap<>())));
+
+        assertEquals(1, interned.size());
+        assertEquals(1, symbols.size());
+    }
+}